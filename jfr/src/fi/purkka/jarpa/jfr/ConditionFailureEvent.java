@@ -0,0 +1,23 @@
+package fi.purkka.jarpa.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Recorded when a condition of an argument is not met. */
+@Name("fi.purkka.jarpa.ConditionFailure")
+@Label("Argument Condition Failure")
+@Category("Jarpa")
+@Description("A Condition of an argument was not met")
+@StackTrace(false)
+class ConditionFailureEvent extends Event {
+	
+	@Label("Argument")
+	String argument;
+	
+	@Label("Message")
+	String message;
+}
@@ -0,0 +1,26 @@
+package fi.purkka.jarpa.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Recorded for each run of the value parser of an argument. */
+@Name("fi.purkka.jarpa.Conversion")
+@Label("Argument Conversion")
+@Category("Jarpa")
+@Description("Conversion of the raw values of an argument by its ValueParser")
+@StackTrace(false)
+class ConversionEvent extends Event {
+	
+	@Label("Argument")
+	String argument;
+	
+	@Label("Value Count")
+	int valueCount;
+	
+	@Label("Success")
+	boolean success;
+}
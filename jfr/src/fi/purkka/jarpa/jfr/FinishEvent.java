@@ -0,0 +1,23 @@
+package fi.purkka.jarpa.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Recorded for each check for unknown arguments. */
+@Name("fi.purkka.jarpa.Finish")
+@Label("Argument Finish")
+@Category("Jarpa")
+@Description("Outcome of JarpaArgs.finish()")
+@StackTrace(false)
+class FinishEvent extends Event {
+	
+	@Label("Success")
+	boolean success;
+	
+	@Label("Unknown Arguments")
+	String unknownArguments;
+}
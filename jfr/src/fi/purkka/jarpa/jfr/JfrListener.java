@@ -0,0 +1,87 @@
+package fi.purkka.jarpa.jfr;
+
+import jdk.jfr.EventType;
+
+import fi.purkka.jarpa.JarpaListener;
+
+/** A {@link JarpaListener} that emits Java Flight Recorder events, so
+ * that argument handling shows up in recordings next to GC and
+ * allocation data. The events are in the {@code Jarpa} category:
+ * 
+ * <ul>
+ * <li>{@code fi.purkka.jarpa.Parse}: duration, token count and success of each parse</li>
+ * <li>{@code fi.purkka.jarpa.Conversion}: duration of each value parser run</li>
+ * <li>{@code fi.purkka.jarpa.ConditionFailure}: conditions that were not met</li>
+ * <li>{@code fi.purkka.jarpa.Finish}: unknown arguments found by {@code finish()}</li>
+ * </ul>
+ * 
+ * <p>Each notification first checks whether its event is enabled, so
+ * nothing is allocated or timed while no recording includes it.</p>
+ * 
+ * <p>{@code JfrListener.install();}</p> */
+public final class JfrListener implements JarpaListener {
+	
+	private static final EventType PARSE = EventType.getEventType(ParseEvent.class);
+	private static final EventType CONVERSION = EventType.getEventType(ConversionEvent.class);
+	private static final EventType CONDITION_FAILURE = EventType.getEventType(ConditionFailureEvent.class);
+	private static final EventType FINISH = EventType.getEventType(FinishEvent.class);
+	
+	/** Installs a new {@code JfrListener} as the Jarpa listener.
+	 * @see JarpaListener#install(JarpaListener) */
+	public static void install() {
+		JarpaListener.install(new JfrListener());
+	}
+	
+	@Override
+	public Object parseStarted() {
+		if(!PARSE.isEnabled()) return null;
+		ParseEvent event = new ParseEvent();
+		event.begin();
+		return event;
+	}
+	
+	@Override
+	public void parseEnded(Object context, int tokenCount, boolean success) {
+		if(context == null) return;
+		ParseEvent event = (ParseEvent) context;
+		event.tokenCount = tokenCount;
+		event.success = success;
+		event.commit();
+	}
+	
+	@Override
+	public Object conversionStarted(String argument, int valueCount) {
+		if(!CONVERSION.isEnabled()) return null;
+		ConversionEvent event = new ConversionEvent();
+		event.argument = argument;
+		event.valueCount = valueCount;
+		event.begin();
+		return event;
+	}
+	
+	@Override
+	public void conversionEnded(Object context, String argument, boolean success) {
+		if(context == null) return;
+		ConversionEvent event = (ConversionEvent) context;
+		event.success = success;
+		event.commit();
+	}
+	
+	@Override
+	public void conditionFailed(String argument, String message) {
+		if(!CONDITION_FAILURE.isEnabled()) return;
+		ConditionFailureEvent event = new ConditionFailureEvent();
+		event.argument = argument;
+		event.message = message;
+		event.commit();
+	}
+	
+	@Override
+	public void finished(String[] unknown) {
+		if(!FINISH.isEnabled()) return;
+		FinishEvent event = new FinishEvent();
+		event.success = unknown.length == 0;
+		event.unknownArguments = String.join(", ", unknown);
+		event.commit();
+	}
+}
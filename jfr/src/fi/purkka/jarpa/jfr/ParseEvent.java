@@ -0,0 +1,23 @@
+package fi.purkka.jarpa.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Recorded for each parse of an argument vector. */
+@Name("fi.purkka.jarpa.Parse")
+@Label("Argument Parse")
+@Category("Jarpa")
+@Description("Parsing of an argument vector into JarpaArgs")
+@StackTrace(false)
+class ParseEvent extends Event {
+	
+	@Label("Token Count")
+	int tokenCount;
+	
+	@Label("Success")
+	boolean success;
+}
@@ -0,0 +1,87 @@
+package fi.purkka.jarpa.jfr;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import fi.purkka.jarpa.JarpaArg;
+import fi.purkka.jarpa.JarpaArgs;
+import fi.purkka.jarpa.JarpaException;
+import fi.purkka.jarpa.JarpaListener;
+import fi.purkka.jarpa.JarpaParser;
+import fi.purkka.jarpa.conditions.IntCondition;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class TestJfrListener {
+	
+	@BeforeClass
+	public static void install() {
+		JfrListener.install();
+	}
+	
+	@AfterClass
+	public static void uninstall() {
+		JarpaListener.install(null);
+	}
+	
+	@Test
+	public void testEvents() throws IOException {
+		Path file = Files.createTempFile("jarpa", ".jfr");
+		try(Recording recording = new Recording()) {
+			recording.enable("fi.purkka.jarpa.Parse").withoutThreshold();
+			recording.enable("fi.purkka.jarpa.Conversion").withoutThreshold();
+			recording.enable("fi.purkka.jarpa.ConditionFailure");
+			recording.enable("fi.purkka.jarpa.Finish");
+			recording.start();
+			
+			JarpaArgs args = JarpaParser.parsing("-n -1 -x".split(" ")).parse();
+			try {
+				args.get(JarpaArg.integer("-n").require(IntCondition.positive()));
+			} catch(JarpaException e) {
+				// recorded as a condition failure
+			}
+			try {
+				args.finish();
+			} catch(JarpaException e) {
+				// recorded as a failed finish
+			}
+			
+			recording.stop();
+			recording.dump(file);
+		}
+		
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+				.filter(e -> e.getEventType().getName().startsWith("fi.purkka.jarpa."))
+				.collect(Collectors.toList());
+		Files.delete(file);
+		
+		RecordedEvent parse = find(events, "Parse");
+		assertThat(parse.getInt("tokenCount"), is(3));
+		assertTrue(parse.getBoolean("success"));
+		RecordedEvent conversion = find(events, "Conversion");
+		assertThat(conversion.getString("argument"), is("-n"));
+		assertTrue(conversion.getBoolean("success"));
+		assertThat(find(events, "ConditionFailure").getString("message"), is("must be positive"));
+		RecordedEvent finish = find(events, "Finish");
+		assertThat(finish.getBoolean("success"), is(false));
+		assertThat(finish.getString("unknownArguments"), is("-x"));
+	}
+	
+	private static RecordedEvent find(List<RecordedEvent> events, String name) {
+		return events.stream()
+				.filter(e -> e.getEventType().getName().equals("fi.purkka.jarpa." + name))
+				.findFirst().orElseThrow(() -> new AssertionError("No " + name + " event"));
+	}
+}
@@ -0,0 +1,73 @@
+package fi.purkka.jarpa;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** The values of several arguments retrieved at once.
+ * 
+ * <p>Failures are recorded per argument instead of being thrown
+ * immediately: {@link ArgValues#get(JarpaArg)} throws the failure of
+ * that argument only, while {@link ArgValues#orThrow()} reports all
+ * of them together.</p>
+ * 
+ * @see JarpaArgs#getConcurrently(java.util.concurrent.Executor, JarpaArg...) */
+public final class ArgValues {
+	
+	private final Map<JarpaArg<?>, Object> values = new IdentityHashMap<>();
+	private final Map<JarpaArg<?>, JarpaException> errors = new LinkedHashMap<>();
+	
+	ArgValues() {}
+	
+	void put(JarpaArg<?> arg, Object value) {
+		values.put(arg, value);
+	}
+	
+	void fail(JarpaArg<?> arg, JarpaException e) {
+		errors.put(arg, e);
+	}
+	
+	/** Returns the value of the given argument or throws the exception
+	 * that occurred while retrieving it.
+	 * @throws IllegalArgumentException if the argument was not requested */
+	@SuppressWarnings("unchecked")
+	public <T> T get(JarpaArg<T> arg) {
+		JarpaException e = errors.get(arg);
+		if(e != null) throw e;
+		if(!values.containsKey(arg)) {
+			throw new IllegalArgumentException("Argument " + arg.mainAlias()
+					+ " was not requested");
+		}
+		return (T) values.get(arg);
+	}
+	
+	/** Returns whether retrieving any argument failed. */
+	public boolean failed() {
+		return !errors.isEmpty();
+	}
+	
+	/** Returns the failures keyed by the main alias of each
+	 * failed argument. */
+	public Map<String, JarpaException> errors() {
+		Map<String, JarpaException> byAlias = new LinkedHashMap<>();
+		for(Map.Entry<JarpaArg<?>, JarpaException> e : errors.entrySet()) {
+			byAlias.put(e.getKey().mainAlias(), e.getValue());
+		}
+		return Collections.unmodifiableMap(byAlias);
+	}
+	
+	/** Returns this instance if nothing failed. Otherwise throws the only
+	 * failure or, if there are several, a {@code JarpaException} combining
+	 * all of their messages. */
+	public ArgValues orThrow() {
+		if(errors.size() == 1) {
+			throw errors.values().iterator().next();
+		}
+		if(!errors.isEmpty()) {
+			throw JarpaException.multipleFailures(
+					errors.values().toArray(new JarpaException[errors.size()]));
+		}
+		return this;
+	}
+}
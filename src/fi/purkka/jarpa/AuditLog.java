@@ -0,0 +1,320 @@
+package fi.purkka.jarpa;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/** Appends a line per parsed invocation to a file without making the
+ * caller wait for the file.
+ * 
+ * <p>{@link AuditLog#record(String, JarpaArgs)} encodes the options
+ * straight into one of a fixed number of preallocated slots of a ring
+ * buffer, claimed with a compare-and-set, and returns. A background
+ * thread writes the filled slots to the file in batches. If the buffer is
+ * full the record is dropped and counted in {@link AuditLog#dropped()}
+ * rather than blocking, and a record longer than a slot is cut short. A
+ * slot whose record could not be encoded is still handed to the writer,
+ * empty, so that the records after it are written.</p>
+ * 
+ * <p>Each line holds the time in epoch milliseconds, the label and then
+ * each option with its values, separated by tabs:
+ * {@code 1700000000000\tdeploy\t--env=prod\t--tags=a,b}. Tabs, line
+ * breaks, commas and backslashes in names and values are escaped with a
+ * backslash. The values of the arguments given to
+ * {@link AuditLog#redact(JarpaArg...)} are written as {@code ***}.</p>
+ * 
+ * <p>{@code try(AuditLog audit = AuditLog.open(path).redact(PASSWORD)) {...}}</p> */
+public final class AuditLog implements AutoCloseable {
+	
+	static final int DEFAULT_SLOTS = 1024;
+	static final int DEFAULT_SLOT_SIZE = 512;
+	private static final byte[] REDACTED = {'*', '*', '*'};
+	private static final byte[] TRUNCATED = {'\t', '.', '.', '.', '\n'};
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+	
+	private final FileChannel channel;
+	private final int mask;
+	private final int slotSize;
+	private final byte[][] slots;
+	private final int[] lengths;
+	/** The sequence number last published in each slot. */
+	private final AtomicLongArray published;
+	/** The next sequence number to claim. */
+	private final AtomicLong tail = new AtomicLong();
+	/** The next sequence number to write; only advanced by the writer. */
+	private volatile long head = 0;
+	private volatile boolean closed = false;
+	private volatile boolean writerParked = false;
+	private volatile Set<String> redacted = Collections.emptySet();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder written = new LongAdder();
+	private volatile IOException failure;
+	private final Thread writer;
+	
+	private AuditLog(FileChannel channel, int slotCount, int slotSize) {
+		this.channel = channel;
+		this.mask = slotCount - 1;
+		this.slotSize = slotSize;
+		this.slots = new byte[slotCount][slotSize];
+		this.lengths = new int[slotCount];
+		this.published = new AtomicLongArray(slotCount);
+		for(int i = 0; i < slotCount; i++) published.set(i, -1);
+		writer = new Thread(this::drainLoop, "jarpa-audit-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	/** Opens an audit log appending to the given file with the default
+	 * buffer of {@value #DEFAULT_SLOTS} records of at most
+	 * {@value #DEFAULT_SLOT_SIZE} bytes. */
+	public static AuditLog open(Path file) throws IOException {
+		return open(file, DEFAULT_SLOTS, DEFAULT_SLOT_SIZE);
+	}
+	
+	/** Opens an audit log appending to the given file, buffering up to
+	 * {@code slots} records, a power of two, of at most {@code slotSize}
+	 * bytes each. */
+	public static AuditLog open(Path file, int slots, int slotSize) throws IOException {
+		if(slots < 1 || Integer.bitCount(slots) != 1) {
+			throw new IllegalArgumentException("Slot count must be a power of two: " + slots);
+		}
+		if(slotSize < 64) {
+			throw new IllegalArgumentException("Slot size must be at least 64: " + slotSize);
+		}
+		return new AuditLog(FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND), slots, slotSize);
+	}
+	
+	/** Writes the values of the given arguments, under any of their
+	 * aliases or negators, as {@code ***}. */
+	public AuditLog redact(JarpaArg<?>...args) {
+		synchronized(this) {
+			Set<String> names = new HashSet<>(redacted);
+			for(JarpaArg<?> arg : args) {
+				names.addAll(arg.aliases);
+				names.addAll(arg.negatorList());
+			}
+			redacted = names;
+		}
+		return this;
+	}
+	
+	/** Records the given arguments without a label.
+	 * @see AuditLog#record(String, JarpaArgs) */
+	public boolean record(JarpaArgs args) {
+		return record("", args);
+	}
+	
+	/** Records the given arguments under a label such as the command
+	 * name. Returns {@code false} if the record was dropped because the
+	 * buffer was full or the log is closed. Never blocks. */
+	public boolean record(String label, JarpaArgs args) {
+		Objects.requireNonNull(label, "label");
+		Objects.requireNonNull(args, "args");
+		if(closed) {
+			dropped.increment();
+			return false;
+		}
+		long sequence;
+		do {
+			sequence = tail.get();
+			if(sequence - head >= slots.length) {
+				dropped.increment();
+				return false;
+			}
+		} while(!tail.compareAndSet(sequence, sequence + 1));
+		
+		int index = (int) sequence & mask;
+		int length = 0;
+		try {
+			// the writer may have stopped before the slot was claimed
+			if(closed) return false;
+			length = encode(slots[index], label, args);
+		} finally {
+			// publish even if encoding failed, or the writer would wait forever
+			lengths[index] = length;
+			published.set(index, sequence);
+			if(length == 0) dropped.increment();
+			if(writerParked) LockSupport.unpark(writer);
+		}
+		return true;
+	}
+	
+	private int encode(byte[] slot, String label, JarpaArgs args) {
+		Set<String> redacted = this.redacted;
+		// leave room to mark a record as cut short
+		int limit = slot.length - TRUNCATED.length;
+		int pos = putDecimal(slot, 0, System.currentTimeMillis());
+		slot[pos++] = '\t';
+		pos = putEscaped(slot, pos, limit, label);
+		for(String name : args.keys()) {
+			if(pos >= limit) break;
+			slot[pos++] = '\t';
+			pos = putEscaped(slot, pos, limit, name);
+			String[] values = args.getRaw(name);
+			if(values.length == 0 || pos >= limit) continue;
+			slot[pos++] = '=';
+			if(redacted.contains(name)) {
+				pos = put(slot, pos, limit, REDACTED);
+				continue;
+			}
+			for(int i = 0; i < values.length && pos < limit; i++) {
+				if(i > 0) slot[pos++] = ',';
+				pos = putEscaped(slot, pos, limit, values[i]);
+			}
+		}
+		if(pos >= limit) {
+			System.arraycopy(TRUNCATED, 0, slot, limit, TRUNCATED.length);
+			return slot.length;
+		}
+		slot[pos++] = '\n';
+		return pos;
+	}
+	
+	private static int putDecimal(byte[] slot, int pos, long value) {
+		int end = pos + 1;
+		for(long rest = value / 10; rest > 0; rest /= 10) end++;
+		for(int i = end - 1; i >= pos; i--) {
+			slot[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		return end;
+	}
+	
+	private static int put(byte[] slot, int pos, int limit, byte[] bytes) {
+		if(pos + bytes.length > limit) return limit;
+		System.arraycopy(bytes, 0, slot, pos, bytes.length);
+		return pos + bytes.length;
+	}
+	
+	/** Writes the string as escaped UTF-8, returning {@code limit} if it
+	 * did not fit. */
+	private static int putEscaped(byte[] slot, int pos, int limit, String s) {
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			int needed = c < 0x80 ? 2 : c < 0x800 ? 2 : Character.isHighSurrogate(c) ? 4 : 3;
+			if(pos + needed > limit) return limit;
+			switch(c) {
+			case '\t': slot[pos++] = '\\'; slot[pos++] = 't'; continue;
+			case '\n': slot[pos++] = '\\'; slot[pos++] = 'n'; continue;
+			case '\r': slot[pos++] = '\\'; slot[pos++] = 'r'; continue;
+			case ',': case '\\': slot[pos++] = '\\'; slot[pos++] = (byte) c; continue;
+			}
+			if(c < 0x80) {
+				slot[pos++] = (byte) c;
+			} else if(c < 0x800) {
+				slot[pos++] = (byte) (0xC0 | c >> 6);
+				slot[pos++] = (byte) (0x80 | c & 0x3F);
+			} else if(Character.isHighSurrogate(c) && i + 1 < s.length()
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				slot[pos++] = (byte) (0xF0 | cp >> 18);
+				slot[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+				slot[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+				slot[pos++] = (byte) (0x80 | cp & 0x3F);
+			} else if(Character.isSurrogate(c)) {
+				slot[pos++] = '?';
+			} else {
+				slot[pos++] = (byte) (0xE0 | c >> 12);
+				slot[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+				slot[pos++] = (byte) (0x80 | c & 0x3F);
+			}
+		}
+		return pos;
+	}
+	
+	private void drainLoop() {
+		ByteBuffer batch = ByteBuffer.allocateDirect(Math.max(slotSize * 16, 1 << 16));
+		while(true) {
+			boolean stopping = closed;
+			if(drain(batch) == 0) {
+				// records claimed before closing are still written
+				if(stopping && head == tail.get()) return;
+				writerParked = true;
+				// recheck so that a record published just now is not left waiting
+				if(published.get((int) head & mask) != head && !closed) {
+					LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+				}
+				writerParked = false;
+			}
+		}
+	}
+	
+	/** Writes all records published so far, returning how many slots
+	 * were consumed. */
+	private int drain(ByteBuffer batch) {
+		long sequence = head;
+		int count = 0, records = 0;
+		while(published.get((int) sequence & mask) == sequence) {
+			int index = (int) sequence & mask;
+			if(batch.remaining() < lengths[index]) {
+				flush(batch);
+				// the records written so far can be reused
+				head = sequence;
+			}
+			if(lengths[index] > 0) {
+				batch.put(slots[index], 0, lengths[index]);
+				records++;
+			}
+			sequence++;
+			count++;
+		}
+		if(count > 0) {
+			flush(batch);
+			head = sequence;
+			written.add(records);
+		}
+		return count;
+	}
+	
+	private void flush(ByteBuffer batch) {
+		batch.flip();
+		try {
+			while(batch.hasRemaining()) channel.write(batch);
+		} catch(IOException e) {
+			// keep draining so that producers are not blocked forever
+			failure = e;
+		}
+		batch.clear();
+	}
+	
+	/** Returns the number of records dropped because the buffer was full,
+	 * the log was closed or the record could not be encoded. */
+	public long dropped() {
+		return dropped.sum();
+	}
+	
+	/** Returns the number of records handed to the file. */
+	public long written() {
+		return written.sum();
+	}
+	
+	/** Writes the records recorded so far, stops the writer and closes
+	 * the file. Records racing with closing are either written or counted
+	 * as dropped.
+	 * @throws IOException if writing any record failed */
+	@Override
+	public void close() throws IOException {
+		if(closed) return;
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		channel.close();
+		if(failure != null) throw failure;
+	}
+}
@@ -0,0 +1,73 @@
+package fi.purkka.jarpa;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Finds the aliases and negators used for several arguments in a single
+ * pass over the parsed arguments, marking the ones found as retrieved.
+ * 
+ * <p>Each name is mapped to a slot {@code index << 1 | isNegator}. A name
+ * claimed by several of the requested arguments is looked up separately
+ * for each of them, like {@link JarpaArgs#get(JarpaArg)} would.</p> */
+final class BulkLookup {
+	
+	private static final int SHARED = -1;
+	
+	final String[] aliases;
+	final String[] negators;
+	final JarpaException[] errors;
+	
+	BulkLookup(JarpaArgs args, JarpaArg<?>[] requested) {
+		int count = requested.length;
+		aliases = new String[count];
+		negators = new String[count];
+		errors = new JarpaException[count];
+		
+		Map<String, Integer> slots = new HashMap<>();
+		boolean[] shared = new boolean[count];
+		for(int i = 0; i < count; i++) {
+			claim(slots, shared, requested[i].aliases, i << 1);
+			claim(slots, shared, requested[i].negatorList(), i << 1 | 1);
+		}
+		
+		for(String key : args.keys()) {
+			Integer slot = slots.get(key);
+			if(slot == null || slot == SHARED) continue;
+			int index = slot >> 1;
+			String[] found = (slot & 1) == 0 ? aliases : negators;
+			if(found[index] != null) {
+				if(errors[index] == null) {
+					errors[index] = JarpaException.multipleAliasesPresent(found[index], key);
+				}
+			} else {
+				found[index] = key;
+			}
+			args.addOptionalArg(key);
+		}
+		
+		for(int i = 0; i < count; i++) {
+			if(!shared[i]) continue;
+			errors[i] = null;
+			try {
+				requested[i].markKnown(args);
+				aliases[i] = args.usedAlias(requested[i].aliases);
+				negators[i] = args.usedAlias(requested[i].negatorList());
+			} catch(JarpaException e) {
+				errors[i] = e;
+			}
+		}
+	}
+	
+	private static void claim(Map<String, Integer> slots, boolean[] shared,
+			List<String> names, int slot) {
+		for(int i = 0; i < names.size(); i++) {
+			Integer previous = slots.put(names.get(i), slot);
+			if(previous != null && (previous >> 1) != (slot >> 1)) {
+				shared[slot >> 1] = true;
+				if(previous != SHARED) shared[previous >> 1] = true;
+				slots.put(names.get(i), SHARED);
+			}
+		}
+	}
+}
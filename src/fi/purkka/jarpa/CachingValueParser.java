@@ -0,0 +1,264 @@
+package fi.purkka.jarpa;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+import fi.purkka.jarpa.ValueParser.SingleValueParser;
+
+/** Wraps a {@code ValueParser} so that values converted once are reused
+ * for equal raw values, for example a configuration file loaded from
+ * {@code --config path} on every request to a server.
+ * 
+ * <p>{@code JarpaArg<Config> CONFIG = object("--config",
+ * CachingValueParser.of(Config::load).maximumSize(16).watchFiles());}</p>
+ * 
+ * <p>Values are kept in least recently used order and the least recently
+ * used ones are dropped once there are more than
+ * {@link #maximumSize(long)} of them or their total weight exceeds
+ * {@link #maximumWeight(long, ToLongFunction)}. By default at most
+ * {@value #DEFAULT_MAXIMUM_SIZE} values are kept. Values may also expire
+ * some time after they were converted, or, with {@link #watchFiles()},
+ * when a file named by the raw values is modified.</p>
+ * 
+ * <p>The cache may be shared between threads and between parses. The
+ * parser is called without holding any lock, so two threads converting
+ * the same new value at once may both call it. Failures are not cached.
+ * As the same instance is returned for equal raw values, the values
+ * should be immutable.</p> */
+public final class CachingValueParser<T> implements ValueParser<T> {
+	
+	static final long DEFAULT_MAXIMUM_SIZE = 256;
+	
+	private final ValueParser<T> parser;
+	private final LinkedHashMap<Key, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	
+	private volatile long maximumWeight = DEFAULT_MAXIMUM_SIZE;
+	private volatile ToLongFunction<? super T> weigher = value -> 1;
+	private volatile long expireAfterNanos = -1;
+	private volatile boolean watchFiles = false;
+	private long weight = 0;
+	
+	LongSupplier clock = System::nanoTime;
+	
+	private CachingValueParser(ValueParser<T> parser) {
+		this.parser = parser;
+	}
+	
+	/** Returns a caching wrapper of the given parser. */
+	public static <T> CachingValueParser<T> of(ValueParser<T> parser) {
+		return new CachingValueParser<>(parser);
+	}
+	
+	/** Returns a caching wrapper of the given single value parser. */
+	public static <T> CachingValueParser<T> of(SingleValueParser<T> parser) {
+		return new CachingValueParser<>(parser);
+	}
+	
+	/** Keeps at most the given number of values. */
+	public CachingValueParser<T> maximumSize(long size) {
+		return maximumWeight(size, value -> 1);
+	}
+	
+	/** Keeps values up to the given total weight, as determined by the
+	 * given function when each value is converted. A value heavier than
+	 * the maximum is never kept. */
+	public CachingValueParser<T> maximumWeight(long weight, ToLongFunction<? super T> weigher) {
+		if(weight < 0) {
+			throw new IllegalArgumentException("Negative maximum weight " + weight);
+		}
+		synchronized(entries) {
+			this.weigher = weigher;
+			this.maximumWeight = weight;
+			evict();
+		}
+		return this;
+	}
+	
+	/** Converts values again once the given time has passed since they
+	 * were last converted. */
+	public CachingValueParser<T> expireAfter(Duration duration) {
+		if(duration.isNegative()) {
+			throw new IllegalArgumentException("Negative expiry " + duration);
+		}
+		expireAfterNanos = duration.toNanos();
+		return this;
+	}
+	
+	/** Treats every raw value naming an existing file as a source of the
+	 * value, converting the value again if the modification time of any
+	 * of them has changed. This costs one file system lookup per value on
+	 * every use. */
+	public CachingValueParser<T> watchFiles() {
+		watchFiles = true;
+		return this;
+	}
+	
+	@Override
+	public T apply(String[] args) {
+		Key key = new Key(args);
+		long now = clock.getAsLong();
+		Entry<T> entry;
+		synchronized(entries) {
+			entry = entries.get(key);
+		}
+		if(entry != null && isFresh(entry, now)) {
+			hits.increment();
+			return entry.value;
+		}
+		
+		misses.increment();
+		Entry<T> loaded = new Entry<>(key.copy(), modificationTimes(args), now);
+		T value = parser.apply(args);
+		loaded.value = value;
+		loaded.weight = weigher.applyAsLong(value);
+		synchronized(entries) {
+			Entry<T> old = entries.remove(key);
+			if(old != null) weight -= old.weight;
+			if(loaded.weight <= maximumWeight) {
+				entries.put(loaded.key, loaded);
+				weight += loaded.weight;
+				evict();
+			}
+		}
+		return value;
+	}
+	
+	private boolean isFresh(Entry<T> entry, long now) {
+		long expiry = expireAfterNanos;
+		if(expiry >= 0 && now - entry.loaded >= expiry) return false;
+		return !watchFiles || Arrays.equals(entry.modified, modificationTimes(entry.key.values));
+	}
+	
+	private long[] modificationTimes(String[] args) {
+		if(!watchFiles) return null;
+		long[] times = new long[args.length];
+		for(int i = 0; i < args.length; i++) {
+			times[i] = modificationTime(args[i]);
+		}
+		return times;
+	}
+	
+	private static long modificationTime(String value) {
+		try {
+			Path path = Paths.get(value);
+			if(!Files.isRegularFile(path)) return Long.MIN_VALUE;
+			return Files.getLastModifiedTime(path).toMillis();
+		} catch(IOException | RuntimeException e) {
+			return Long.MIN_VALUE;
+		}
+	}
+	
+	/** Drops least recently used values until within the maximum weight.
+	 * Must hold the lock on {@code entries}. */
+	private void evict() {
+		Iterator<Entry<T>> it = entries.values().iterator();
+		while(weight > maximumWeight && it.hasNext()) {
+			weight -= it.next().weight;
+			it.remove();
+			evictions.increment();
+		}
+	}
+	
+	/** Drops all cached values. */
+	public void invalidateAll() {
+		synchronized(entries) {
+			entries.clear();
+			weight = 0;
+		}
+	}
+	
+	/** Returns the number of values currently cached. */
+	public int size() {
+		synchronized(entries) {
+			return entries.size();
+		}
+	}
+	
+	/** Returns the total weight of the values currently cached. */
+	public long weight() {
+		synchronized(entries) {
+			return weight;
+		}
+	}
+	
+	/** Returns how many times a cached value was returned. */
+	public long hits() {
+		return hits.sum();
+	}
+	
+	/** Returns how many times the wrapped parser was called. */
+	public long misses() {
+		return misses.sum();
+	}
+	
+	/** Returns how many values were dropped to stay within the maximum
+	 * size or weight. */
+	public long evictions() {
+		return evictions.sum();
+	}
+	
+	/** Returns the fraction of uses that returned a cached value, or
+	 * {@code 0} if there have been none. */
+	public double hitRate() {
+		long h = hits(), total = h + misses();
+		return total == 0 ? 0 : (double) h / total;
+	}
+	
+	@Override
+	public String toString() {
+		return "CachingValueParser[size=" + size() + ", hits=" + hits()
+				+ ", misses=" + misses() + ", evictions=" + evictions() + "]";
+	}
+	
+	private static final class Key {
+		
+		final String[] values;
+		final int hash;
+		
+		Key(String[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+		
+		Key copy() {
+			return new Key(values.clone());
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(values, ((Key) o).values);
+		}
+	}
+	
+	private static final class Entry<T> {
+		
+		final Key key;
+		final long[] modified;
+		final long loaded;
+		T value;
+		long weight;
+		
+		Entry(Key key, long[] modified, long loaded) {
+			this.key = key;
+			this.modified = modified;
+			this.loaded = loaded;
+		}
+	}
+}
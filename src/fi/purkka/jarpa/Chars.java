@@ -0,0 +1,49 @@
+package fi.purkka.jarpa;
+
+/** Helpers for parsing numbers directly from ranges of characters,
+ * without creating intermediate strings. */
+final class Chars {
+	
+	private Chars() {}
+	
+	/** Parses a decimal {@code int} like {@link Integer#parseInt(String)}
+	 * from the characters {@code from} (inclusive) to {@code to} (exclusive). */
+	static int parseInt(CharSequence s, int from, int to) {
+		if(from >= to) throw invalidNumber(s, from, to);
+		int i = from;
+		boolean negative = false;
+		char first = s.charAt(i);
+		if(first == '-' || first == '+') {
+			negative = first == '-';
+			if(++i == to) throw invalidNumber(s, from, to);
+		}
+		// accumulate negatively so that Integer.MIN_VALUE fits
+		int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		int multmin = limit / 10;
+		int result = 0;
+		for(; i < to; i++) {
+			int digit = s.charAt(i) - '0';
+			if(digit < 0 || digit > 9 || result < multmin) {
+				throw invalidNumber(s, from, to);
+			}
+			result *= 10;
+			if(result < limit + digit) throw invalidNumber(s, from, to);
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+	
+	/** Returns the index of the first occurrence of {@code c} in the range,
+	 * or {@code -1}. */
+	static int indexOf(CharSequence s, char c, int from, int to) {
+		for(int i = from; i < to; i++) {
+			if(s.charAt(i) == c) return i;
+		}
+		return -1;
+	}
+	
+	static NumberFormatException invalidNumber(CharSequence s, int from, int to) {
+		return new NumberFormatException("For input string: \""
+				+ s.subSequence(from, to) + "\"");
+	}
+}
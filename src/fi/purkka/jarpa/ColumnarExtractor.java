@@ -0,0 +1,415 @@
+package fi.purkka.jarpa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/** Extracts arguments from many argument vectors at once into columns,
+ * for analysing large numbers of recorded invocations.
+ * 
+ * <p>{@code Columns c = ColumnarExtractor.create().ints("--port", "-p")
+ * .strings("--host").presence("--verbose").extract(argvs);}<br>
+ * {@code int[] ports = c.ints("--port");}</p>
+ * 
+ * <p>Each column is named by the first of its aliases and holds one entry
+ * per argument vector: an {@code int[]} or {@code double[]} of values, a
+ * dictionary-encoded string column of codes into an array of distinct
+ * values, or only whether the argument was present. Every column also
+ * records which rows it was present in and which rows had a value that
+ * could not be used, which are left as {@code 0} or {@code -1}: a value
+ * that does not parse, more or fewer than one value, or several different
+ * aliases of the column. Values are assigned to options like
+ * {@link SpacedParser} does, the last occurrence of an option winning, and
+ * nothing after a lone {@code --} is an option. Other arguments are
+ * ignored.</p>
+ * 
+ * <p>The argument vectors are scanned directly in chunks of
+ * {@value #CHUNK_SIZE} rows, in parallel if there are several, without
+ * creating a {@code JarpaArgs} for each. Each chunk writes to its own
+ * part of the columns and builds its own string dictionaries, which are
+ * merged in order afterwards, so the result does not depend on how the
+ * chunks were scheduled.</p> */
+public final class ColumnarExtractor {
+	
+	/** A multiple of 64 so that no two chunks share a word of a bit set. */
+	static final int CHUNK_SIZE = 1 << 14;
+	
+	private static final byte INT = 0;
+	private static final byte DOUBLE = 1;
+	private static final byte STRING = 2;
+	private static final byte PRESENCE = 3;
+	
+	private final List<String> names = new ArrayList<>();
+	private final List<Byte> kinds = new ArrayList<>();
+	private final Map<String, Integer> columnsByAlias = new HashMap<>();
+	private Tokenizer tokenizer = Tokenizer.DEFAULT;
+	
+	private ColumnarExtractor() {}
+	
+	/** Returns an extractor without any columns. */
+	public static ColumnarExtractor create() {
+		return new ColumnarExtractor();
+	}
+	
+	/** Adds an {@code int} column for the argument with the given aliases. */
+	public ColumnarExtractor ints(String...aliases) {
+		return column(INT, aliases);
+	}
+	
+	/** Adds a {@code double} column for the argument with the given aliases. */
+	public ColumnarExtractor doubles(String...aliases) {
+		return column(DOUBLE, aliases);
+	}
+	
+	/** Adds a dictionary-encoded string column for the argument with the
+	 * given aliases. */
+	public ColumnarExtractor strings(String...aliases) {
+		return column(STRING, aliases);
+	}
+	
+	/** Adds a column recording only whether the argument with the given
+	 * aliases is present, with or without values. */
+	public ColumnarExtractor presence(String...aliases) {
+		return column(PRESENCE, aliases);
+	}
+	
+	/** Sets the characters that may start an argument.
+	 * @see fi.purkka.jarpa.JarpaParser.DefaultParser#prefixes(String) */
+	public ColumnarExtractor prefixes(String chars) {
+		tokenizer = tokenizer.withPrefixes(chars);
+		return this;
+	}
+	
+	private ColumnarExtractor column(byte kind, String[] aliases) {
+		if(aliases.length == 0) throw new IllegalArgumentException("No aliases given");
+		if(names.contains(aliases[0])) {
+			throw new IllegalArgumentException("Duplicate column " + aliases[0]);
+		}
+		for(String alias : aliases) {
+			if(columnsByAlias.containsKey(alias)) {
+				throw new IllegalArgumentException("Alias " + alias + " already used by column "
+						+ names.get(columnsByAlias.get(alias)));
+			}
+		}
+		for(String alias : aliases) columnsByAlias.put(alias, names.size());
+		names.add(aliases[0]);
+		kinds.add(kind);
+		return this;
+	}
+	
+	/** Extracts the columns from the given argument vectors. */
+	public Columns extract(Stream<String[]> rows) {
+		return extract(rows.collect(Collectors.toList()));
+	}
+	
+	/** Extracts the columns from the given argument vectors, which
+	 * should support fast random access. */
+	public Columns extract(List<String[]> rows) {
+		Columns columns = new Columns(this, rows.size());
+		int chunks = (rows.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		Dictionary[][] dictionaries = new Dictionary[chunks][];
+		IntStream indices = IntStream.range(0, chunks);
+		if(chunks > 1) indices = indices.parallel();
+		indices.forEach(c -> dictionaries[c] = new Chunk(columns, rows,
+				c * CHUNK_SIZE, Math.min(rows.size(), (c + 1) * CHUNK_SIZE)).run());
+		columns.mergeDictionaries(dictionaries);
+		return columns;
+	}
+	
+	/** Scans one chunk of rows into the columns. */
+	private final class Chunk {
+		
+		private final Columns columns;
+		private final List<String[]> rows;
+		private final int from, to;
+		private final Dictionary[] dictionaries;
+		/** The row each column was last seen in and the alias it was seen
+		 * as, to tell repeats from different aliases. */
+		private final int[] seenIn;
+		private final String[] seenAs;
+		/** The value of each string column in the current row, encoded
+		 * once the row is done so that overridden values do not enter the
+		 * dictionary, and the string columns seen in the row. */
+		private final String[] pending;
+		private final int[] pendingColumns;
+		private int pendingCount = 0;
+		
+		Chunk(Columns columns, List<String[]> rows, int from, int to) {
+			this.columns = columns;
+			this.rows = rows;
+			this.from = from;
+			this.to = to;
+			int count = names.size();
+			dictionaries = new Dictionary[count];
+			for(int i = 0; i < count; i++) {
+				if(kinds.get(i) == STRING) dictionaries[i] = new Dictionary();
+			}
+			seenIn = new int[count];
+			Arrays.fill(seenIn, -1);
+			seenAs = new String[count];
+			pending = new String[count];
+			pendingColumns = new int[count];
+		}
+		
+		Dictionary[] run() {
+			for(int row = from; row < to; row++) {
+				String[] argv = rows.get(row);
+				int length = argv.length;
+				int index = skipValues(argv, 0);
+				while(index < length) {
+					String arg = argv[index];
+					if(tokenizer.kind(arg) == Tokenizer.TERMINATOR) break;
+					int end = skipValues(argv, index + 1);
+					Integer column = columnsByAlias.get(arg);
+					if(column != null) extract(column, row, arg, argv, index + 1, end);
+					index = end;
+				}
+				encodePending(row);
+			}
+			return dictionaries;
+		}
+		
+		private void encodePending(int row) {
+			for(int i = 0; i < pendingCount; i++) {
+				int column = pendingColumns[i];
+				if(pending[column] != null) {
+					((int[]) columns.values[column])[row] = dictionaries[column].code(pending[column]);
+					pending[column] = null;
+				}
+			}
+			pendingCount = 0;
+		}
+		
+		private int skipValues(String[] argv, int index) {
+			while(index < argv.length) {
+				byte kind = tokenizer.kind(argv[index]);
+				if(kind == Tokenizer.OPTION || kind == Tokenizer.TERMINATOR) break;
+				index++;
+			}
+			return index;
+		}
+		
+		private void extract(int column, int row, String alias, String[] argv, int from, int to) {
+			if(seenIn[column] == row && !seenAs[column].equals(alias)) {
+				// several aliases, which stays a failure whatever follows
+				seenAs[column] = "";
+				setInvalid(column, row);
+				return;
+			}
+			if(seenIn[column] == row && seenAs[column].isEmpty()) return;
+			byte kind = columns.kinds[column];
+			if(kind == STRING && seenIn[column] != row) pendingColumns[pendingCount++] = column;
+			seenIn[column] = row;
+			seenAs[column] = alias;
+			set(columns.present[column], row);
+			
+			if(kind == PRESENCE) return;
+			clear(columns.invalid[column], row);
+			if(to - from != 1) {
+				setInvalid(column, row);
+				return;
+			}
+			String value = argv[from];
+			try {
+				if(kind == INT) {
+					((int[]) columns.values[column])[row] = Integer.parseInt(value);
+				} else if(kind == DOUBLE) {
+					((double[]) columns.values[column])[row] = FastDoubleParser.parseDouble(value);
+				} else {
+					pending[column] = value;
+				}
+			} catch(NumberFormatException e) {
+				setInvalid(column, row);
+			}
+		}
+		
+		private void setInvalid(int column, int row) {
+			set(columns.invalid[column], row);
+			byte kind = columns.kinds[column];
+			if(kind == INT) {
+				((int[]) columns.values[column])[row] = 0;
+			} else if(kind == DOUBLE) {
+				((double[]) columns.values[column])[row] = 0;
+			} else if(kind == STRING) {
+				((int[]) columns.values[column])[row] = -1;
+				pending[column] = null;
+			}
+		}
+	}
+	
+	private static void set(long[] words, int bit) {
+		words[bit >>> 6] |= 1L << bit;
+	}
+	
+	private static void clear(long[] words, int bit) {
+		words[bit >>> 6] &= ~(1L << bit);
+	}
+	
+	/** The distinct strings of one column in one chunk, in order of first
+	 * occurrence. */
+	private static final class Dictionary {
+		
+		final Map<String, Integer> codes = new HashMap<>();
+		final List<String> values = new ArrayList<>();
+		
+		int code(String value) {
+			Integer code = codes.get(value);
+			if(code == null) {
+				code = values.size();
+				codes.put(value, code);
+				values.add(value);
+			}
+			return code;
+		}
+	}
+	
+	/** The columns extracted from a list of argument vectors, named by the
+	 * first alias given for each. */
+	public static final class Columns {
+		
+		private final Map<String, Integer> indices = new HashMap<>();
+		private final String[] names;
+		private final byte[] kinds;
+		private final int rows;
+		/** The values of each column: {@code int[]}, {@code double[]} or,
+		 * for string columns, {@code int[]} codes. */
+		private final Object[] values;
+		private final String[][] dictionaries;
+		private final long[][] present;
+		private final long[][] invalid;
+		
+		private Columns(ColumnarExtractor extractor, int rows) {
+			int count = extractor.names.size();
+			this.rows = rows;
+			names = extractor.names.toArray(new String[count]);
+			kinds = new byte[count];
+			values = new Object[count];
+			dictionaries = new String[count][];
+			present = new long[count][];
+			invalid = new long[count][];
+			int words = (rows + 63) >>> 6;
+			for(int i = 0; i < count; i++) {
+				indices.put(extractor.names.get(i), i);
+				kinds[i] = extractor.kinds.get(i);
+				present[i] = new long[words];
+				invalid[i] = new long[words];
+				if(kinds[i] == INT) {
+					values[i] = new int[rows];
+				} else if(kinds[i] == DOUBLE) {
+					values[i] = new double[rows];
+				} else if(kinds[i] == STRING) {
+					int[] codes = new int[rows];
+					Arrays.fill(codes, -1);
+					values[i] = codes;
+				}
+			}
+		}
+		
+		/** Renumbers the codes of each chunk into one dictionary per
+		 * column, in order of first occurrence. */
+		private void mergeDictionaries(Dictionary[][] chunks) {
+			for(int column = 0; column < kinds.length; column++) {
+				if(kinds[column] != STRING) continue;
+				Map<String, Integer> merged = new HashMap<>();
+				List<String> distinct = new ArrayList<>();
+				int[][] remaps = new int[chunks.length][];
+				for(int c = 0; c < chunks.length; c++) {
+					List<String> local = chunks[c][column].values;
+					int[] remap = new int[local.size()];
+					boolean identity = true;
+					for(int code = 0; code < remap.length; code++) {
+						String value = local.get(code);
+						Integer global = merged.get(value);
+						if(global == null) {
+							global = distinct.size();
+							merged.put(value, global);
+							distinct.add(value);
+						}
+						remap[code] = global;
+						identity &= global == code;
+					}
+					remaps[c] = identity ? null : remap;
+				}
+				dictionaries[column] = distinct.toArray(new String[distinct.size()]);
+				
+				int[] codes = (int[]) values[column];
+				for(int c = 0; c < chunks.length; c++) {
+					int[] remap = remaps[c];
+					if(remap == null) continue;
+					int end = Math.min(rows, (c + 1) * CHUNK_SIZE);
+					for(int row = c * CHUNK_SIZE; row < end; row++) {
+						if(codes[row] >= 0) codes[row] = remap[codes[row]];
+					}
+				}
+			}
+		}
+		
+		/** Returns the number of rows, one per argument vector. */
+		public int rows() {
+			return rows;
+		}
+		
+		/** Returns the names of the columns. */
+		public List<String> names() {
+			return Collections.unmodifiableList(Arrays.asList(names));
+		}
+		
+		/** Returns the values of an {@code int} column. */
+		public int[] ints(String column) {
+			return (int[]) values[index(column, INT)];
+		}
+		
+		/** Returns the values of a {@code double} column. */
+		public double[] doubles(String column) {
+			return (double[]) values[index(column, DOUBLE)];
+		}
+		
+		/** Returns the codes of a string column, indices into
+		 * {@link Columns#dictionary(String)}, or {@code -1} where there is
+		 * no usable value. */
+		public int[] codes(String column) {
+			return (int[]) values[index(column, STRING)];
+		}
+		
+		/** Returns the distinct values of a string column in order of first
+		 * occurrence. */
+		public String[] dictionary(String column) {
+			return dictionaries[index(column, STRING)];
+		}
+		
+		/** Returns the value of a string column in the given row, or
+		 * {@code null} if there is no usable value. */
+		public String string(String column, int row) {
+			int index = index(column, STRING);
+			int code = ((int[]) values[index])[row];
+			return code < 0 ? null : dictionaries[index][code];
+		}
+		
+		/** Returns the rows in which any alias of the column was given. */
+		public BitSet present(String column) {
+			return BitSet.valueOf(present[index(column, (byte) -1)]);
+		}
+		
+		/** Returns the rows in which the column was given but had no usable
+		 * value. */
+		public BitSet invalid(String column) {
+			return BitSet.valueOf(invalid[index(column, (byte) -1)]);
+		}
+		
+		private int index(String column, byte kind) {
+			Integer index = indices.get(column);
+			if(index == null) throw new IllegalArgumentException("No column " + column);
+			if(kind != -1 && kinds[index] != kind) {
+				throw new IllegalArgumentException("Column " + column + " is of another type");
+			}
+			return index;
+		}
+	}
+}
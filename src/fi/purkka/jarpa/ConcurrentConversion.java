@@ -0,0 +1,111 @@
+package fi.purkka.jarpa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import fi.purkka.jarpa.JarpaArg.ListArg;
+
+/** Converts the values of several arguments concurrently.
+ * 
+ * <p>Aliases are looked up and arguments marked as known on the calling
+ * thread, as {@code JarpaArgs} is not thread-safe. Only the conversions,
+ * which only read the arguments, run on the executor.</p>
+ * 
+ * @see JarpaArgs#getConcurrently(Executor, JarpaArg...) */
+final class ConcurrentConversion {
+	
+	private ConcurrentConversion() {}
+	
+	static final Executor DEFAULT_EXECUTOR = defaultExecutor();
+	
+	/** Returns a virtual thread per task executor if the running JVM
+	 * supports it and the common pool otherwise. */
+	private static Executor defaultExecutor() {
+		try {
+			return (Executor) Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch(ReflectiveOperationException | RuntimeException e) {
+			return ForkJoinPool.commonPool();
+		}
+	}
+	
+	static CompletableFuture<ArgValues> convert(JarpaArgs args, Executor executor,
+			JarpaArg<?>[] requested) {
+		Object[] values = new Object[requested.length];
+		JarpaException[] errors = new JarpaException[requested.length];
+		List<CompletableFuture<?>> pending = new ArrayList<>();
+		BulkLookup lookup = new BulkLookup(args, requested);
+		
+		for(int i = 0; i < requested.length; i++) {
+			int index = i;
+			JarpaArg<?> arg = requested[i];
+			String alias = lookup.aliases[i];
+			String negator = lookup.negators[i];
+			if(lookup.errors[i] != null) {
+				errors[index] = lookup.errors[i];
+				continue;
+			}
+			CompletableFuture<?> future;
+			if(arg instanceof ListArg && alias != null) {
+				future = convertList((ListArg<?>) arg, args.getRaw(alias), executor);
+			} else {
+				future = CompletableFuture.supplyAsync(
+						() -> arg.resolve(args, alias, negator), executor);
+			}
+			pending.add(future.handle((val, t) -> {
+				if(t == null) {
+					values[index] = val;
+				} else {
+					errors[index] = asJarpaException(t);
+				}
+				return null;
+			}));
+		}
+		
+		return CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[pending.size()]))
+				.thenApply(v -> {
+					ArgValues result = new ArgValues();
+					for(int i = 0; i < requested.length; i++) {
+						if(errors[i] != null) {
+							result.fail(requested[i], errors[i]);
+						} else {
+							result.put(requested[i], values[i]);
+						}
+					}
+					return result;
+				});
+	}
+	
+	private static <E> CompletableFuture<List<E>> convertList(ListArg<E> arg,
+			String[] raw, Executor executor) {
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		CompletableFuture<E>[] elements = new CompletableFuture[raw.length];
+		for(int i = 0; i < raw.length; i++) {
+			String str = raw[i];
+			elements[i] = CompletableFuture.supplyAsync(
+					() -> arg.elementParser.apply(str), executor);
+		}
+		return CompletableFuture.allOf(elements).handle((v, t) -> {
+			if(t != null) throw asJarpaException(t);
+			List<E> list = new ArrayList<>(elements.length);
+			for(CompletableFuture<E> element : elements) {
+				list.add(element.join());
+			}
+			arg.verifyConditions(list);
+			return list;
+		});
+	}
+	
+	private static JarpaException asJarpaException(Throwable t) {
+		if(t instanceof CompletionException && t.getCause() != null) {
+			t = t.getCause();
+		}
+		if(t instanceof JarpaException) return (JarpaException) t;
+		return JarpaException.parseException(t);
+	}
+}
@@ -0,0 +1,216 @@
+package fi.purkka.jarpa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Rules about which arguments may be given together, checked in one
+ * step after parsing with {@link Constraints#check(JarpaArgs)}.
+ * 
+ * <p>{@code Constraints.none().exactlyOne(input, stdin).requires(output, format)}</p>
+ * 
+ * <p>Each argument mentioned gets a slot in a bitmask and each rule is
+ * compiled into masks over those slots when it is added, so checking
+ * looks up the presence of each argument once and then only combines
+ * {@code long}s. An argument is present if any of its aliases was given;
+ * the negators of flags do not count.</p>
+ * 
+ * <p>Instances are immutable: every method returns a new instance with
+ * the rule added, so they can be shared between threads.</p> */
+public final class Constraints {
+	
+	private static final Constraints NONE = new Constraints(new JarpaArg<?>[0], new Rule[0]);
+	
+	private final JarpaArg<?>[] slots;
+	private final Rule[] rules;
+	
+	private Constraints(JarpaArg<?>[] slots, Rule[] rules) {
+		this.slots = slots;
+		this.rules = rules;
+	}
+	
+	/** Returns constraints without any rules. */
+	public static Constraints none() {
+		return NONE;
+	}
+	
+	/** Requires that exactly one of the given arguments is present. */
+	public Constraints exactlyOne(JarpaArg<?>...args) {
+		return with(RuleKind.EXACTLY_ONE, null, args);
+	}
+	
+	/** Requires that at most one of the given arguments is present. */
+	public Constraints atMostOne(JarpaArg<?>...args) {
+		return with(RuleKind.AT_MOST_ONE, null, args);
+	}
+	
+	/** Requires that at least one of the given arguments is present. */
+	public Constraints atLeastOne(JarpaArg<?>...args) {
+		return with(RuleKind.AT_LEAST_ONE, null, args);
+	}
+	
+	/** Requires that if {@code arg} is present, all of the given other
+	 * arguments are present as well. */
+	public Constraints requires(JarpaArg<?> arg, JarpaArg<?>...required) {
+		return with(RuleKind.REQUIRES, arg, required);
+	}
+	
+	/** Requires that if {@code arg} is present, none of the given other
+	 * arguments are. */
+	public Constraints conflicts(JarpaArg<?> arg, JarpaArg<?>...others) {
+		return with(RuleKind.CONFLICTS, arg, others);
+	}
+	
+	private Constraints with(RuleKind kind, JarpaArg<?> premise, JarpaArg<?>[] args) {
+		if(args.length == 0) throw JarpaException.invalidCondition(kind.name, "no arguments given");
+		List<JarpaArg<?>> newSlots = new ArrayList<>(Arrays.asList(slots));
+		int premiseSlot = premise == null ? -1 : slot(newSlots, premise);
+		int[] argSlots = new int[args.length];
+		for(int i = 0; i < args.length; i++) {
+			argSlots[i] = slot(newSlots, args[i]);
+			if(argSlots[i] == premiseSlot) {
+				throw JarpaException.invalidCondition(kind.name,
+						premise.mainAlias() + " refers to itself");
+			}
+		}
+		
+		Rule[] newRules = Arrays.copyOf(rules, rules.length + 1);
+		newRules[rules.length] = new Rule(kind, premiseSlot, argSlots, newSlots.size());
+		return new Constraints(newSlots.toArray(new JarpaArg<?>[newSlots.size()]), newRules);
+	}
+	
+	private static int slot(List<JarpaArg<?>> slots, JarpaArg<?> arg) {
+		for(int i = 0; i < slots.size(); i++) {
+			if(slots.get(i) == arg) return i;
+		}
+		slots.add(arg);
+		return slots.size() - 1;
+	}
+	
+	/** Checks every rule against the given arguments. Does not mark any
+	 * argument as retrieved.
+	 * @throws JarpaException if a rule is violated; if several are,
+	 * the exception lists all of them */
+	public void check(JarpaArgs args) {
+		long[] present = new long[words(slots.length)];
+		for(int i = 0; i < slots.length; i++) {
+			List<String> aliases = slots[i].aliases;
+			for(int a = 0; a < aliases.size(); a++) {
+				if(args.contains(aliases.get(a))) {
+					present[i >>> 6] |= 1L << i;
+					break;
+				}
+			}
+		}
+		
+		List<JarpaException> violations = null;
+		for(Rule rule : rules) {
+			if(!rule.holds(present)) {
+				if(violations == null) violations = new ArrayList<>();
+				violations.add(rule.violation(present, slots));
+			}
+		}
+		if(violations == null) return;
+		if(violations.size() == 1) throw violations.get(0);
+		throw JarpaException.multipleFailures(
+				violations.toArray(new JarpaException[violations.size()]));
+	}
+	
+	private static int words(int bits) {
+		return (bits + 63) >>> 6;
+	}
+	
+	private enum RuleKind {
+		EXACTLY_ONE("exactlyOne"),
+		AT_MOST_ONE("atMostOne"),
+		AT_LEAST_ONE("atLeastOne"),
+		REQUIRES("requires"),
+		CONFLICTS("conflicts");
+		
+		final String name;
+		
+		RuleKind(String name) {
+			this.name = name;
+		}
+	}
+	
+	/** A single rule as masks over the presence slots. */
+	private static final class Rule {
+		
+		final RuleKind kind;
+		final int premise;
+		/** The slots of the arguments; shorter than the presence bits if
+		 * more arguments were added to the constraints after this rule. */
+		final long[] mask;
+		
+		Rule(RuleKind kind, int premise, int[] argSlots, int slotCount) {
+			this.kind = kind;
+			this.premise = premise;
+			mask = new long[words(slotCount)];
+			for(int slot : argSlots) {
+				mask[slot >>> 6] |= 1L << slot;
+			}
+		}
+		
+		boolean holds(long[] present) {
+			if(premise != -1 && (present[premise >>> 6] & 1L << premise) == 0) {
+				return true;
+			}
+			switch(kind) {
+			case REQUIRES:
+				for(int i = 0; i < mask.length; i++) {
+					if((present[i] & mask[i]) != mask[i]) return false;
+				}
+				return true;
+			case CONFLICTS:
+				for(int i = 0; i < mask.length; i++) {
+					if((present[i] & mask[i]) != 0) return false;
+				}
+				return true;
+			default:
+				int count = 0;
+				for(int i = 0; i < mask.length; i++) {
+					count += Long.bitCount(present[i] & mask[i]);
+				}
+				return kind == RuleKind.EXACTLY_ONE ? count == 1
+						: kind == RuleKind.AT_MOST_ONE ? count <= 1 : count >= 1;
+			}
+		}
+		
+		JarpaException violation(long[] present, JarpaArg<?>[] slots) {
+			List<String> all = new ArrayList<>();
+			List<String> given = new ArrayList<>();
+			List<String> missing = new ArrayList<>();
+			for(int i = 0; i < mask.length << 6 && i < slots.length; i++) {
+				if((mask[i >>> 6] & 1L << i) == 0) continue;
+				String alias = slots[i].mainAlias();
+				all.add(alias);
+				if((present[i >>> 6] & 1L << i) != 0) given.add(alias);
+				else missing.add(alias);
+			}
+			String group = String.join(", ", all);
+			String premiseAlias = premise == -1 ? null : slots[premise].mainAlias();
+			switch(kind) {
+			case REQUIRES:
+				return JarpaException.constraintViolated(premiseAlias + " requires "
+						+ group + ", missing " + String.join(", ", missing));
+			case CONFLICTS:
+				return JarpaException.constraintViolated(premiseAlias
+						+ " cannot be given with " + String.join(", ", given));
+			case EXACTLY_ONE:
+				return JarpaException.constraintViolated("Exactly one of " + group
+						+ " must be given, " + found(given));
+			case AT_MOST_ONE:
+				return JarpaException.constraintViolated("At most one of " + group
+						+ " may be given, " + found(given));
+			default:
+				return JarpaException.constraintViolated("At least one of " + group
+						+ " must be given");
+			}
+		}
+		
+		private static String found(List<String> given) {
+			return given.isEmpty() ? "found none" : "found " + String.join(", ", given);
+		}
+	}
+}
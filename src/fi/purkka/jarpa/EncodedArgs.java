@@ -0,0 +1,166 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArgsCodec.ENTRY_SIZE;
+import static fi.purkka.jarpa.JarpaArgsCodec.HEADER_SIZE;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/** {@code JarpaArgs} backed by a record written by {@link JarpaArgsCodec}.
+ * Nothing is read from the buffer until arguments are retrieved: an option
+ * is found by looking up its number in the shared {@link OptionIds} table
+ * and searching the sorted table of the record for it, and the names only
+ * stored in the record are read the first time an option is not in the
+ * shared table. Values are decoded from the buffer only when retrieved,
+ * using absolute reads so that the buffer itself is never changed.
+ * Retrieving arguments still records them as retrieved, so like any
+ * {@code JarpaArgs} an instance must not be used by several threads at
+ * once. */
+final class EncodedArgs extends JarpaArgs {
+	
+	final ByteBuffer data;
+	final int length;
+	final OptionIds ids;
+	private final int count;
+	/** The names stored in the record, numbered after the shared table. */
+	private OptionIds local;
+	private Set<String> keys;
+	
+	EncodedArgs(ByteBuffer data, OptionIds ids) {
+		this.data = data;
+		this.length = data.limit();
+		this.ids = ids;
+		this.count = data.getInt(12);
+	}
+	
+	/** Computes the fingerprint from the values, as they are not put
+	 * here one by one. */
+	@Override
+	public Fingerprint fingerprint() {
+		return fingerprint(new JarpaArg<?>[0]);
+	}
+	
+	/** Returns the offset of the table entry of the given option, or
+	 * {@code -1} if it is not in the record. */
+	private int entry(String arg) {
+		int id = ids.id(arg);
+		if(id == -1) {
+			id = localNames().id(arg);
+			if(id == -1) return -1;
+			id += ids.size();
+		}
+		try {
+			int low = 0, high = count - 1;
+			while(low <= high) {
+				int mid = (low + high) >>> 1;
+				int entry = HEADER_SIZE + mid * ENTRY_SIZE;
+				int midId = data.getInt(entry);
+				if(midId < id) {
+					low = mid + 1;
+				} else if(midId > id) {
+					high = mid - 1;
+				} else {
+					return entry;
+				}
+			}
+			return -1;
+		} catch(IndexOutOfBoundsException e) {
+			throw JarpaException.malformedEncoding("option table out of bounds");
+		}
+	}
+	
+	/** Reads the names stored in the record, which belong to the last
+	 * entries of the table in order. */
+	private OptionIds localNames() {
+		if(local == null) {
+			try {
+				int shared = ids.size();
+				int first = count;
+				while(first > 0 && data.getInt(HEADER_SIZE + (first - 1) * ENTRY_SIZE) >= shared) {
+					first--;
+				}
+				String[] names = new String[count - first];
+				int offset = HEADER_SIZE + count * ENTRY_SIZE;
+				for(int i = 0; i < names.length; i++) {
+					if(data.getInt(HEADER_SIZE + (first + i) * ENTRY_SIZE) != shared + i) {
+						throw JarpaException.malformedEncoding("option table out of order");
+					}
+					names[i] = string(offset);
+					offset += 4 + data.getInt(offset);
+				}
+				local = OptionIds.of(names);
+			} catch(IndexOutOfBoundsException | IllegalArgumentException e) {
+				throw JarpaException.malformedEncoding("option names out of bounds");
+			}
+		}
+		return local;
+	}
+	
+	@Override
+	String[] getRaw(String arg) {
+		int entry = entry(arg);
+		if(entry == -1) return EMPTY_ARRAY;
+		try {
+			int valueCount = data.getInt(entry + 4);
+			int offset = data.getInt(entry + 8);
+			// every value takes at least its four length bytes
+			if(valueCount < 0 || offset < 0 || offset > length || valueCount > (length - offset) / 4) {
+				throw JarpaException.malformedEncoding("values of " + arg + " out of bounds");
+			}
+			String[] vals = new String[valueCount];
+			for(int i = 0; i < valueCount; i++) {
+				vals[i] = string(offset);
+				offset += 4 + data.getInt(offset);
+			}
+			return vals;
+		} catch(IndexOutOfBoundsException | IllegalArgumentException
+				| NegativeArraySizeException e) {
+			throw JarpaException.malformedEncoding("values of " + arg + " out of bounds");
+		}
+	}
+	
+	@Override
+	boolean contains(String arg) {
+		return entry(arg) != -1;
+	}
+	
+	@Override
+	Set<String> keys() {
+		if(keys == null) {
+			OptionIds local = localNames();
+			int shared = ids.size();
+			Set<String> names = new LinkedHashSet<>();
+			for(int i = 0; i < count; i++) {
+				int id = data.getInt(HEADER_SIZE + i * ENTRY_SIZE);
+				if(id < 0) throw JarpaException.malformedEncoding("option table out of bounds");
+				names.add(id < shared ? ids.name(id) : local.name(id - shared));
+			}
+			keys = Collections.unmodifiableSet(names);
+		}
+		return keys;
+	}
+	
+	@Override
+	void put(String arg, String[] vals) {
+		throw new UnsupportedOperationException("Encoded arguments are read-only");
+	}
+	
+	private String string(int offset) {
+		int len = data.getInt(offset);
+		if(len < 0 || offset + 4 + len > length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if(data.hasArray()) {
+			return new String(data.array(), data.arrayOffset() + offset + 4,
+					len, StandardCharsets.UTF_8);
+		}
+		byte[] bytes = new byte[len];
+		ByteBuffer dup = data.duplicate();
+		dup.position(offset + 4);
+		dup.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
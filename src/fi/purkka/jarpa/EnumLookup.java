@@ -0,0 +1,87 @@
+package fi.purkka.jarpa;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/** Finds enum constants by name, ignoring case and treating {@code '-'}
+ * like {@code '_'}, without creating intermediate strings.
+ * 
+ * <p>One table is built per enum class and cached. It is an open-addressing
+ * hash table whose hash folds each character the same way the comparison
+ * does.</p> */
+final class EnumLookup<E extends Enum<E>> {
+	
+	private static final ClassValue<EnumLookup<?>> CACHE = new ClassValue<EnumLookup<?>>() {
+		@Override
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		protected EnumLookup<?> computeValue(Class<?> type) {
+			return new EnumLookup(type);
+		}
+	};
+	
+	private final E[] constants;
+	private final E[] table;
+	private final int mask;
+	private final String expected;
+	
+	private EnumLookup(Class<E> type) {
+		constants = type.getEnumConstants();
+		int size = Integer.highestOneBit(Math.max(1, constants.length) * 2) * 2;
+		table = Arrays.copyOf(constants, size);
+		Arrays.fill(table, null);
+		mask = size - 1;
+		for(E constant : constants) {
+			String name = constant.name();
+			int slot = hash(name, 0, name.length()) & mask;
+			while(table[slot] != null) slot = (slot + 1) & mask;
+			table[slot] = constant;
+		}
+		expected = Arrays.stream(constants)
+				.map(c -> c.name().toLowerCase(Locale.ROOT))
+				.collect(Collectors.joining(", "));
+	}
+	
+	@SuppressWarnings("unchecked")
+	static <E extends Enum<E>> EnumLookup<E> of(Class<E> type) {
+		if(!type.isEnum()) throw new IllegalArgumentException(type + " is not an enum");
+		return (EnumLookup<E>) CACHE.get(type);
+	}
+	
+	/** Returns the constant with the given name.
+	 * @throws IllegalArgumentException if there is no such constant */
+	E find(CharSequence s) {
+		int len = s.length();
+		int slot = hash(s, 0, len) & mask;
+		E candidate;
+		while((candidate = table[slot]) != null) {
+			if(matches(candidate.name(), s, len)) return candidate;
+			slot = (slot + 1) & mask;
+		}
+		throw new IllegalArgumentException("Unknown value \"" + s
+				+ "\", expected one of " + expected);
+	}
+	
+	private static boolean matches(String name, CharSequence s, int len) {
+		if(name.length() != len) return false;
+		for(int i = 0; i < len; i++) {
+			if(fold(name.charAt(i)) != fold(s.charAt(i))) return false;
+		}
+		return true;
+	}
+	
+	private static int hash(CharSequence s, int from, int to) {
+		int h = 0;
+		for(int i = from; i < to; i++) {
+			h = 31 * h + fold(s.charAt(i));
+		}
+		return h ^ h >>> 16;
+	}
+	
+	private static char fold(char c) {
+		if(c >= 'a' && c <= 'z') return (char) (c - ('a' - 'A'));
+		if(c == '-') return '_';
+		if(c < 0x80) return c;
+		return Character.toUpperCase(Character.toLowerCase(c));
+	}
+}
@@ -3,8 +3,9 @@ package fi.purkka.jarpa;
 import static fi.purkka.jarpa.JarpaArgs.DEFAULT_ARGUMENT;
 import static fi.purkka.jarpa.JarpaArgs.EMPTY_ARRAY;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+
+import fi.purkka.jarpa.Tokenizer.Tokens;
 
 /** A parser that assumes that values are given to arguments
  * according to the following format:
@@ -19,13 +20,18 @@ import java.util.List;
  * <p>{@code d1 -arg d2 d3 -arg2=val }</p>
  * 
  * <p>A {@code SpacedParser} would instead interpret that {@code d2}
- * and {@code d3} are values given to {@code -arg}.</p> */
+ * and {@code d3} are values given to {@code -arg}.</p>
+ * 
+ * <p>Everything after a lone {@code --} is also given to the default
+ * argument.</p> */
 public final class EqualsParser extends JarpaParser {
 	
-	private String[] args;
+	private final String[] args;
+	private final Tokenizer tokenizer;
 	
-	EqualsParser(String[] args) {
+	EqualsParser(String[] args, Tokenizer tokenizer) {
 		this.args = args;
+		this.tokenizer = tokenizer;
 	}
 	
 	/** Parses the initially given arguments as described in
@@ -33,34 +39,69 @@ public final class EqualsParser extends JarpaParser {
 	 * @see EqualsParser */
 	@Override
 	public JarpaArgs parse() {
-		JarpaArgs jargs = new JarpaArgs();
-		List<String> defaults = new ArrayList<>();
-		
-		for(String str : args) {
-			if(isArgument(str)) {
-				parseArg(str, jargs);
-			} else {
-				defaults.add(str);
+		Object context = Listeners.parseStarted();
+		boolean success = false;
+		try {
+			JarpaArgs jargs = new JarpaArgs();
+			Tokens tokens = tokenizer.tokenize(args, '=');
+			ParseLimits limits = tokenizer.limits;
+			String[] defaults = null;
+			int defaultCount = 0;
+			
+			for(int i = 0; i < tokens.length(); i++) {
+				byte kind = tokens.kinds[i];
+				if(kind == Tokenizer.OPTION) {
+					parseArg(args[i], tokens.separators[i], jargs, limits);
+				} else if(kind != Tokenizer.TERMINATOR) {
+					limits.checkValueCount(DEFAULT_ARGUMENT, defaultCount + 1);
+					if(defaults == null) defaults = new String[args.length - i];
+					defaults[defaultCount++] = args[i];
+				}
 			}
+			
+			if(defaultCount > 0) {
+				jargs.put(DEFAULT_ARGUMENT, defaultCount == defaults.length
+						? defaults : Arrays.copyOf(defaults, defaultCount));
+			}
+			
+			success = true;
+			return jargs;
+		} finally {
+			Listeners.parseEnded(context, args.length, success);
 		}
-		
-		if(!defaults.isEmpty()) {
-			jargs.values.put(DEFAULT_ARGUMENT,
-					defaults.toArray(new String[defaults.size()]));
-		}
-		
-		return jargs;
 	}
 	
-	private static void parseArg(String str, JarpaArgs jargs) {
-		if(str.indexOf('=') != -1) {
-			String[] parts = str.split("=", 2);
-			String arg = parts[0];
-			String[] values = parts[1].split(",");
-			
-			jargs.values.put(arg, values);
+	private static void parseArg(String str, int separator, JarpaArgs jargs, ParseLimits limits) {
+		if(separator != -1) {
+			String arg = str.substring(0, separator);
+			jargs.put(arg, splitValues(arg, str, separator + 1, limits));
 		} else {
-			jargs.values.put(str, EMPTY_ARRAY);
+			jargs.put(str, EMPTY_ARRAY);
+		}
+	}
+	
+	/** Splits the values after the separator at commas like
+	 * {@code String.split(",")} would, dropping trailing empty values. The
+	 * values are counted before any are split off. */
+	private static String[] splitValues(String arg, String str, int from, ParseLimits limits) {
+		int end = str.length();
+		if(from == end) return new String[] { "" };
+		while(end > from && str.charAt(end - 1) == ',') end--;
+		if(end == from) return EMPTY_ARRAY;
+		
+		int count = 1;
+		for(int i = from; i < end; i++) {
+			if(str.charAt(i) == ',') count++;
+		}
+		limits.checkValueCount(arg, count);
+		String[] values = new String[count];
+		int start = from;
+		for(int v = 0; v < count - 1; v++) {
+			int comma = Chars.indexOf(str, ',', start, end);
+			values[v] = str.substring(start, comma);
+			start = comma + 1;
 		}
+		values[count - 1] = str.substring(start, end);
+		return values;
 	}
 }
\ No newline at end of file
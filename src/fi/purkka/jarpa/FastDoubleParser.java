@@ -0,0 +1,216 @@
+package fi.purkka.jarpa;
+
+import java.math.BigInteger;
+
+/** Parses decimal floating-point numbers directly from ranges of
+ * characters, correctly rounded like {@link Double#parseDouble(String)}.
+ * 
+ * <p>Up to 19 significant digits are gathered into a {@code long}. If
+ * both the digits and the power of ten are small enough, Clinger's fast
+ * path gives the exact result with a single multiplication or division.
+ * Otherwise the Eisel-Lemire algorithm multiplies the digits by a
+ * 128-bit approximation of the power of ten and rounds, giving up on the
+ * rare inputs it cannot decide. Those, and anything other than plain
+ * decimal notation such as {@code NaN}, hexadecimal or a type suffix, are
+ * left to {@code Double.parseDouble}.</p>
+ * 
+ * <p>See Daniel Lemire, <i>Number Parsing at a Gigabyte per Second</i>,
+ * Software: Practice and Experience 51(8), 2021.</p> */
+final class FastDoubleParser {
+	
+	private static final int MIN_POWER = -342;
+	private static final int MAX_POWER = 308;
+	private static final int MAX_DIGITS = 19;
+	private static final long MAX_EXACT = 1L << 53;
+	
+	private static final double[] EXACT_POWERS = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	
+	/** The high and low halves of 5<sup>q</sup> for each power {@code q}
+	 * from {@link #MIN_POWER}, normalized to 128 bits and truncated. The
+	 * reciprocals of negative powers are rounded up first. */
+	private static final long[] POWERS_HIGH = new long[MAX_POWER - MIN_POWER + 1];
+	private static final long[] POWERS_LOW = new long[POWERS_HIGH.length];
+	
+	static {
+		BigInteger five = BigInteger.valueOf(5);
+		for(int q = MIN_POWER; q <= MAX_POWER; q++) {
+			BigInteger value;
+			if(q >= 0) {
+				value = five.pow(q);
+				int bits = value.bitLength();
+				value = bits <= 128 ? value.shiftLeft(128 - bits) : value.shiftRight(bits - 128);
+			} else {
+				BigInteger power = five.pow(-q);
+				int z = power.subtract(BigInteger.ONE).bitLength();
+				int b = q >= -27 ? z + 127 : 2 * z + 128;
+				value = BigInteger.ONE.shiftLeft(b).divide(power).add(BigInteger.ONE);
+				int bits = value.bitLength();
+				if(bits > 128) value = value.shiftRight(bits - 128);
+			}
+			POWERS_HIGH[q - MIN_POWER] = value.shiftRight(64).longValue();
+			POWERS_LOW[q - MIN_POWER] = value.longValue();
+		}
+	}
+	
+	private FastDoubleParser() {}
+	
+	static double parseDouble(String s) {
+		return parseDouble(s, 0, s.length());
+	}
+	
+	/** Parses the characters {@code from} (inclusive) to {@code to}
+	 * (exclusive) like {@link Double#parseDouble(String)}.
+	 * @throws NumberFormatException if they are not a valid number */
+	static double parseDouble(CharSequence s, int from, int to) {
+		int i = from;
+		int end = to;
+		while(i < end && s.charAt(i) <= ' ') i++;
+		while(end > i && s.charAt(end - 1) <= ' ') end--;
+		if(i == end) return fallback(s, from, to);
+		
+		boolean negative = false;
+		char c = s.charAt(i);
+		if(c == '-' || c == '+') {
+			negative = c == '-';
+			i++;
+		}
+		
+		long digits = 0;
+		int count = 0;
+		int power = 0;
+		boolean any = false;
+		boolean truncated = false;
+		for(; i < end && isDigit(c = s.charAt(i)); i++) {
+			any = true;
+			if(count < MAX_DIGITS) {
+				digits = digits * 10 + (c - '0');
+				if(digits != 0) count++;
+			} else {
+				power++;
+				truncated |= c != '0';
+			}
+		}
+		if(i < end && s.charAt(i) == '.') {
+			for(i++; i < end && isDigit(c = s.charAt(i)); i++) {
+				any = true;
+				if(count < MAX_DIGITS) {
+					digits = digits * 10 + (c - '0');
+					if(digits != 0) count++;
+					power--;
+				} else {
+					truncated |= c != '0';
+				}
+			}
+		}
+		if(!any) return fallback(s, from, to);
+		
+		if(i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if(i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+				negativeExponent = s.charAt(i) == '-';
+				i++;
+			}
+			if(i == end || !isDigit(s.charAt(i))) return fallback(s, from, to);
+			int exponent = 0;
+			for(; i < end && isDigit(c = s.charAt(i)); i++) {
+				// beyond this every number is zero or infinite anyway
+				if(exponent < 100_000) exponent = exponent * 10 + (c - '0');
+			}
+			power += negativeExponent ? -exponent : exponent;
+		}
+		if(i != end) return fallback(s, from, to);
+		
+		double result = toDouble(negative, digits, power);
+		if(truncated && !Double.isNaN(result)
+				&& result != toDouble(negative, digits + 1, power)) {
+			result = Double.NaN;
+		}
+		return Double.isNaN(result) ? fallback(s, from, to) : result;
+	}
+	
+	/** Returns {@code digits * 10^power} correctly rounded, or
+	 * {@code NaN} if that cannot be determined quickly. */
+	static double toDouble(boolean negative, long digits, int power) {
+		if(digits == 0 || power < MIN_POWER) return negative ? -0.0 : 0.0;
+		if(power > MAX_POWER) return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		
+		if(digits <= MAX_EXACT && digits > 0) {
+			double d = Double.NaN;
+			if(power >= 0 && power <= 22) {
+				d = digits * EXACT_POWERS[power];
+			} else if(power < 0 && power >= -22) {
+				d = digits / EXACT_POWERS[-power];
+			} else if(power > 22 && power <= 22 + 15) {
+				long scaled = digits;
+				for(int p = power - 22; p > 0 && scaled <= MAX_EXACT; p--) scaled *= 10;
+				if(scaled <= MAX_EXACT) d = scaled * EXACT_POWERS[22];
+			}
+			if(!Double.isNaN(d)) return negative ? -d : d;
+		}
+		return eiselLemire(negative, digits, power);
+	}
+	
+	private static double eiselLemire(boolean negative, long digits, int power) {
+		int index = power - MIN_POWER;
+		long factor = POWERS_HIGH[index];
+		long exponent = (((152170L + 65536L) * power) >> 16) + 1024 + 63;
+		int lz = Long.numberOfLeadingZeros(digits);
+		long w = digits << lz;
+		
+		long upper = multiplyHigh(w, factor);
+		long lower = w * factor;
+		if((upper & 0x1FF) == 0x1FF && Long.compareUnsigned(lower + w, lower) < 0) {
+			long factorLow = POWERS_LOW[index];
+			long productLow = w * factorLow;
+			long productMiddle = lower + multiplyHigh(w, factorLow);
+			if(Long.compareUnsigned(productMiddle, lower) < 0) upper++;
+			if((upper & 0x1FF) == 0x1FF && productMiddle + 1 == 0
+					&& Long.compareUnsigned(productLow + w, productLow) < 0) {
+				return Double.NaN;
+			}
+			lower = productMiddle;
+		}
+		
+		long upperBit = upper >>> 63;
+		long mantissa = upper >>> (upperBit + 9);
+		lz += (int) (1 ^ upperBit);
+		if(lower == 0 && (upper & 0x1FF) == 0 && (mantissa & 3) == 1) {
+			// exactly halfway between two doubles
+			return Double.NaN;
+		}
+		mantissa = (mantissa + 1) >>> 1;
+		if(mantissa >= 1L << 53) {
+			mantissa = 1L << 52;
+			lz--;
+		}
+		mantissa &= ~(1L << 52);
+		long realExponent = exponent - lz;
+		if(realExponent < 1 || realExponent > 2046) {
+			// subnormal or infinite, left to the slow path
+			return Double.NaN;
+		}
+		long bits = mantissa | realExponent << 52 | (negative ? 1L << 63 : 0);
+		return Double.longBitsToDouble(bits);
+	}
+	
+	/** Returns the high 64 bits of the unsigned 128-bit product. */
+	private static long multiplyHigh(long x, long y) {
+		long x0 = x & 0xFFFFFFFFL, x1 = x >>> 32;
+		long y0 = y & 0xFFFFFFFFL, y1 = y >>> 32;
+		long p11 = x1 * y1, p01 = x0 * y1, p10 = x1 * y0, p00 = x0 * y0;
+		long middle = p10 + (p00 >>> 32) + (p01 & 0xFFFFFFFFL);
+		return p11 + (middle >>> 32) + (p01 >>> 32);
+	}
+	
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+	
+	private static double fallback(CharSequence s, int from, int to) {
+		return Double.parseDouble(s.subSequence(from, to).toString());
+	}
+}
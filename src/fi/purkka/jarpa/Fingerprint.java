@@ -0,0 +1,95 @@
+package fi.purkka.jarpa;
+
+/** A 128-bit hash of parsed arguments that does not depend on the order
+ * in which the options were given, suitable as a cache key or for
+ * noticing that a configuration has changed.
+ * 
+ * <p>Each option is hashed together with its values in order into two
+ * independent 64-bit lanes, and the hashes of the options are added up.
+ * The hash is computed from the characters of the names and values only,
+ * so it is the same on every JVM and in every run.</p>
+ * 
+ * @see JarpaArgs#fingerprint()
+ * @see JarpaArgs#fingerprint(JarpaArg...) */
+public final class Fingerprint {
+	
+	private static final long SEED_HIGH = 0x6A09E667F3BCC908L;
+	private static final long SEED_LOW = 0xBB67AE8584CAA73BL;
+	private static final long PRIME_HIGH = 0x100000001B3L;
+	private static final long PRIME_LOW = 0x9E3779B97F4A7C15L;
+	
+	private final long high;
+	private final long low;
+	
+	Fingerprint(long high, long low) {
+		this.high = high;
+		this.low = low;
+	}
+	
+	/** Returns the high 64 bits. */
+	public long high() {
+		return high;
+	}
+	
+	/** Returns the low 64 bits, which may be used on their own as a
+	 * 64-bit fingerprint. */
+	public long low() {
+		return low;
+	}
+	
+	/** Returns the fingerprint as 32 hexadecimal digits. */
+	@Override
+	public String toString() {
+		return hex(high) + hex(low);
+	}
+	
+	private static String hex(long value) {
+		String digits = Long.toHexString(value);
+		return "0000000000000000".substring(digits.length()) + digits;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof Fingerprint)) return false;
+		Fingerprint other = (Fingerprint) o;
+		return high == other.high && low == other.low;
+	}
+	
+	@Override
+	public int hashCode() {
+		return Long.hashCode(high ^ low);
+	}
+	
+	/** Returns the high lane of the hash of an option and its values. */
+	static long hashHigh(String name, String[] values) {
+		return hash(name, values, SEED_HIGH, PRIME_HIGH);
+	}
+	
+	/** Returns the low lane of the hash of an option and its values. */
+	static long hashLow(String name, String[] values) {
+		return hash(name, values, SEED_LOW, PRIME_LOW);
+	}
+	
+	private static long hash(String name, String[] values, long seed, long prime) {
+		long h = step(seed, name, prime);
+		for(String value : values) h = step(h, value, prime);
+		return mix((h ^ values.length) * prime);
+	}
+	
+	private static long step(long h, String s, long prime) {
+		for(int i = 0; i < s.length(); i++) {
+			h = (h ^ s.charAt(i)) * prime;
+		}
+		// the length separates "ab", "c" from "a", "bc"
+		return (h ^ (s.length() | 1L << 32)) * prime;
+	}
+	
+	/** The finalizer of MurmurHash3. */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		return h ^ h >>> 33;
+	}
+}
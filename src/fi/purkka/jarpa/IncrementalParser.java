@@ -0,0 +1,320 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArgs.DEFAULT_ARGUMENT;
+import static fi.purkka.jarpa.JarpaArgs.EMPTY_ARRAY;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/** A parser for interactive use that keeps its state between edits of
+ * the command line. It groups the tokens like {@link SpacedParser}.
+ * 
+ * <p>An edit only classifies the new tokens and regroups the arguments
+ * around the edited region; the values of other arguments are left as
+ * they are. {@link IncrementalParser#get(JarpaArg)} remembers the value
+ * or failure of each argument together with the raw values it was
+ * converted from, and only runs the value parser and conditions again
+ * when those have changed. Arguments are remembered by identity, so the
+ * same {@code JarpaArg} instances should be passed on every call.</p>
+ * 
+ * <p>{@code IncrementalParser parser = JarpaParser.parsing(args).incremental();}<br>
+ * {@code parser.replace(2, 3, "-n", "5");}<br>
+ * {@code int n = parser.get(JarpaArg.integer("-n"));}</p>
+ * 
+ * <p>Instances are not thread-safe.</p> */
+public final class IncrementalParser {
+	
+	private final Tokenizer tokenizer;
+	private String[] tokens;
+	/** The kinds of the tokens without regard to the terminator. */
+	private byte[] kinds;
+	private int size;
+	/** The index of the first terminator or {@code -1}. */
+	private int terminator = -1;
+	/** The total length of the tokens, checked against the limits. */
+	private long totalLength = 0;
+	
+	private final JarpaArgs args = new JarpaArgs();
+	private final Map<String, Integer> occurrences = new HashMap<>();
+	private final Map<JarpaArg<?>, Cached> cache = new IdentityHashMap<>();
+	
+	IncrementalParser(String[] initial, Tokenizer tokenizer) {
+		this.tokenizer = tokenizer;
+		tokens = new String[Math.max(16, initial.length)];
+		kinds = new byte[tokens.length];
+		replace(0, 0, initial);
+	}
+	
+	/** Returns the current tokens. */
+	public String[] tokens() {
+		return Arrays.copyOf(tokens, size);
+	}
+	
+	/** Returns the number of current tokens. */
+	public int size() {
+		return size;
+	}
+	
+	/** Replaces the tokens from {@code from} (inclusive) to {@code to}
+	 * (exclusive) with the given tokens. Inserting and removing tokens are
+	 * special cases of this.
+	 * @throws IndexOutOfBoundsException if the range is not valid */
+	public void replace(int from, int to, String...replacement) {
+		if(from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("Range " + from + ".." + to
+					+ " of " + size + " tokens");
+		}
+		int delta = replacement.length - (to - from);
+		checkLimits(from, to, replacement, delta);
+		
+		boolean afterTerminator = terminator != -1 && terminator < from;
+		boolean regroupAll = !afterTerminator && terminator >= from && terminator < to;
+		int spanStart = -1, spanEnd = size;
+		if(!afterTerminator && !regroupAll) {
+			spanStart = from - 1;
+			while(spanStart >= 0 && kinds[spanStart] != Tokenizer.OPTION) spanStart--;
+			spanEnd = to;
+			while(spanEnd < size && kinds[spanEnd] != Tokenizer.OPTION
+					&& kinds[spanEnd] != Tokenizer.TERMINATOR) spanEnd++;
+			regroupAll = !forgetOptions(spanStart, spanEnd);
+		}
+		
+		ensureCapacity(size + delta);
+		System.arraycopy(tokens, to, tokens, to + delta, size - to);
+		System.arraycopy(kinds, to, kinds, to + delta, size - to);
+		for(int i = 0; i < replacement.length; i++) {
+			String token = Objects.requireNonNull(replacement[i]);
+			tokens[from + i] = token;
+			kinds[from + i] = tokenizer.kind(token);
+			if(kinds[from + i] == Tokenizer.TERMINATOR && !afterTerminator
+					&& (terminator == -1 || terminator >= to)) {
+				regroupAll = true;
+			}
+		}
+		for(int i = size + delta; i < size; i++) tokens[i] = null;
+		size += delta;
+		
+		if(regroupAll) {
+			terminator = indexOfTerminator();
+			regroup(0, firstGroupEnd(), true);
+		} else if(afterTerminator) {
+			putDefaults();
+		} else {
+			if(terminator != -1) terminator += delta;
+			regroup(spanStart, spanEnd + delta, false);
+		}
+	}
+	
+	/** Checks the tokens after an edit against the limits of the parser
+	 * before anything is changed. The number of values of each argument is
+	 * not limited here. */
+	private void checkLimits(int from, int to, String[] replacement, int delta) {
+		ParseLimits limits = tokenizer.limits;
+		if(limits == ParseLimits.none()) return;
+		limits.checkTokenCount(size + delta);
+		long total = totalLength;
+		for(int i = from; i < to; i++) total -= tokens[i].length();
+		for(String token : replacement) total = limits.checkToken(token, total);
+		totalLength = total;
+	}
+	
+	/** Replaces all tokens with the given ones, keeping the common
+	 * beginning and end so that only the part that differs is edited.
+	 * Useful when the whole command line is split again after each
+	 * keystroke. */
+	public void update(String...newTokens) {
+		int prefix = 0;
+		int max = Math.min(size, newTokens.length);
+		while(prefix < max && tokens[prefix].equals(newTokens[prefix])) prefix++;
+		int suffix = 0;
+		while(suffix < max - prefix && tokens[size - 1 - suffix]
+				.equals(newTokens[newTokens.length - 1 - suffix])) suffix++;
+		replace(prefix, size - suffix, Arrays.copyOfRange(newTokens,
+				prefix, newTokens.length - suffix));
+	}
+	
+	/** Returns the value of the given argument like
+	 * {@link JarpaArgs#get(JarpaArg)}, reusing the previous value or
+	 * failure if the raw values of the argument have not changed. Path
+	 * and stream arguments are resolved anew every time, as their streams
+	 * can only be consumed once. */
+	@SuppressWarnings("unchecked")
+	public <T> T get(JarpaArg<T> arg) {
+		String alias = args.usedAlias(arg.aliases);
+		String negator = args.usedAlias(arg.negatorList());
+		String[] raw = alias == null ? null : args.getRaw(alias);
+		String[] negatorRaw = negator == null ? null : args.getRaw(negator);
+		if(!arg.cacheable()) return arg.resolve(args, alias, negator);
+		
+		Cached cached = cache.get(arg);
+		if(cached == null || !cached.matches(alias, negator, raw, negatorRaw)) {
+			cached = new Cached(alias, negator, raw, negatorRaw);
+			try {
+				cached.value = arg.resolve(args, alias, negator);
+			} catch(JarpaException e) {
+				cached.error = e;
+			}
+			cache.put(arg, cached);
+		}
+		if(cached.error != null) throw cached.error;
+		return (T) cached.value;
+	}
+	
+	/** Retrieves the values of the given arguments like
+	 * {@link IncrementalParser#get(JarpaArg)}, recording failures per
+	 * argument in the returned {@link ArgValues}. */
+	public ArgValues getAll(JarpaArg<?>...args) {
+		ArgValues result = new ArgValues();
+		for(JarpaArg<?> arg : args) {
+			try {
+				result.put(arg, get(arg));
+			} catch(JarpaException e) {
+				result.fail(arg, e);
+			}
+		}
+		return result;
+	}
+	
+	/** Returns the fingerprint of the current tokens, which is kept up
+	 * to date by every edit.
+	 * @see JarpaArgs#fingerprint() */
+	public Fingerprint fingerprint() {
+		return args.fingerprint();
+	}
+	
+	/** Returns the arguments in the current tokens that are not any of the
+	 * given ones, as {@link JarpaArgs#finish()} would report them. */
+	public List<String> unknownArguments(JarpaArg<?>...known) {
+		Map<String, Boolean> names = new HashMap<>();
+		for(String key : args.keys()) names.put(key, false);
+		for(JarpaArg<?> arg : known) {
+			for(String alias : arg.aliases) names.replace(alias, true);
+			for(String negator : arg.negatorList()) names.replace(negator, true);
+		}
+		List<String> unknown = new ArrayList<>();
+		for(Map.Entry<String, Boolean> e : names.entrySet()) {
+			if(!e.getValue()) {
+				unknown.add(e.getKey().equals(DEFAULT_ARGUMENT)
+						? "[default argument]" : e.getKey());
+			}
+		}
+		return unknown;
+	}
+	
+	/** Removes the options in the given span from the occurrence counts.
+	 * Returns {@code false} if one of them also occurs elsewhere, in which
+	 * case the span alone cannot be regrouped. */
+	private boolean forgetOptions(int from, int to) {
+		boolean local = true;
+		for(int i = Math.max(from, 0); i < to; i++) {
+			if(kinds[i] != Tokenizer.OPTION) continue;
+			int count = occurrences.merge(tokens[i], -1, Integer::sum);
+			if(count == 0) {
+				occurrences.remove(tokens[i]);
+				args.remove(tokens[i]);
+			} else {
+				local = false;
+			}
+		}
+		return local;
+	}
+	
+	/** Groups the options in the given span, which starts at an option or
+	 * at {@code -1} for the values before the first option. */
+	private void regroup(int from, int to, boolean all) {
+		if(all) {
+			occurrences.clear();
+			args.clear();
+		}
+		boolean local = true;
+		int i = Math.max(from, 0);
+		while(i < to) {
+			if(kinds[i] != Tokenizer.OPTION) { i++; continue; }
+			String option = tokens[i];
+			int start = ++i;
+			while(i < size && isValue(i)) i++;
+			args.put(option, copy(start, i));
+			if(occurrences.merge(option, 1, Integer::sum) > 1) local = false;
+		}
+		if(!local && !all) {
+			// an option given several times takes its last values
+			regroup(0, firstGroupEnd(), true);
+			return;
+		}
+		if(from < 0 || all) putDefaults();
+	}
+	
+	private int firstGroupEnd() {
+		return terminator == -1 ? size : terminator;
+	}
+	
+	private void putDefaults() {
+		int leading = 0;
+		while(leading < size && isValue(leading)) leading++;
+		int tail = terminator == -1 ? 0 : size - terminator - 1;
+		if(leading + tail == 0) {
+			args.remove(DEFAULT_ARGUMENT);
+			return;
+		}
+		String[] defaults = new String[leading + tail];
+		System.arraycopy(tokens, 0, defaults, 0, leading);
+		System.arraycopy(tokens, size - tail, defaults, leading, tail);
+		args.put(DEFAULT_ARGUMENT, defaults);
+	}
+	
+	private boolean isValue(int index) {
+		byte kind = kinds[index];
+		return kind == Tokenizer.VALUE || kind == Tokenizer.NEGATIVE_NUMBER
+				|| terminator != -1 && index > terminator;
+	}
+	
+	private int indexOfTerminator() {
+		for(int i = 0; i < size; i++) {
+			if(kinds[i] == Tokenizer.TERMINATOR) return i;
+		}
+		return -1;
+	}
+	
+	private String[] copy(int start, int end) {
+		if(start >= end) return EMPTY_ARRAY;
+		return Arrays.copyOfRange(tokens, start, end);
+	}
+	
+	private void ensureCapacity(int capacity) {
+		if(capacity <= tokens.length) return;
+		int newLength = Math.max(capacity, tokens.length * 2);
+		tokens = Arrays.copyOf(tokens, newLength);
+		kinds = Arrays.copyOf(kinds, newLength);
+	}
+	
+	/** The value or failure of an argument and what it was resolved from. */
+	private static final class Cached {
+		
+		final String alias;
+		final String negator;
+		final String[] raw;
+		/** The values given to the negator, which flags reject. */
+		final String[] negatorRaw;
+		Object value;
+		JarpaException error;
+		
+		Cached(String alias, String negator, String[] raw, String[] negatorRaw) {
+			this.alias = alias;
+			this.negator = negator;
+			this.raw = raw;
+			this.negatorRaw = negatorRaw;
+		}
+		
+		boolean matches(String alias, String negator, String[] raw, String[] negatorRaw) {
+			return Objects.equals(this.alias, alias)
+					&& Objects.equals(this.negator, negator)
+					&& (this.raw == raw || Arrays.equals(this.raw, raw))
+					&& (this.negatorRaw == negatorRaw || Arrays.equals(this.negatorRaw, negatorRaw));
+		}
+	}
+}
@@ -0,0 +1,837 @@
+package fi.purkka.jarpa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/** An immutable set of {@code int}s stored compactly as sorted, disjoint
+ * ranges, possibly with a step or a repeating pattern, or, when that is
+ * smaller, as a bitmap.
+ * 
+ * <p>Instances are returned by {@link JarpaArg#integerRanges(String)}, which
+ * accepts comma-separated terms of the following forms:</p>
+ * 
+ * <ul>
+ * <li>{@code 5} – a single value</li>
+ * <li>{@code 10..20} – all values from 10 to 20, inclusive</li>
+ * <li>{@code 10..20:2} – every second value from 10 to 20</li>
+ * </ul>
+ * 
+ * <p>A stepped range is kept as its first and last value and its step,
+ * so {@code 0..2000000000:2} takes a few bytes. Ranges cutting into a
+ * stepped range split it, and stepped ranges that interleave are kept as
+ * the pattern they repeat, so {@code 0..2000000000:2,1..2000000001:2}
+ * becomes the single range {@code 0..2000000001}. Interleaving steps
+ * whose pattern would repeat less often than every {@value #MAX_PERIOD}
+ * values are only accepted over a span small enough for a bitmap.
+ * {@code contains} takes logarithmic time in the number of ranges
+ * (constant for bitmaps) and iteration happens in ascending order.</p> */
+public final class IntRangeSet implements Iterable<Integer> {
+	
+	/** Inputs with at least this many characters are parsed in parallel. */
+	static final int PARALLEL_THRESHOLD = 1 << 16;
+	private static final int CHUNK_SIZE = 1 << 14;
+	/** The longest pattern interleaving stepped ranges are kept as. */
+	static final int MAX_PERIOD = 1 << 12;
+	/** The most words of a bitmap for stepped ranges that cannot be kept
+	 * as a pattern. */
+	private static final int MAX_FALLBACK_WORDS = 1 << 16;
+	
+	private static final IntRangeSet EMPTY = new IntRangeSet(new int[0], new int[0], null, null, 0);
+	
+	/** Inclusive ranges ending at their last value, or {@code null} if a
+	 * bitmap is used. */
+	private final int[] starts, ends;
+	/** The step of each range, or {@code null} if every step is one. */
+	private final int[] steps;
+	/** For each range, the bits of the offsets from its start, modulo its
+	 * step, that are in it, or {@code null} for only offset zero. The array
+	 * itself is {@code null} if no range has a pattern. */
+	private final long[][] patterns;
+	/** Bitmap of values from {@code base}, or {@code null} if ranges are used. */
+	private final long[] words;
+	private final int base;
+	private final long cardinality;
+	
+	private IntRangeSet(int[] starts, int[] ends, int[] steps, long[][] patterns, long cardinality) {
+		this.starts = starts;
+		this.ends = ends;
+		this.steps = steps;
+		this.patterns = patterns;
+		this.words = null;
+		this.base = 0;
+		this.cardinality = cardinality;
+	}
+	
+	private IntRangeSet(long[] words, int base, long cardinality) {
+		this.starts = null;
+		this.ends = null;
+		this.steps = null;
+		this.patterns = null;
+		this.words = words;
+		this.base = base;
+		this.cardinality = cardinality;
+	}
+	
+	/** Returns whether the given value is in this set. */
+	public boolean contains(int value) {
+		if(words != null) {
+			long offset = (long) value - base;
+			if(offset < 0 || offset >= (long) words.length << 6) return false;
+			return (words[(int) (offset >>> 6)] & 1L << offset) != 0;
+		}
+		int i = Arrays.binarySearch(starts, value);
+		if(i >= 0) return true;
+		i = -i - 2;
+		return i >= 0 && value <= ends[i]
+				&& hasOffset(pattern(i), step(i), (long) value - starts[i]);
+	}
+	
+	/** Returns the number of values in this set. */
+	public long cardinality() {
+		return cardinality;
+	}
+	
+	/** Returns whether this set contains no values. */
+	public boolean isEmpty() {
+		return cardinality == 0;
+	}
+	
+	/** Returns the smallest value in this set.
+	 * @throws NoSuchElementException if the set is empty */
+	public int min() {
+		if(isEmpty()) throw new NoSuchElementException();
+		return words != null ? iterator().nextInt() : starts[0];
+	}
+	
+	/** Returns the greatest value in this set.
+	 * @throws NoSuchElementException if the set is empty */
+	public int max() {
+		if(isEmpty()) throw new NoSuchElementException();
+		if(words == null) return ends[ends.length - 1];
+		int last = words.length - 1;
+		return base + (last << 6) + 63 - Long.numberOfLeadingZeros(words[last]);
+	}
+	
+	/** Returns the number of disjoint ranges of consecutive values the
+	 * values form, or {@code Integer.MAX_VALUE} if there are more. */
+	public int rangeCount() {
+		if(words != null) return runs().length;
+		long count = 0;
+		long previousEnd = Long.MIN_VALUE;
+		for(int i = 0; i < starts.length; i++) {
+			boolean joins = starts[i] == previousEnd + 1;
+			long ranges;
+			if(step(i) == 1) {
+				ranges = 1;
+			} else if(pattern(i) == null) {
+				// every value of a stepped range is a range of its own
+				ranges = size(i);
+			} else {
+				ranges = rangeStarts(i);
+			}
+			count += joins ? ranges - 1 : ranges;
+			previousEnd = ends[i];
+		}
+		return (int) Math.min(count, Integer.MAX_VALUE);
+	}
+	
+	private int step(int range) {
+		return steps == null ? 1 : steps[range];
+	}
+	
+	private long[] pattern(int range) {
+		return patterns == null ? null : patterns[range];
+	}
+	
+	private long size(int range) {
+		return size(starts[range], ends[range], step(range), pattern(range));
+	}
+	
+	private static long size(long start, long end, int step, long[] pattern) {
+		long span = end - start;
+		if(pattern == null) return span / step + 1;
+		return span / step * bitCount(pattern, step) + bitCount(pattern, (int) (span % step) + 1);
+	}
+	
+	/** Returns the number of values of a patterned range that do not
+	 * follow another value. */
+	private long rangeStarts(int range) {
+		long[] pattern = pattern(range);
+		int step = step(range);
+		long length = (long) ends[range] - starts[range] + 1;
+		long count = length / step * rangeStartBits(pattern, step, step)
+				+ rangeStartBits(pattern, step, (int) (length % step));
+		// the first value starts a range even if the pattern wraps into it
+		if(hasBit(pattern, step - 1)) count++;
+		return count;
+	}
+	
+	private static int rangeStartBits(long[] pattern, int step, int limit) {
+		int count = 0;
+		for(int bit = 0; bit < limit; bit++) {
+			if(hasBit(pattern, bit) && !hasBit(pattern, (bit + step - 1) % step)) count++;
+		}
+		return count;
+	}
+	
+	/** Returns whether the value at the given offset from the start of a
+	 * range is in the range. */
+	private static boolean hasOffset(long[] pattern, int step, long offset) {
+		long phase = offset % step;
+		return pattern == null ? phase == 0 : hasBit(pattern, (int) phase);
+	}
+	
+	/** Returns the value after the given one in a range, which may be past
+	 * its end. */
+	private static long next(long start, int step, long[] pattern, long value) {
+		if(pattern == null) return value + step;
+		int phase = (int) ((value - start) % step);
+		int bit = nextBit(pattern, phase + 1, step);
+		// the pattern always starts with a value
+		return value - phase + (bit == -1 ? step : bit);
+	}
+	
+	private static boolean hasBit(long[] bits, int bit) {
+		return (bits[bit >>> 6] & 1L << bit) != 0;
+	}
+	
+	/** Returns the first set bit from {@code from} below {@code limit}, or
+	 * {@code -1}. */
+	private static int nextBit(long[] bits, int from, int limit) {
+		for(int bit = from; bit < limit; bit++) {
+			if(hasBit(bits, bit)) return bit;
+		}
+		return -1;
+	}
+	
+	private static int bitCount(long[] bits, int limit) {
+		int count = 0;
+		for(int word = 0; word << 6 < limit; word++) {
+			int rest = limit - (word << 6);
+			long mask = rest >= 64 ? -1L : (1L << rest) - 1;
+			count += Long.bitCount(bits[word] & mask);
+		}
+		return count;
+	}
+	
+	/** Returns the values in ascending order without boxing. */
+	@Override
+	public PrimitiveIterator.OfInt iterator() {
+		return words != null ? new BitmapIterator() : new RangeIterator();
+	}
+	
+	/** Returns the values in ascending order. */
+	public IntStream stream() {
+		return StreamSupport.intStream(Spliterators.spliterator(iterator(),
+				cardinality, Spliterator.ORDERED | Spliterator.SORTED
+				| Spliterator.DISTINCT | Spliterator.NONNULL), false);
+	}
+	
+	/** Returns the values as a sorted array.
+	 * @throws IllegalStateException if there are too many values for an array */
+	public int[] toArray() {
+		if(cardinality > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("Too many values: " + cardinality);
+		}
+		int[] arr = new int[(int) cardinality];
+		PrimitiveIterator.OfInt it = iterator();
+		for(int i = 0; i < arr.length; i++) arr[i] = it.nextInt();
+		return arr;
+	}
+	
+	/** Returns the ranges of consecutive values of a bitmap as
+	 * {@code start << 32 | end} pairs. */
+	private long[] runs() {
+		LongList runs = new LongList();
+		PrimitiveIterator.OfInt it = iterator();
+		if(!it.hasNext()) return new long[0];
+		int start = it.nextInt(), end = start;
+		while(it.hasNext()) {
+			int next = it.nextInt();
+			if(next != end + 1) {
+				runs.add(pack(start, end));
+				start = next;
+			}
+			end = next;
+		}
+		runs.add(pack(start, end));
+		return runs.toArray();
+	}
+	
+	/** Compares the values, which takes time linear in their number
+	 * unless the sets are stored the same way. */
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof IntRangeSet)) return false;
+		IntRangeSet other = (IntRangeSet) o;
+		if(cardinality != other.cardinality) return false;
+		if(isEmpty()) return true;
+		if(min() != other.min() || max() != other.max()) return false;
+		if(words == null && other.words == null && Arrays.equals(starts, other.starts)
+				&& Arrays.equals(ends, other.ends) && Arrays.equals(steps, other.steps)
+				&& Arrays.deepEquals(patterns, other.patterns)) {
+			return true;
+		}
+		PrimitiveIterator.OfInt mine = iterator(), theirs = other.iterator();
+		while(mine.hasNext()) {
+			if(mine.nextInt() != theirs.nextInt()) return false;
+		}
+		return true;
+	}
+	
+	@Override
+	public int hashCode() {
+		if(isEmpty()) return 0;
+		return Long.hashCode(cardinality) * 31 * 31 + min() * 31 + max();
+	}
+	
+	/** Returns the set in the syntax accepted by
+	 * {@link JarpaArg#integerRanges(String)}, such as {@code 1..5,7,10..20:2}. */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		if(words != null) {
+			for(long run : runs()) append(sb, (int) (run >> 32), (int) run, 1);
+		} else {
+			for(int i = 0; i < starts.length; i++) {
+				long[] pattern = pattern(i);
+				if(pattern == null) {
+					append(sb, starts[i], ends[i], step(i));
+					continue;
+				}
+				// a patterned range is written as a stepped range per offset
+				int step = step(i);
+				for(int bit = 0; bit < step && (long) starts[i] + bit <= ends[i]; bit++) {
+					if(!hasBit(pattern, bit)) continue;
+					int first = starts[i] + bit;
+					append(sb, first, (int) (first + ((long) ends[i] - first) / step * step), step);
+				}
+			}
+		}
+		return sb.toString();
+	}
+	
+	private static void append(StringBuilder sb, int start, int end, int step) {
+		if(sb.length() > 0) sb.append(',');
+		sb.append(start);
+		if(end == start) return;
+		sb.append("..").append(end);
+		if(step != 1) sb.append(':').append(step);
+	}
+	
+	private static long pack(int start, int end) {
+		return (long) start << 32 | end & 0xFFFFFFFFL;
+	}
+	
+	static IntRangeSet parse(String[] values) {
+		long length = 0;
+		for(String value : values) length += value.length();
+		if(length < PARALLEL_THRESHOLD) {
+			Builder builder = new Builder();
+			for(String value : values) builder.parse(value, 0, value.length());
+			return builder.build();
+		}
+		return chunks(values).parallelStream()
+				.map(chunk -> {
+					Builder builder = new Builder();
+					for(int i = 0; i < chunk.size(); i += 3) {
+						String value = values[chunk.get(i)];
+						builder.parse(value, chunk.get(i + 1), chunk.get(i + 2));
+					}
+					return builder;
+				})
+				.reduce(Builder::addAll)
+				.orElseGet(Builder::new)
+				.build();
+	}
+	
+	/** Splits the values into chunks of about {@code CHUNK_SIZE} characters,
+	 * each a list of {@code (value index, from, to)} triples. Long values are
+	 * split at commas. */
+	private static List<List<Integer>> chunks(String[] values) {
+		List<List<Integer>> chunks = new ArrayList<>();
+		List<Integer> chunk = new ArrayList<>();
+		int size = 0;
+		for(int v = 0; v < values.length; v++) {
+			String value = values[v];
+			int from = 0;
+			while(true) {
+				int to = value.length();
+				if(to - from > CHUNK_SIZE) {
+					int comma = Chars.indexOf(value, ',', from + CHUNK_SIZE, to);
+					if(comma != -1) to = comma;
+				}
+				chunk.add(v);
+				chunk.add(from);
+				chunk.add(to);
+				size += to - from;
+				if(size >= CHUNK_SIZE) {
+					chunks.add(chunk);
+					chunk = new ArrayList<>();
+					size = 0;
+				}
+				if(to == value.length()) break;
+				from = to + 1;
+			}
+		}
+		if(!chunk.isEmpty()) chunks.add(chunk);
+		return chunks;
+	}
+	
+	/** Collects ranges in any order and normalizes them into a set. */
+	static final class Builder {
+		
+		private final LongList ranges = new LongList();
+		/** Ranges with a step of more than one, and their steps. */
+		private final LongList stepped = new LongList();
+		private final LongList strides = new LongList();
+		
+		/** Parses the comma-separated terms in the given part of a value. */
+		void parse(String s, int from, int to) {
+			int start = from;
+			for(int i = from; i <= to; i++) {
+				if(i == to || s.charAt(i) == ',') {
+					term(s, start, i);
+					start = i + 1;
+				}
+			}
+		}
+		
+		private void term(String s, int from, int to) {
+			int dots = from;
+			while(dots < to - 1 && !(s.charAt(dots) == '.' && s.charAt(dots + 1) == '.')) {
+				dots++;
+			}
+			if(dots >= to - 1) {
+				int value = Chars.parseInt(s, from, to);
+				add(value, value, 1);
+				return;
+			}
+			int colon = Chars.indexOf(s, ':', dots + 2, to);
+			int end = colon == -1 ? to : colon;
+			int first = Chars.parseInt(s, from, dots);
+			int last = Chars.parseInt(s, dots + 2, end);
+			int step = colon == -1 ? 1 : Chars.parseInt(s, colon + 1, to);
+			if(first > last || step < 1) {
+				throw new NumberFormatException("Invalid range \""
+						+ s.substring(from, to) + "\"");
+			}
+			add(first, last, step);
+		}
+		
+		void add(int first, int last, int step) {
+			// end the range at its last value
+			last = (int) (first + ((long) last - first) / step * step);
+			if(step == 1 || first == last) {
+				ranges.add(pack(first, last));
+			} else {
+				stepped.add(pack(first, last));
+				strides.add(step);
+			}
+		}
+		
+		Builder addAll(Builder other) {
+			ranges.addAll(other.ranges);
+			stepped.addAll(other.stepped);
+			strides.addAll(other.strides);
+			return this;
+		}
+		
+		IntRangeSet build() {
+			long[] sorted = ranges.toArray();
+			int count = merge(sorted);
+			if(stepped.size() > 0) return buildStepped(sorted, count);
+			if(count == 0) return EMPTY;
+			
+			long cardinality = 0;
+			for(int i = 0; i < count; i++) {
+				cardinality += (long) (int) sorted[i] - (int) (sorted[i] >> 32) + 1;
+			}
+			
+			int min = (int) (sorted[0] >> 32);
+			int max = (int) sorted[count - 1];
+			long wordCount = ((long) max - min + 64) >>> 6;
+			if(wordCount < count) {
+				long[] words = new long[(int) wordCount];
+				for(int i = 0; i < count; i++) {
+					long from = (sorted[i] >> 32) - min;
+					long to = (int) sorted[i] - (long) min;
+					for(long bit = from; bit <= to; bit++) {
+						words[(int) (bit >>> 6)] |= 1L << bit;
+					}
+				}
+				return new IntRangeSet(words, min, cardinality);
+			}
+			
+			int[] starts = new int[count], ends = new int[count];
+			for(int i = 0; i < count; i++) {
+				starts[i] = (int) (sorted[i] >> 32);
+				ends[i] = (int) sorted[i];
+			}
+			return new IntRangeSet(starts, ends, null, null, cardinality);
+		}
+		
+		/** Sorts the ranges and merges overlapping and adjacent ones to the
+		 * front of the array, returning their number. */
+		private static int merge(long[] sorted) {
+			if(sorted.length > CHUNK_SIZE) {
+				Arrays.parallelSort(sorted);
+			} else {
+				Arrays.sort(sorted);
+			}
+			
+			int count = 0;
+			for(int i = 0; i < sorted.length; i++) {
+				int start = (int) (sorted[i] >> 32), end = (int) sorted[i];
+				if(count > 0) {
+					int lastEnd = (int) sorted[count - 1];
+					if((long) start <= (long) lastEnd + 1) {
+						if(end > lastEnd) {
+							sorted[count - 1] = pack((int) (sorted[count - 1] >> 32), end);
+						}
+						continue;
+					}
+				}
+				sorted[count++] = sorted[i];
+			}
+			return count;
+		}
+		
+		/** Builds a set including stepped ranges. The ranges are swept from
+		 * the lowest value up, between each pair of values where a range
+		 * starts or stops. Where a plain range is present, every value is;
+		 * elsewhere the stepped ranges present combine into a pattern that
+		 * repeats with the least common multiple of their steps. Consecutive
+		 * parts that continue the same step and pattern are joined. */
+		private IntRangeSet buildStepped(long[] plain, int plainCount) {
+			long[] range = stepped.toArray(), stride = strides.toArray();
+			int total = plainCount + range.length;
+			int[] firsts = new int[total], lasts = new int[total], steps = new int[total];
+			for(int i = 0; i < total; i++) {
+				long packed = i < plainCount ? plain[i] : range[i - plainCount];
+				firsts[i] = (int) (packed >> 32);
+				lasts[i] = (int) packed;
+				steps[i] = i < plainCount ? 1 : (int) stride[i - plainCount];
+			}
+			
+			long[] bounds = new long[2 * total];
+			long[] byFirst = new long[total], byLast = new long[total];
+			for(int i = 0; i < total; i++) {
+				bounds[2 * i] = firsts[i];
+				bounds[2 * i + 1] = lasts[i] + 1L;
+				// sort by value, keeping the index in the low bits
+				byFirst[i] = (long) firsts[i] << 32 | i;
+				byLast[i] = (long) lasts[i] << 32 | i;
+			}
+			Arrays.sort(bounds);
+			Arrays.sort(byFirst);
+			Arrays.sort(byLast);
+			
+			Segments segments = new Segments();
+			int[] active = new int[range.length];
+			int activeCount = 0, plainActive = 0;
+			int started = 0, stopped = 0;
+			for(int b = 0; b < bounds.length - 1; b++) {
+				long lo = bounds[b], hi = bounds[b + 1] - 1;
+				while(stopped < total && (byLast[stopped] >> 32) < lo) {
+					int i = (int) byLast[stopped++];
+					if(i < plainCount) {
+						plainActive--;
+						continue;
+					}
+					for(int k = 0; k < activeCount; k++) {
+						if(active[k] == i) {
+							active[k] = active[--activeCount];
+							break;
+						}
+					}
+				}
+				while(started < total && (byFirst[started] >> 32) <= lo) {
+					int i = (int) byFirst[started++];
+					if(i < plainCount) {
+						plainActive++;
+					} else {
+						active[activeCount++] = i;
+					}
+				}
+				if(hi < lo) continue;
+				
+				if(plainActive > 0 && !(lo == hi && covered(lo, active, activeCount, firsts, steps))) {
+					segments.add(lo, hi, 1, null);
+				} else if(activeCount == 1) {
+					int i = active[0], step = steps[i];
+					long first = lo + Math.floorMod(firsts[i] - lo, (long) step);
+					if(first <= hi) segments.add(first, first + (hi - first) / step * step, step, null);
+				} else if(activeCount > 1) {
+					long period = 1;
+					for(int k = 0; k < activeCount; k++) {
+						period = lcm(period, steps[active[k]]);
+						if(period > MAX_PERIOD) return buildBitmap(firsts, lasts, steps);
+					}
+					interleave(segments, lo, hi, (int) period, active, activeCount, firsts, steps);
+				}
+			}
+			return segments.build();
+		}
+		
+		/** Returns whether a value is in one of the given stepped ranges,
+		 * all present at the value. */
+		private static boolean covered(long value, int[] active, int activeCount,
+				int[] firsts, int[] steps) {
+			for(int k = 0; k < activeCount; k++) {
+				if((value - firsts[active[k]]) % steps[active[k]] == 0) return true;
+			}
+			return false;
+		}
+		
+		/** Adds the values of the given stepped ranges, all present from
+		 * {@code lo} to {@code hi}, as a range with a pattern. */
+		private static void interleave(Segments segments, long lo, long hi, int period,
+				int[] active, int activeCount, int[] firsts, int[] steps) {
+			long[] pattern = new long[(period + 63) >>> 6];
+			for(int k = 0; k < activeCount; k++) {
+				int i = active[k], step = steps[i];
+				for(long bit = Math.floorMod(firsts[i] - lo, (long) step); bit < period; bit += step) {
+					pattern[(int) (bit >>> 6)] |= 1L << bit;
+				}
+			}
+			int first = nextBit(pattern, 0, period);
+			if(lo + first > hi) return;
+			long start = lo + first;
+			
+			// start the pattern at the first value and shorten it if it repeats
+			long[] rotated = new long[pattern.length];
+			for(int bit = 0; bit < period; bit++) {
+				if(hasBit(pattern, (first + bit) % period)) rotated[bit >>> 6] |= 1L << bit;
+			}
+			int shortest = shortestPeriod(rotated, period);
+			pattern = Arrays.copyOf(rotated, (shortest + 63) >>> 6);
+			if(shortest % 64 != 0) pattern[pattern.length - 1] &= (1L << shortest) - 1;
+			
+			int phase = (int) ((hi - start) % shortest);
+			int last = phase;
+			while(!hasBit(pattern, last)) last--;
+			long end = hi - (phase - last);
+			segments.add(start, end, shortest, bitCount(pattern, shortest) == 1 ? null : pattern);
+		}
+		
+		private static int shortestPeriod(long[] pattern, int period) {
+			for(int divisor = 1; divisor < period; divisor++) {
+				if(period % divisor != 0) continue;
+				boolean repeats = true;
+				for(int bit = divisor; bit < period && repeats; bit++) {
+					repeats = hasBit(pattern, bit) == hasBit(pattern, bit % divisor);
+				}
+				if(repeats) return divisor;
+			}
+			return period;
+		}
+		
+		private static long lcm(long a, long b) {
+			long x = a, y = b;
+			while(y != 0) {
+				long t = x % y;
+				x = y;
+				y = t;
+			}
+			return a / x * b;
+		}
+		
+		/** Sets the values of ranges that cannot be kept as a pattern in a
+		 * bitmap, if their span is small enough. */
+		private static IntRangeSet buildBitmap(int[] firsts, int[] lasts, int[] steps) {
+			long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+			for(int i = 0; i < firsts.length; i++) {
+				min = Math.min(min, firsts[i]);
+				max = Math.max(max, lasts[i]);
+			}
+			long wordCount = (max - min + 64) >>> 6;
+			if(wordCount > Math.max(MAX_FALLBACK_WORDS, 4L * firsts.length)) {
+				throw JarpaException.limitExceeded("stepped ranges interleaving over "
+						+ (max - min + 1) + " values with a period of more than " + MAX_PERIOD);
+			}
+			long[] words = new long[(int) wordCount];
+			for(int i = 0; i < firsts.length; i++) {
+				for(long v = firsts[i]; v <= lasts[i]; v += steps[i]) {
+					long bit = v - min;
+					words[(int) (bit >>> 6)] |= 1L << bit;
+				}
+			}
+			long cardinality = 0;
+			for(long word : words) cardinality += Long.bitCount(word);
+			return new IntRangeSet(words, (int) min, cardinality);
+		}
+	}
+	
+	/** Collects disjoint ranges in ascending order, joining a range with
+	 * the previous one when it continues it. */
+	private static final class Segments {
+		
+		private final LongList starts = new LongList(), ends = new LongList(), steps = new LongList();
+		private final List<long[]> patterns = new ArrayList<>();
+		
+		void add(long start, long end, int step, long[] pattern) {
+			if(start == end) {
+				step = 1;
+				pattern = null;
+			}
+			int last = steps.size() - 1;
+			if(last >= 0) {
+				long lastStart = starts.get(last), lastEnd = ends.get(last);
+				int lastStep = (int) steps.get(last);
+				long[] lastPattern = patterns.get(last);
+				if(start == end && start == next(lastStart, lastStep, lastPattern, lastEnd)) {
+					// a single value continuing the previous range
+					ends.set(last, end);
+					return;
+				}
+				if(lastStart == lastEnd && pattern == null && start - lastEnd == step) {
+					// a single value starting this range
+					ends.set(last, end);
+					steps.set(last, step);
+					return;
+				}
+				if(lastStep == step && Arrays.equals(lastPattern, pattern)
+						&& (start - lastStart) % step == 0
+						&& start == next(lastStart, step, pattern, lastEnd)) {
+					ends.set(last, end);
+					return;
+				}
+			}
+			starts.add(start);
+			ends.add(end);
+			steps.add(step);
+			patterns.add(pattern);
+		}
+		
+		IntRangeSet build() {
+			int count = steps.size();
+			long cardinality = 0;
+			boolean stepped = false, patterned = false;
+			for(int i = 0; i < count; i++) {
+				int step = (int) steps.get(i);
+				cardinality += size(starts.get(i), ends.get(i), step, patterns.get(i));
+				stepped |= step != 1;
+				patterned |= patterns.get(i) != null;
+			}
+			
+			long min = starts.get(0), max = ends.get(count - 1);
+			long wordCount = (max - min + 64) >>> 6;
+			if(wordCount < count) {
+				long[] words = new long[(int) wordCount];
+				for(int i = 0; i < count; i++) {
+					long start = starts.get(i), end = ends.get(i);
+					int step = (int) steps.get(i);
+					long[] pattern = patterns.get(i);
+					for(long v = start; v <= end; v = next(start, step, pattern, v)) {
+						long bit = v - min;
+						words[(int) (bit >>> 6)] |= 1L << bit;
+					}
+				}
+				return new IntRangeSet(words, (int) min, cardinality);
+			}
+			
+			int[] starts = new int[count], ends = new int[count];
+			int[] steps = stepped ? new int[count] : null;
+			long[][] patterns = patterned ? this.patterns.toArray(new long[count][]) : null;
+			for(int i = 0; i < count; i++) {
+				starts[i] = (int) this.starts.get(i);
+				ends[i] = (int) this.ends.get(i);
+				if(stepped) steps[i] = (int) this.steps.get(i);
+			}
+			return new IntRangeSet(starts, ends, steps, patterns, cardinality);
+		}
+	}
+	
+	private final class RangeIterator implements PrimitiveIterator.OfInt {
+		
+		private int range = 0;
+		private long next = starts.length == 0 ? 0 : starts[0];
+		
+		@Override
+		public boolean hasNext() {
+			return range < starts.length;
+		}
+		
+		@Override
+		public int nextInt() {
+			if(!hasNext()) throw new NoSuchElementException();
+			int value = (int) next;
+			if(next == ends[range]) {
+				range++;
+				if(range < starts.length) next = starts[range];
+			} else {
+				next = IntRangeSet.next(starts[range], step(range), pattern(range), next);
+			}
+			return value;
+		}
+	}
+	
+	private final class BitmapIterator implements PrimitiveIterator.OfInt {
+		
+		private int word = 0;
+		private long bits = words.length == 0 ? 0 : words[0];
+		
+		@Override
+		public boolean hasNext() {
+			while(bits == 0) {
+				if(++word >= words.length) return false;
+				bits = words[word];
+			}
+			return true;
+		}
+		
+		@Override
+		public int nextInt() {
+			if(!hasNext()) throw new NoSuchElementException();
+			int bit = Long.numberOfTrailingZeros(bits);
+			bits &= bits - 1;
+			return base + (word << 6) + bit;
+		}
+	}
+	
+	/** A growable array of {@code long}s. */
+	static final class LongList {
+		
+		private long[] elements = new long[16];
+		private int size = 0;
+		
+		void add(long value) {
+			if(size == elements.length) {
+				elements = Arrays.copyOf(elements, size * 2);
+			}
+			elements[size++] = value;
+		}
+		
+		void addAll(LongList other) {
+			if(size + other.size > elements.length) {
+				elements = Arrays.copyOf(elements, Math.max(size + other.size, size * 2));
+			}
+			System.arraycopy(other.elements, 0, elements, size, other.size);
+			size += other.size;
+		}
+		
+		int size() {
+			return size;
+		}
+		
+		long get(int index) {
+			return elements[index];
+		}
+		
+		void set(int index, long value) {
+			elements[index] = value;
+		}
+		
+		long[] toArray() {
+			return Arrays.copyOf(elements, size);
+		}
+	}
+}
@@ -1,13 +1,19 @@
 package fi.purkka.jarpa;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import fi.purkka.jarpa.ValueParser.SingleValueParser;
 import fi.purkka.jarpa.conditions.Condition;
+import fi.purkka.jarpa.conditions.PathCondition;
 
 /** Represents a single argument that may optionally have some
  * <i>values</i> associated with it.
@@ -36,6 +42,9 @@ import fi.purkka.jarpa.conditions.Condition;
  * @param <T> The type of value this argument represents */
 public abstract class JarpaArg<T> {
 	
+	/** Arrays with at least this many values are converted in parallel. */
+	static final int PARALLEL_THRESHOLD = 1 << 13;
+	
 	List<String> aliases = new ArrayList<>();
 	final ValueParser<T> valParser;
 	private final List<Condition<T>> conditions = new ArrayList<>();
@@ -81,6 +90,7 @@ public abstract class JarpaArg<T> {
 	void verifyConditions(T value) {
 		for(Condition<T> condition : conditions) {
 			if(!(condition.predicate.test(value))) {
+				Listeners.conditionFailed(mainAlias(), condition.message);
 				throw JarpaException.failedConditon(mainAlias(),
 						condition.message);
 			}
@@ -90,10 +100,66 @@ public abstract class JarpaArg<T> {
 	/** Makes this argument <i>optional</i>, meaning that leaving it
 	 * missing causes no error. */
 	public JarpaArg<Optional<T>> optional() {
-		return new OptionalArg<>(aliases, valParser);
+		return new OptionalArg<>(aliases, valParser, cacheable());
+	}
+	
+	T retrieve(JarpaArgs args) {
+		markKnown(args);
+		return resolve(args, args.usedAlias(aliases), args.usedAlias(negatorList()));
 	}
 	
-	abstract T retrieve(JarpaArgs args);
+	void markKnown(JarpaArgs args) {
+		args.addOptionalArgs(aliases);
+		args.addOptionalArgs(negatorList());
+	}
+	
+	/** Returns the value given the alias and negator found in the
+	 * arguments, either of which may be {@code null}. Does not modify
+	 * {@code args} and may thus be called from any thread. */
+	abstract T resolve(JarpaArgs args, String alias, String negator);
+	
+	List<String> negatorList() {
+		return Collections.emptyList();
+	}
+	
+	/** Returns whether the same value may be returned again for the same
+	 * raw values; not so for single-use values such as streams. */
+	boolean cacheable() {
+		return true;
+	}
+	
+	/** Converts the values given to the alias found in the arguments,
+	 * which must be present. */
+	T convertRequired(JarpaArgs args, String alias) {
+		if(alias == null) {
+			throw JarpaException.mandatoryArgNotSpecified(mainAlias());
+		}
+		return convert(args.getRaw(alias));
+	}
+	
+	T convert(String[] raw) {
+		try {
+			T val = parseValues(raw);
+			verifyConditions(val);
+			return val;
+		} catch(JarpaException e) {
+			throw e;
+		} catch(Exception e) {
+			throw JarpaException.parseException(e);
+		}
+	}
+	
+	private T parseValues(String[] raw) {
+		Object context = Listeners.conversionStarted(mainAlias(), raw.length);
+		boolean success = false;
+		try {
+			T val = valParser.apply(raw);
+			success = true;
+			return val;
+		} finally {
+			Listeners.conversionEnded(context, mainAlias(), success);
+		}
+	}
 	
 	/** Returns a <i>flag</i> argument. A flag argument is associated
 	 * with a {@code boolean} value that represents whether
@@ -124,25 +190,93 @@ public abstract class JarpaArg<T> {
 		return withSingleValue(arg, Integer::parseInt);
 	}
 	
-	/** Returns an argument with any number of {@code int} values. */
+	/** Returns an argument with any number of {@code int} values. Large
+	 * arrays are parsed in parallel. */
 	public static JarpaArg<int[]> integerArray(String arg) {
-		return new SimpleArg<>(arg, strings ->
-				Arrays.stream(strings)
-				.mapToInt(Integer::parseInt)
-				.toArray());
+		return new SimpleArg<>(arg, strings -> {
+			IntStream ints = Arrays.stream(strings).mapToInt(Integer::parseInt);
+			if(strings.length >= PARALLEL_THRESHOLD) ints = ints.parallel();
+			return ints.toArray();
+		});
+	}
+	
+	/** Returns an argument with any number of comma-separated {@code int}
+	 * values or ranges, such as {@code 1,5..10,20..30:2}, as a compact
+	 * {@link IntRangeSet}. Large inputs are parsed in parallel.
+	 * @see IntRangeSet */
+	public static JarpaArg<IntRangeSet> integerRanges(String arg) {
+		return new SimpleArg<>(arg, IntRangeSet::parse);
 	}
 	
 	/** Returns an argument with a single {@code double} value. */
 	public static JarpaArg<Double> decimal(String arg) {
-		return withSingleValue(arg, Double::parseDouble);
+		return withSingleValue(arg, FastDoubleParser::parseDouble);
 	}
 	
-	/** Returns an argument with any number of {@code double} values. */
+	/** Returns an argument with any number of {@code double} values. Large
+	 * arrays are parsed in parallel. */
 	public static JarpaArg<double[]> decimalArray(String arg) {
-		return new SimpleArg<>(arg, strings ->
-				Arrays.stream(strings)
-				.mapToDouble(Double::parseDouble)
-				.toArray());
+		return new SimpleArg<>(arg, strings -> {
+			double[] doubles = new double[strings.length];
+			if(strings.length >= PARALLEL_THRESHOLD) {
+				Arrays.parallelSetAll(doubles, i -> FastDoubleParser.parseDouble(strings[i]));
+			} else {
+				for(int i = 0; i < strings.length; i++) {
+					doubles[i] = FastDoubleParser.parseDouble(strings[i]);
+				}
+			}
+			return doubles;
+		});
+	}
+	
+	/** Returns an argument with a single constant of the given enum type.
+	 * The constant is looked up ignoring case, and {@code -} may be used
+	 * in place of {@code _}, so {@code fast-path} selects {@code FAST_PATH}. */
+	public static <E extends Enum<E>> JarpaArg<E> enumeration(String arg, Class<E> type) {
+		EnumLookup<E> lookup = EnumLookup.of(type);
+		return withSingleValue(arg, lookup::find);
+	}
+	
+	/** Returns an argument with a single {@code Duration} value, such as
+	 * {@code 30s}, {@code 500ms} or {@code 1h30m}. The units are {@code ns},
+	 * {@code us}, {@code ms}, {@code s}, {@code m}, {@code h} and {@code d},
+	 * and ISO-8601 durations such as {@code PT30S} are also accepted.
+	 * @see fi.purkka.jarpa.conditions.DurationCondition */
+	public static JarpaArg<Duration> duration(String arg) {
+		return withSingleValue(arg, Units::parseDuration);
+	}
+	
+	/** Returns an argument with a single size in bytes, such as {@code 512},
+	 * {@code 10kB} or {@code 512MiB}. Prefixes followed by {@code B} are
+	 * decimal, while IEC prefixes such as {@code MiB} and single letters
+	 * such as {@code M} are binary.
+	 * @see fi.purkka.jarpa.conditions.LongCondition */
+	public static JarpaArg<Long> byteSize(String arg) {
+		return withSingleValue(arg, Units::parseByteSize);
+	}
+	
+	/** Returns an argument whose values are paths, directories or glob
+	 * patterns such as {@code src/**}{@code /*.java}, expanded lazily into
+	 * a parallel stream of paths.
+	 * @see PathArg */
+	public static PathArg paths(String arg) {
+		return new PathArg(arg, new PathExpansion());
+	}
+	
+	/** Returns an argument whose values are streamed lazily, reading
+	 * {@code -} from the standard input and {@code @file} from a file
+	 * line by line.
+	 * @see StreamArg */
+	public static StreamArg<String> lines(String arg) {
+		return new StreamArg<>(arg, new RecordStream<>(s -> s));
+	}
+	
+	/** Returns an argument whose values are streamed lazily like
+	 * {@link JarpaArg#lines(String)}, converting each element with the
+	 * given {@code SingleValueParser} as it is consumed.
+	 * @see StreamArg */
+	public static <E> StreamArg<E> lines(String arg, SingleValueParser<E> parser) {
+		return new StreamArg<>(arg, new RecordStream<>(parser));
 	}
 	
 	/** Returns an argument with a value of some arbitrary type. The
@@ -162,10 +296,7 @@ public abstract class JarpaArg<T> {
 	/** Returns an argument with any number of values of some arbitrary type.
 	 * The given {@code SingleValueParser} is used to construct the objects. */
 	public static <T> JarpaArg<List<T>> objectList(String arg, SingleValueParser<T> parser) {
-		return new SimpleArg<>(arg, strings ->
-				Arrays.stream(strings)
-				.map(parser::apply)
-				.collect(Collectors.toList()));
+		return new ListArg<>(arg, parser);
 	}
 	
 	private static <T> SimpleArg<T> withSingleValue(String arg, SingleValueParser<T> parser) {
@@ -179,21 +310,23 @@ public abstract class JarpaArg<T> {
 		}
 
 		@Override
-		public T retrieve(JarpaArgs args) {
-			args.addOptionalArgs(aliases);
-			String alias = args.usedAlias(aliases);
-			if(alias == null) {
-				throw JarpaException.mandatoryArgNotSpecified(mainAlias());
-			}
-			try {
-				T val = valParser.apply(args.getRaw(alias));
-				verifyConditions(val);
-				return val;
-			} catch(JarpaException e) {
-				throw e;
-			} catch(Exception e) {
-				throw JarpaException.parseException(e);
-			}
+		T resolve(JarpaArgs args, String alias, String negator) {
+			return convertRequired(args, alias);
+		}
+	}
+	
+	/** An argument whose values are converted one by one; kept separate
+	 * so that the elements may also be converted concurrently. */
+	static class ListArg<E> extends SimpleArg<List<E>> {
+		
+		final SingleValueParser<E> elementParser;
+		
+		private ListArg(String arg, SingleValueParser<E> parser) {
+			super(arg, strings ->
+					Arrays.stream(strings)
+					.map(parser::apply)
+					.collect(Collectors.toList()));
+			this.elementParser = parser;
 		}
 	}
 	
@@ -232,12 +365,12 @@ public abstract class JarpaArg<T> {
 		}
 
 		@Override
-		Boolean retrieve(JarpaArgs args) {
-			args.addOptionalArgs(aliases);
-			args.addOptionalArgs(negators);
-			String alias = args.usedAlias(aliases);
-			String negator = args.usedAlias(negators);
-			
+		List<String> negatorList() {
+			return negators;
+		}
+		
+		@Override
+		Boolean resolve(JarpaArgs args, String alias, String negator) {
 			if(alias == null && negator == null) return false;
 			if(alias != null && negator != null) {
 				throw JarpaException.flagAndNegatorPresent(alias, negator);
@@ -260,20 +393,163 @@ public abstract class JarpaArg<T> {
 		}
 	}
 	
+	/** Represents an argument whose values are expanded into paths
+	 * without the help of the shell.
+	 * 
+	 * <p>A value containing any of the characters {@code *?[{} is a glob
+	 * pattern, matched against the paths below its longest directory prefix
+	 * without such characters; {@code **} matches across directories. A
+	 * value naming a directory expands to every path below it that is not
+	 * a directory. Any other value must name an existing path, which is
+	 * included as is.</p>
+	 * 
+	 * <p>Directories are only listed as the stream is consumed, so memory
+	 * use does not grow with the number of paths. The returned stream is
+	 * parallel and unordered; call {@code sequential()} on it to walk on a
+	 * single thread. It should be closed if not fully consumed. A missing
+	 * path or glob prefix fails when the argument is retrieved; I/O errors
+	 * during the walk are thrown as {@code UncheckedIOException}s.</p>
+	 * 
+	 * <p>{@code Stream<Path> sources = jargs.get(paths("--src")
+	 * .matching(PathCondition.extension("java")));}</p> */
+	public static class PathArg extends JarpaArg<Stream<Path>> {
+		
+		private final PathExpansion expansion;
+		
+		private PathArg(String arg, PathExpansion expansion) {
+			super(arg, expansion::expand);
+			this.expansion = expansion;
+		}
+		
+		@Override
+		public PathArg alias(String alias) {
+			return (PathArg) super.alias(alias);
+		}
+		
+		@Override
+		public PathArg aliases(String...aliases) {
+			return (PathArg) super.aliases(aliases);
+		}
+		
+		/** Only includes paths for which the given condition is true. The
+		 * condition is tested while walking, before a path is passed on, and
+		 * may also keep directories from being walked into.
+		 * Calling this multiple times requires all conditions to be true. */
+		public PathArg matching(PathCondition condition) {
+			expansion.filter = expansion.filter == null
+					? condition : expansion.filter.and(condition);
+			return this;
+		}
+		
+		/** Limits how many levels of directories below each given directory
+		 * or the directory prefix of a glob pattern are walked. With {@code 1},
+		 * only the direct children are included. */
+		public PathArg maxDepth(int depth) {
+			if(depth < 1) throw new IllegalArgumentException("depth < 1");
+			expansion.maxDepth = depth;
+			return this;
+		}
+		
+		/** Makes the walk follow symbolic links to directories. Beware of
+		 * links forming cycles. */
+		public PathArg followLinks() {
+			expansion.followLinks = true;
+			return this;
+		}
+		
+		@Override
+		Stream<Path> resolve(JarpaArgs args, String alias, String negator) {
+			return convertRequired(args, alias);
+		}
+		
+		@Override
+		boolean cacheable() {
+			return false;
+		}
+	}
+	
+	/** Represents an argument whose values are streamed lazily instead of
+	 * being collected into an array, for example identifiers piped into
+	 * the program by the million.
+	 * 
+	 * <p>A value {@code -} or {@code @-} stands for the lines of the
+	 * standard input and {@code @path} for the lines of a file; other
+	 * values are single elements, with {@code @@} escaping a leading
+	 * {@code @}. The input is read through NIO channels in fixed-size
+	 * blocks as the stream is consumed, and each element is converted and
+	 * checked against the conditions given to
+	 * {@link StreamArg#each(Condition)} just before it is passed on, so a
+	 * failure surfaces as a {@code JarpaException} thrown by the stream.
+	 * The standard input may only be consumed once.</p>
+	 * 
+	 * <p>The stream is sequential and should be closed if not fully
+	 * consumed. I/O errors are thrown as {@code UncheckedIOException}s.</p>
+	 * 
+	 * <p>{@code jargs.get(lines("--ids", Long::parseLong)).forEach(...);}</p> */
+	public static class StreamArg<E> extends JarpaArg<Stream<E>> {
+		
+		private final RecordStream<E> records;
+		
+		private StreamArg(String arg, RecordStream<E> records) {
+			super(arg, records::open);
+			this.records = records;
+			records.name = arg;
+		}
+		
+		@Override
+		public StreamArg<E> alias(String alias) {
+			return (StreamArg<E>) super.alias(alias);
+		}
+		
+		@Override
+		public StreamArg<E> aliases(String...aliases) {
+			return (StreamArg<E>) super.aliases(aliases);
+		}
+		
+		/** Requires that the given condition is true for every element.
+		 * The condition is checked as each element is consumed. */
+		public StreamArg<E> each(Condition<E> condition) {
+			records.conditions.add(condition);
+			return this;
+		}
+		
+		/** Separates the records of the standard input and files by the
+		 * given character instead of line breaks, such as {@code '\0'} for
+		 * the output of {@code find -print0}. */
+		public StreamArg<E> delimiter(char delimiter) {
+			records.delimiter = delimiter;
+			return this;
+		}
+		
+		@Override
+		Stream<E> resolve(JarpaArgs args, String alias, String negator) {
+			return convertRequired(args, alias);
+		}
+		
+		@Override
+		boolean cacheable() {
+			return false;
+		}
+	}
+	
 	private static class OptionalArg<T> extends JarpaArg<Optional<T>> {
 		
-		private OptionalArg(List<String> aliases, ValueParser<T> parser) {
+		private final boolean cacheable;
+		
+		private OptionalArg(List<String> aliases, ValueParser<T> parser, boolean cacheable) {
 			super(aliases, val -> Optional.of(parser.apply(val)));
+			this.cacheable = cacheable;
+		}
+		
+		@Override
+		boolean cacheable() {
+			return cacheable;
 		}
 
 		@Override
-		Optional<T> retrieve(JarpaArgs args) {
-			args.addOptionalArgs(aliases);
-			String alias = args.usedAlias(aliases);
+		Optional<T> resolve(JarpaArgs args, String alias, String negator) {
 			if(alias != null) {
-				Optional<T> val = valParser.apply(args.getRaw(alias));
-				verifyConditions(val);
-				return val;
+				return convert(args.getRaw(alias));
 			}
 			verifyConditions(Optional.empty());
 			return Optional.empty();
@@ -2,11 +2,16 @@ package fi.purkka.jarpa;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 /** Contains parsed arguments. The {@code default arguments}
@@ -22,8 +27,14 @@ public class JarpaArgs implements AutoCloseable {
 	final static String[] EMPTY_ARRAY = new String[0];
 	public final static String DEFAULT_ARGUMENT = "";
 	
-	final Map<String, String[]> values = new HashMap<>();
+	private final Map<String, String[]> values = new HashMap<>();
 	private final Set<String> optionalArgs = new HashSet<>();
+	/** The number of present arguments in {@code optionalArgs}. */
+	private int retrievedCount = 0;
+	/** The names of the arguments in order, built when first needed. */
+	private String[] sorted;
+	/** The sums of the hashes of all options and their values. */
+	private long fingerprintHigh, fingerprintLow;
 	
 	JarpaArgs() {}
 	
@@ -33,11 +44,169 @@ public class JarpaArgs implements AutoCloseable {
 		return arg.retrieve(this);
 	}
 	
+	/** Retrieves the values of the given arguments, running their
+	 * value parsers concurrently on the given executor. The elements of
+	 * {@link JarpaArg#objectList(String, fi.purkka.jarpa.ValueParser.SingleValueParser)}
+	 * arguments are converted concurrently as well.
+	 * 
+	 * <p>The arguments are marked as retrieved before this method returns.
+	 * Failures do not complete the future exceptionally but are recorded
+	 * per argument in the returned {@link ArgValues}.</p>
+	 * 
+	 * <p>This instance must not be modified until the future is complete;
+	 * calling {@code get} is allowed.</p> */
+	public CompletableFuture<ArgValues> getConcurrently(Executor executor, JarpaArg<?>...args) {
+		return ConcurrentConversion.convert(this, executor, args);
+	}
+	
+	/** Like {@link JarpaArgs#getConcurrently(Executor, JarpaArg...)}, using
+	 * virtual threads if the JVM supports them and the common
+	 * {@code ForkJoinPool} otherwise. */
+	public CompletableFuture<ArgValues> getConcurrently(JarpaArg<?>...args) {
+		return getConcurrently(ConcurrentConversion.DEFAULT_EXECUTOR, args);
+	}
+	
+	/** Retrieves the values of the given arguments in a single pass
+	 * over the parsed arguments. Failures are recorded per argument in
+	 * the returned {@link ArgValues} instead of being thrown. */
+	public ArgValues getAll(JarpaArg<?>...args) {
+		BulkLookup lookup = new BulkLookup(this, args);
+		ArgValues result = new ArgValues();
+		for(int i = 0; i < args.length; i++) {
+			if(lookup.errors[i] != null) {
+				result.fail(args[i], lookup.errors[i]);
+				continue;
+			}
+			try {
+				result.put(args[i], args[i].resolve(this,
+						lookup.aliases[i], lookup.negators[i]));
+			} catch(JarpaException e) {
+				result.fail(args[i], e);
+			}
+		}
+		return result;
+	}
+	
+	/** A convenience method for passing a list of arguments.
+	 * @see JarpaArgs#getAll(JarpaArg...) */
+	public ArgValues getAll(List<? extends JarpaArg<?>> args) {
+		return getAll(args.toArray(new JarpaArg<?>[args.size()]));
+	}
+	
+	/** Returns a view of the arguments whose names start with the given
+	 * prefix, such as {@code "--db."}, with the prefix removed: in the view
+	 * {@code string("host")} retrieves {@code --db.host}. Arguments
+	 * retrieved through the view count as retrieved here as well, and
+	 * {@link JarpaArgs#finish()} on the view only checks the arguments in
+	 * it.
+	 * 
+	 * <p>The names are kept in a sorted index built on first use, after
+	 * which creating a view takes time proportional to the logarithm of
+	 * the number of arguments and the size of the view.</p> */
+	public JarpaArgs namespace(String prefix) {
+		String[] names = sortedNames();
+		int from = Arrays.binarySearch(names, prefix);
+		if(from < 0) from = -from - 1;
+		int to = from;
+		while(to < names.length && names[to].startsWith(prefix)) to++;
+		return new Namespace(this, prefix, Arrays.copyOfRange(names, from, to));
+	}
+	
+	/** Returns the names of all given arguments, including
+	 * {@link JarpaArgs#DEFAULT_ARGUMENT} if there were default arguments. */
+	public Set<String> options() {
+		return Collections.unmodifiableSet(keys());
+	}
+	
+	/** Returns a fingerprint of the options and their raw values as
+	 * given, independent of their order. It is kept up to date as options
+	 * are parsed, so this takes constant time.
+	 * @see JarpaArgs#fingerprint(JarpaArg...) */
+	public Fingerprint fingerprint() {
+		return new Fingerprint(fingerprintHigh, fingerprintLow);
+	}
+	
+	/** Returns a fingerprint of the options and their raw values in which
+	 * every alias of the given arguments counts as its main alias, so that
+	 * giving {@code -v} or {@code --verbose} makes no difference. Other
+	 * options count as given. */
+	public Fingerprint fingerprint(JarpaArg<?>...args) {
+		Map<String, String> canonical = canonicalNames(args);
+		long high = 0, low = 0;
+		for(String key : keys()) {
+			String name = canonical.getOrDefault(key, key);
+			String[] raw = getRaw(key);
+			high += Fingerprint.hashHigh(name, raw);
+			low += Fingerprint.hashLow(name, raw);
+		}
+		return new Fingerprint(high, low);
+	}
+	
+	/** Returns the names of the options that were given here or in
+	 * {@code other} but not with the same raw values in both, in order.
+	 * Values are only compared as strings, not converted. */
+	public SortedSet<String> diff(JarpaArgs other) {
+		SortedSet<String> changed = new TreeSet<>();
+		for(String key : keys()) {
+			if(!other.contains(key) || !Arrays.equals(getRaw(key), other.getRaw(key))) {
+				changed.add(key);
+			}
+		}
+		for(String key : other.keys()) {
+			if(!contains(key)) changed.add(key);
+		}
+		return changed;
+	}
+	
+	/** Like {@link JarpaArgs#diff(JarpaArgs)}, comparing the aliases of
+	 * each of the given arguments as their main alias, which is reported
+	 * in their place. */
+	public SortedSet<String> diff(JarpaArgs other, JarpaArg<?>...args) {
+		Map<String, String> canonical = canonicalNames(args);
+		Map<String, String[]> mine = canonicalValues(canonical);
+		Map<String, String[]> theirs = other.canonicalValues(canonical);
+		SortedSet<String> changed = new TreeSet<>();
+		for(Map.Entry<String, String[]> entry : mine.entrySet()) {
+			if(!Arrays.equals(entry.getValue(), theirs.get(entry.getKey()))) {
+				changed.add(entry.getKey());
+			}
+		}
+		for(String key : theirs.keySet()) {
+			if(!mine.containsKey(key)) changed.add(key);
+		}
+		return changed;
+	}
+	
+	/** Maps every alias of the given arguments to their main alias, and
+	 * every negator to their first negator. */
+	private static Map<String, String> canonicalNames(JarpaArg<?>[] args) {
+		Map<String, String> canonical = new HashMap<>();
+		for(JarpaArg<?> arg : args) {
+			for(String alias : arg.aliases) canonical.put(alias, arg.mainAlias());
+			List<String> negators = arg.negatorList();
+			for(String negator : negators) canonical.put(negator, negators.get(0));
+		}
+		return canonical;
+	}
+	
+	private Map<String, String[]> canonicalValues(Map<String, String> canonical) {
+		Map<String, String[]> result = new HashMap<>();
+		for(String key : keys()) {
+			result.put(canonical.getOrDefault(key, key), getRaw(key));
+		}
+		return result;
+	}
+	
 	/** Verifies that no arguments were specified that weren't
-	 * retrieved. */
+	 * retrieved. Unless some were, this takes constant time. */
 	public void finish() {
+		if(retrievedCount == keys().size()) {
+			Listeners.finished(EMPTY_ARRAY);
+			return;
+		}
+		
 		List<String> extras = new ArrayList<>();
-		for(String arg : values.keySet()) {
+		for(String arg : keys()) {
 			if(!optionalArgs.contains(arg)) {
 				if(arg.equals(DEFAULT_ARGUMENT)) {
 					extras.add("[default argument]");
@@ -47,9 +216,10 @@ public class JarpaArgs implements AutoCloseable {
 			}
 		}
 		
-		if(!extras.isEmpty()) {
-			throw JarpaException.unknownArguments(
-					extras.toArray(new String[extras.size()]));
+		String[] unknown = extras.toArray(new String[extras.size()]);
+		Listeners.finished(unknown);
+		if(unknown.length > 0) {
+			throw JarpaException.unknownArguments(unknown);
 		}
 	}
 	
@@ -60,14 +230,65 @@ public class JarpaArgs implements AutoCloseable {
 		finish();
 	}
 	
+	void put(String arg, String[] vals) {
+		String[] old = values.put(arg, vals);
+		if(old == null) {
+			sorted = null;
+			if(optionalArgs.contains(arg)) retrievedCount++;
+		} else {
+			unhash(arg, old);
+		}
+		fingerprintHigh += Fingerprint.hashHigh(arg, vals);
+		fingerprintLow += Fingerprint.hashLow(arg, vals);
+	}
+	
+	void remove(String arg) {
+		String[] old = values.remove(arg);
+		if(old != null) {
+			sorted = null;
+			unhash(arg, old);
+			if(optionalArgs.contains(arg)) retrievedCount--;
+		}
+	}
+	
+	void clear() {
+		values.clear();
+		retrievedCount = 0;
+		sorted = null;
+		fingerprintHigh = fingerprintLow = 0;
+	}
+	
+	private void unhash(String arg, String[] vals) {
+		fingerprintHigh -= Fingerprint.hashHigh(arg, vals);
+		fingerprintLow -= Fingerprint.hashLow(arg, vals);
+	}
+	
+	private String[] sortedNames() {
+		if(sorted == null) {
+			Set<String> keys = keys();
+			String[] names = keys.toArray(new String[keys.size()]);
+			Arrays.sort(names);
+			sorted = names;
+		}
+		return sorted;
+	}
+	
 	String[] getRaw(String arg) {
 		return values.getOrDefault(arg, EMPTY_ARRAY);
 	}
 	
+	boolean contains(String arg) {
+		return values.containsKey(arg);
+	}
+	
+	Set<String> keys() {
+		return values.keySet();
+	}
+	
 	String usedAlias(List<String> aliases) {
 		String found = null;
 		for(String alias : aliases) {
-			if(values.containsKey(alias)) {
+			if(contains(alias)) {
 				if(found == null) {
 					found = alias;
 				} else {
@@ -79,13 +300,25 @@ public class JarpaArgs implements AutoCloseable {
 	}
 	
 	void addOptionalArgs(List<String> args) {
-		optionalArgs.addAll(args);
+		for(int i = 0; i < args.size(); i++) {
+			addOptionalArg(args.get(i));
+		}
+	}
+	
+	void addOptionalArg(String arg) {
+		if(optionalArgs.add(arg) && contains(arg)) {
+			retrievedCount++;
+		}
+	}
+	
+	boolean isRetrieved(String arg) {
+		return optionalArgs.contains(arg);
 	}
 	
 	@Override
 	public String toString() {
-		return "{ " + values.keySet().stream()
-				.map(k -> k + ": " + Arrays.toString(values.get(k)))
+		return "{ " + keys().stream()
+				.map(k -> k + ": " + Arrays.toString(getRaw(k)))
 				.collect(Collectors.joining(", ")) + " }";
 	}
 }
\ No newline at end of file
@@ -0,0 +1,382 @@
+package fi.purkka.jarpa;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+/** Encodes {@link JarpaArgs} into a compact binary form that can be passed
+ * between threads and processes without reparsing the original arguments.
+ * 
+ * <p>Each encoded record consists of a header, a table of options, the
+ * names of the options only found in the record and a data area. An option
+ * is referred to by its number in an {@link OptionIds} table shared by the
+ * writer and the reader, which is written at most once with
+ * {@link JarpaArgsCodec#encodeTable(OptionIds)}, so the records themselves
+ * do not repeat the names. Options not in the table are numbered after it
+ * and their names are stored in the record; a record encoded without a
+ * table carries all of its names. The values of an option are stored
+ * consecutively in the data area as length-prefixed UTF-8 strings.</p>
+ * 
+ * <p>{@link JarpaArgsCodec#decode(ByteBuffer, OptionIds)} returns a
+ * {@code JarpaArgs} that reads its values directly from the buffer on
+ * demand, finding an option by a binary search over its number. The buffer
+ * must therefore not be modified while the result is in use.</p>
+ * 
+ * <p>The layout, with all integers big-endian, is:</p>
+ * 
+ * <pre>
+ * int   magic "JARP"
+ * short version
+ * short flags (reserved, 0)
+ * int   total length of the record in bytes
+ * int   number of options
+ * int   number of names in the shared table, 0 if none
+ * per option by ascending number: int number, int value count, int offset of first value
+ * per option not in the shared table: its name
+ * data: the values of the options
+ * </pre>
+ * 
+ * <p>Strings are stored as an int byte length followed by UTF-8 bytes, and
+ * the shared table is stored as the magic number {@code "JARN"}, the
+ * version, the number of names and the names.</p> */
+public final class JarpaArgsCodec {
+	
+	/** The version of the format written by this class. */
+	public static final short VERSION = 2;
+	
+	static final int MAGIC = 0x4A415250;
+	static final int TABLE_MAGIC = 0x4A41524E;
+	static final int HEADER_SIZE = 20;
+	static final int ENTRY_SIZE = 12;
+	/** The largest record {@link JarpaArgsCodec#read(ReadableByteChannel)}
+	 * accepts, 64 MiB. */
+	public static final int DEFAULT_MAX_LENGTH = 1 << 26;
+	
+	private JarpaArgsCodec() {}
+	
+	/** Returns the number of bytes needed to encode the given arguments
+	 * without a shared table. */
+	public static int encodedSize(JarpaArgs args) {
+		return encodedSize(args, OptionIds.NONE);
+	}
+	
+	/** Returns the number of bytes needed to encode the given arguments
+	 * with the given shared table. */
+	public static int encodedSize(JarpaArgs args, OptionIds ids) {
+		if(args instanceof EncodedArgs && ((EncodedArgs) args).ids == ids) {
+			return ((EncodedArgs) args).length;
+		}
+		Set<String> keys = args.keys();
+		long size = HEADER_SIZE + (long) ENTRY_SIZE * keys.size();
+		for(String key : keys) {
+			if(ids.id(key) == -1) size += 4 + utf8Length(key);
+			for(String val : args.getRaw(key)) {
+				size += 4 + utf8Length(val);
+			}
+		}
+		if(size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Arguments too large to encode");
+		}
+		return (int) size;
+	}
+	
+	/** Returns a new buffer containing the arguments encoded without a
+	 * shared table, positioned at its start. */
+	public static ByteBuffer encode(JarpaArgs args) {
+		return encode(args, OptionIds.NONE);
+	}
+	
+	/** Returns a new buffer containing the arguments encoded with the given
+	 * shared table, positioned at its start. */
+	public static ByteBuffer encode(JarpaArgs args, OptionIds ids) {
+		ByteBuffer buf = ByteBuffer.allocate(encodedSize(args, ids));
+		encode(args, ids, buf);
+		buf.flip();
+		return buf;
+	}
+	
+	/** Writes the arguments encoded without a shared table to the given
+	 * buffer.
+	 * @see JarpaArgsCodec#encode(JarpaArgs, OptionIds, ByteBuffer) */
+	public static void encode(JarpaArgs args, ByteBuffer buf) {
+		encode(args, OptionIds.NONE, buf);
+	}
+	
+	/** Writes the arguments encoded with the given shared table to the
+	 * given buffer at its current position, which is advanced past the
+	 * record.
+	 * @throws BufferOverflowException if the buffer has less than
+	 * {@link JarpaArgsCodec#encodedSize(JarpaArgs, OptionIds)} bytes remaining */
+	public static void encode(JarpaArgs args, OptionIds ids, ByteBuffer buf) {
+		int size = encodedSize(args, ids);
+		if(buf.remaining() < size) {
+			throw new BufferOverflowException();
+		}
+		
+		if(args instanceof EncodedArgs && ((EncodedArgs) args).ids == ids) {
+			ByteBuffer record = ((EncodedArgs) args).data.duplicate();
+			record.position(0).limit(size);
+			buf.put(record);
+			return;
+		}
+		
+		Set<String> keys = args.keys();
+		String[] names = keys.toArray(new String[keys.size()]);
+		// the number of each option in the high and its index in the low bits
+		long[] order = new long[names.length];
+		int next = ids.size();
+		for(int i = 0; i < names.length; i++) {
+			int id = ids.id(names[i]);
+			if(id == -1) id = next++;
+			order[i] = (long) id << 32 | i;
+		}
+		Arrays.sort(order);
+		
+		ByteOrder byteOrder = buf.order();
+		buf.order(ByteOrder.BIG_ENDIAN);
+		int start = buf.position();
+		buf.putInt(MAGIC);
+		buf.putShort(VERSION);
+		buf.putShort((short) 0);
+		buf.putInt(size);
+		buf.putInt(names.length);
+		buf.putInt(ids.size());
+		
+		int table = start + HEADER_SIZE;
+		buf.position(table + ENTRY_SIZE * names.length);
+		for(long entry : order) {
+			if((int) (entry >>> 32) >= ids.size()) putString(buf, names[(int) entry]);
+		}
+		for(long entry : order) {
+			String[] vals = args.getRaw(names[(int) entry]);
+			buf.putInt(table, (int) (entry >>> 32));
+			buf.putInt(table + 4, vals.length);
+			buf.putInt(table + 8, buf.position() - start);
+			for(String val : vals) {
+				putString(buf, val);
+			}
+			table += ENTRY_SIZE;
+		}
+		buf.order(byteOrder);
+	}
+	
+	/** Returns a new buffer containing the given shared table, positioned
+	 * at its start. */
+	public static ByteBuffer encodeTable(OptionIds ids) {
+		long size = 12;
+		for(String name : ids.names()) size += 4 + utf8Length(name);
+		if(size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Table too large to encode");
+		}
+		ByteBuffer buf = ByteBuffer.allocate((int) size);
+		buf.putInt(TABLE_MAGIC);
+		buf.putShort(VERSION);
+		buf.putShort((short) 0);
+		buf.putInt(ids.size());
+		for(String name : ids.names()) putString(buf, name);
+		buf.flip();
+		return buf;
+	}
+	
+	/** Reads a shared table written by
+	 * {@link JarpaArgsCodec#encodeTable(OptionIds)} at the current position
+	 * of the given buffer, which is advanced past it. */
+	public static OptionIds decodeTable(ByteBuffer buf) {
+		ByteBuffer in = buf.duplicate().order(ByteOrder.BIG_ENDIAN);
+		try {
+			if(in.getInt() != TABLE_MAGIC) {
+				throw JarpaException.malformedEncoding("bad magic number");
+			}
+			short version = in.getShort();
+			if(version != VERSION) {
+				throw JarpaException.malformedEncoding("unsupported version " + version);
+			}
+			in.getShort();
+			int count = in.getInt();
+			// every name takes at least its four length bytes
+			if(count < 0 || count > in.remaining() / 4) {
+				throw JarpaException.malformedEncoding("inconsistent header");
+			}
+			String[] names = new String[count];
+			for(int i = 0; i < count; i++) {
+				int len = in.getInt();
+				if(len < 0 || len > in.remaining()) {
+					throw JarpaException.malformedEncoding("table is truncated");
+				}
+				byte[] bytes = new byte[len];
+				in.get(bytes);
+				names[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			buf.position(in.position());
+			return OptionIds.of(names);
+		} catch(BufferUnderflowException e) {
+			throw JarpaException.malformedEncoding("table is truncated");
+		} catch(IllegalArgumentException e) {
+			throw JarpaException.malformedEncoding("duplicate name in table");
+		}
+	}
+	
+	/** Writes the arguments encoded without a shared table fully to the
+	 * given channel. */
+	public static void write(JarpaArgs args, WritableByteChannel channel) throws IOException {
+		write(args, OptionIds.NONE, channel);
+	}
+	
+	/** Writes the arguments encoded with the given shared table fully to
+	 * the given channel. */
+	public static void write(JarpaArgs args, OptionIds ids, WritableByteChannel channel) throws IOException {
+		ByteBuffer buf = encode(args, ids);
+		while(buf.hasRemaining()) {
+			channel.write(buf);
+		}
+	}
+	
+	/** Returns arguments backed by the record encoded without a shared
+	 * table at the current position of the given buffer.
+	 * @see JarpaArgsCodec#decode(ByteBuffer, OptionIds) */
+	public static JarpaArgs decode(ByteBuffer buf) {
+		return decode(buf, OptionIds.NONE);
+	}
+	
+	/** Returns arguments backed by the record at the current position of the
+	 * given buffer, which is advanced past the record, encoded with the given
+	 * shared table. Only the header is read; names are looked up and values
+	 * decoded when they are retrieved. */
+	public static JarpaArgs decode(ByteBuffer buf, OptionIds ids) {
+		int start = buf.position();
+		int length = checkHeader(buf, start);
+		if(length > buf.remaining()) {
+			throw JarpaException.malformedEncoding("record is truncated");
+		}
+		ByteBuffer record = buf.duplicate();
+		record.limit(start + length);
+		record = record.slice().order(ByteOrder.BIG_ENDIAN);
+		if(record.getInt(16) != ids.size()) {
+			throw JarpaException.malformedEncoding("encoded with a table of "
+					+ record.getInt(16) + " names, not " + ids.size());
+		}
+		buf.position(start + length);
+		return new EncodedArgs(record, ids);
+	}
+	
+	/** Reads a single record encoded without a shared table of at most
+	 * {@link #DEFAULT_MAX_LENGTH} bytes from the given channel.
+	 * @see JarpaArgsCodec#read(ReadableByteChannel, OptionIds, int) */
+	public static JarpaArgs read(ReadableByteChannel channel) throws IOException {
+		return read(channel, OptionIds.NONE, DEFAULT_MAX_LENGTH);
+	}
+	
+	/** Reads a single record encoded without a shared table from the given
+	 * channel.
+	 * @see JarpaArgsCodec#read(ReadableByteChannel, OptionIds, int) */
+	public static JarpaArgs read(ReadableByteChannel channel, int maxLength) throws IOException {
+		return read(channel, OptionIds.NONE, maxLength);
+	}
+	
+	/** Reads a single record encoded with the given shared table from the
+	 * given channel, rejecting a record whose header declares more than
+	 * {@code maxLength} bytes before allocating anything for it. */
+	public static JarpaArgs read(ReadableByteChannel channel, OptionIds ids, int maxLength) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(channel, header);
+		int length = checkHeader(header, 0);
+		if(length > maxLength) {
+			throw JarpaException.malformedEncoding("record of " + length
+					+ " bytes exceeds the maximum of " + maxLength);
+		}
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		header.flip();
+		buf.put(header);
+		readFully(channel, buf);
+		buf.flip();
+		return decode(buf, ids);
+	}
+	
+	private static int checkHeader(ByteBuffer buf, int start) {
+		if(buf.limit() - start < HEADER_SIZE) {
+			throw JarpaException.malformedEncoding("record is truncated");
+		}
+		ByteBuffer header = buf.duplicate().order(ByteOrder.BIG_ENDIAN);
+		if(header.getInt(start) != MAGIC) {
+			throw JarpaException.malformedEncoding("bad magic number");
+		}
+		short version = header.getShort(start + 4);
+		if(version != VERSION) {
+			throw JarpaException.malformedEncoding("unsupported version " + version);
+		}
+		int length = header.getInt(start + 8);
+		int count = header.getInt(start + 12);
+		int shared = header.getInt(start + 16);
+		if(count < 0 || shared < 0 || length < HEADER_SIZE + (long) ENTRY_SIZE * count) {
+			throw JarpaException.malformedEncoding("inconsistent header");
+		}
+		return length;
+	}
+	
+	private static void readFully(ReadableByteChannel channel, ByteBuffer buf) throws IOException {
+		while(buf.hasRemaining()) {
+			if(channel.read(buf) < 0) {
+				throw JarpaException.malformedEncoding("record is truncated");
+			}
+		}
+	}
+	
+	static int utf8Length(String str) {
+		int len = 0;
+		for(int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if(c < 0x80) {
+				len++;
+			} else if(c < 0x800) {
+				len += 2;
+			} else if(isSurrogatePair(str, i)) {
+				len += 4;
+				i++;
+			} else if(Character.isSurrogate(c)) {
+				len++;
+			} else {
+				len += 3;
+			}
+		}
+		return len;
+	}
+	
+	/** Writes the string as UTF-8 like {@code String.getBytes} would,
+	 * replacing unpaired surrogates with {@code '?'}. */
+	private static void putString(ByteBuffer buf, String str) {
+		buf.putInt(utf8Length(str));
+		for(int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if(c < 0x80) {
+				buf.put((byte) c);
+			} else if(c < 0x800) {
+				buf.put((byte) (0xC0 | c >> 6));
+				buf.put((byte) (0x80 | c & 0x3F));
+			} else if(isSurrogatePair(str, i)) {
+				int cp = Character.toCodePoint(c, str.charAt(++i));
+				buf.put((byte) (0xF0 | cp >> 18));
+				buf.put((byte) (0x80 | cp >> 12 & 0x3F));
+				buf.put((byte) (0x80 | cp >> 6 & 0x3F));
+				buf.put((byte) (0x80 | cp & 0x3F));
+			} else if(Character.isSurrogate(c)) {
+				buf.put((byte) '?');
+			} else {
+				buf.put((byte) (0xE0 | c >> 12));
+				buf.put((byte) (0x80 | c >> 6 & 0x3F));
+				buf.put((byte) (0x80 | c & 0x3F));
+			}
+		}
+	}
+	
+	private static boolean isSurrogatePair(String str, int i) {
+		return Character.isHighSurrogate(str.charAt(i)) && i + 1 < str.length()
+				&& Character.isLowSurrogate(str.charAt(i + 1));
+	}
+}
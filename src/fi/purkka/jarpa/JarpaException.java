@@ -80,6 +80,35 @@ public class JarpaException extends RuntimeException {
 				+ ": " + failure);
 	}
 	
+	/** Indicates that several arguments failed at the same time.
+	 * @see ArgValues#orThrow() */
+	public static JarpaException multipleFailures(JarpaException...failures) {
+		return new JarpaException(Type.MULTIPLE_FAILURES, "Multiple failures: "
+				+ Arrays.stream(failures)
+				.map(JarpaException::getMessage)
+				.collect(Collectors.joining("; ")));
+	}
+	
+	/** Indicates that encoded arguments could not be decoded.
+	 * @see JarpaArgsCodec */
+	public static JarpaException malformedEncoding(String reason) {
+		return new JarpaException(Type.MALFORMED_ENCODING, "Malformed encoded arguments: "
+				+ reason);
+	}
+	
+	/** Indicates that a rule about which arguments may be given together
+	 * was violated.
+	 * @see Constraints */
+	public static JarpaException constraintViolated(String violation) {
+		return new JarpaException(Type.CONSTRAINT_VIOLATED, violation);
+	}
+	
+	/** Indicates that the input was larger than allowed.
+	 * @see ParseLimits */
+	public static JarpaException limitExceeded(String limit) {
+		return new JarpaException(Type.LIMIT_EXCEEDED, "Input too large: " + limit);
+	}
+	
 	static enum Type {
 		MULTIPLE_ALIASES_PRESENT,
 		FLAG_GIVEN_VALUES,
@@ -89,6 +118,10 @@ public class JarpaException extends RuntimeException {
 		FLAG_AND_NEGATOR_PRESENT,
 		CONDITION_FAILED,
 		INVALID_CONDITION,
-		PARSE_EXCEPTION
+		PARSE_EXCEPTION,
+		MALFORMED_ENCODING,
+		MULTIPLE_FAILURES,
+		CONSTRAINT_VIOLATED,
+		LIMIT_EXCEEDED
 	}
 }
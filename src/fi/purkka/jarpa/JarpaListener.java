@@ -0,0 +1,47 @@
+package fi.purkka.jarpa;
+
+/** Receives notifications of what Jarpa is doing, for example to record
+ * them in a profiler. At most one listener is installed at a time with
+ * {@link JarpaListener#install(JarpaListener)}; while none is, the only
+ * cost is reading a field.
+ * 
+ * <p>Methods ending in {@code Started} may return a context object that
+ * is passed to the matching {@code Ended} method on the same thread.
+ * Listeners are called from any thread that parses or converts
+ * arguments, so they must be thread-safe.</p> */
+public interface JarpaListener {
+	
+	/** Installs the given listener in place of any previous one, or
+	 * removes the current one if {@code null}. */
+	static void install(JarpaListener listener) {
+		Listeners.current = listener;
+	}
+	
+	/** Called when a parser starts parsing its arguments. */
+	default Object parseStarted() {
+		return null;
+	}
+	
+	/** Called when a parser has parsed the given number of tokens or, if
+	 * {@code success} is {@code false}, thrown an exception, for example
+	 * because the tokens exceed its {@link ParseLimits}. */
+	default void parseEnded(Object context, int tokenCount, boolean success) {}
+	
+	/** Called when the value parser of an argument starts converting
+	 * the given number of raw values. */
+	default Object conversionStarted(String argument, int valueCount) {
+		return null;
+	}
+	
+	/** Called when the value parser of an argument has returned or, if
+	 * {@code success} is {@code false}, thrown an exception. */
+	default void conversionEnded(Object context, String argument, boolean success) {}
+	
+	/** Called when a {@link fi.purkka.jarpa.conditions.Condition} of an
+	 * argument is not met. */
+	default void conditionFailed(String argument, String message) {}
+	
+	/** Called when {@link JarpaArgs#finish()} has checked for unknown
+	 * arguments, with the unknown ones found. */
+	default void finished(String[] unknown) {}
+}
@@ -1,5 +1,8 @@
 package fi.purkka.jarpa;
 
+import java.util.Arrays;
+import java.util.HashSet;
+
 /** A parses that produces a {@code JarpaArgs} instance from a given
  * string array.
  * 
@@ -21,42 +24,67 @@ public abstract class JarpaParser {
 	
 	abstract JarpaArgs parse();
 	
-	static boolean isArgument(String str) {
-		if(str.length() < 2) return false;
-		char first = str.charAt(0);
-		char second = str.charAt(1);
-		return first == '-' && (Character.isLetter(second) || second == '-');
-	}
-	
 	/** The default parser used by Jarpa; functions like
 	 * {@link SpacedParser}. The methods of this class can be
 	 * used to return different kinds of parsers. */
 	public static class DefaultParser extends JarpaParser {
 		
 		private String[] args;
+		private Tokenizer tokenizer = Tokenizer.DEFAULT;
 		
 		DefaultParser(String[] args) {
 			this.args = args;
 		}
 		
+		/** Sets the characters that may start an argument, such as
+		 * {@code "-/"} to also accept {@code /v}, or {@code "-+"}. The
+		 * default is {@code "-"}. An argument is a prefix character followed
+		 * by a letter or by the same prefix character. */
+		public DefaultParser prefixes(String chars) {
+			tokenizer = tokenizer.withPrefixes(chars);
+			return this;
+		}
+		
+		/** Rejects input exceeding the given limits with a
+		 * {@code JarpaException} before it is copied into the parsed
+		 * arguments. There are no limits by default.
+		 * @see ParseLimits */
+		public DefaultParser limits(ParseLimits limits) {
+			tokenizer = tokenizer.withLimits(limits);
+			return this;
+		}
+		
 		/** Parses using {@link SpacedParser}. Though this class
 		 * already uses it internally, this method may become useful if
 		 * {@code SpacedParser} adds methods for configuring itself. */
 		public SpacedParser spaceSeparated() {
-			return new SpacedParser(args);
+			return new SpacedParser(args, tokenizer);
 		}
 		
 		/** Parses using {@link EqualsParser}. See its documentation for
 		 * details. */
 		public EqualsParser equalsSeparated() {
-			return new EqualsParser(args);
+			return new EqualsParser(args, tokenizer);
+		}
+		
+		/** Parses the initially given arguments into groups, each started
+		 * by any of the given anchor options, like {@link SpacedParser}
+		 * would parse each group. See {@link OptionGroups} for details. */
+		public OptionGroups grouped(String...anchors) {
+			return OptionGroups.parse(args, tokenizer, new HashSet<>(Arrays.asList(anchors)));
+		}
+		
+		/** Returns an {@link IncrementalParser} starting from the initially
+		 * given arguments, for command lines that are edited repeatedly. */
+		public IncrementalParser incremental() {
+			return new IncrementalParser(args, tokenizer);
 		}
 		
 		/** Parses the initially given arguments using a {@link SpacedParser}.
 		 * See its documentation for details. */
 		@Override
 		public JarpaArgs parse() {
-			return new SpacedParser(args).parse();
+			return new SpacedParser(args, tokenizer).parse();
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package fi.purkka.jarpa;
+
+/** Holds the installed {@link JarpaListener} and forwards notifications
+ * to it if there is one. */
+final class Listeners {
+	
+	static volatile JarpaListener current;
+	
+	private Listeners() {}
+	
+	static Object parseStarted() {
+		JarpaListener listener = current;
+		return listener == null ? null : listener.parseStarted();
+	}
+	
+	static void parseEnded(Object context, int tokenCount, boolean success) {
+		JarpaListener listener = current;
+		if(listener != null) listener.parseEnded(context, tokenCount, success);
+	}
+	
+	static Object conversionStarted(String argument, int valueCount) {
+		JarpaListener listener = current;
+		return listener == null ? null : listener.conversionStarted(argument, valueCount);
+	}
+	
+	static void conversionEnded(Object context, String argument, boolean success) {
+		JarpaListener listener = current;
+		if(listener != null) listener.conversionEnded(context, argument, success);
+	}
+	
+	static void conditionFailed(String argument, String message) {
+		JarpaListener listener = current;
+		if(listener != null) listener.conditionFailed(argument, message);
+	}
+	
+	static void finished(String[] unknown) {
+		JarpaListener listener = current;
+		if(listener != null) listener.finished(unknown);
+	}
+}
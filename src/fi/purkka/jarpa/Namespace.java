@@ -0,0 +1,87 @@
+package fi.purkka.jarpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** The arguments of a {@code JarpaArgs} under a common prefix, with the
+ * prefix removed from their names. Lookups and retrieval go through to
+ * the parent.
+ * @see JarpaArgs#namespace(String) */
+final class Namespace extends JarpaArgs {
+	
+	private final JarpaArgs parent;
+	private final String prefix;
+	/** The full names of the arguments in the view, in order. */
+	private final String[] names;
+	private Set<String> keys;
+	
+	Namespace(JarpaArgs parent, String prefix, String[] names) {
+		this.parent = parent;
+		this.prefix = prefix;
+		this.names = names;
+	}
+	
+	@Override
+	public JarpaArgs namespace(String prefix) {
+		return parent.namespace(this.prefix + prefix);
+	}
+	
+	/** Verifies that all arguments in this view were retrieved. */
+	@Override
+	public void finish() {
+		List<String> extras = new ArrayList<>();
+		for(String name : names) {
+			if(!parent.isRetrieved(name)) extras.add(name);
+		}
+		String[] unknown = extras.toArray(new String[extras.size()]);
+		Listeners.finished(unknown);
+		if(unknown.length > 0) {
+			throw JarpaException.unknownArguments(unknown);
+		}
+	}
+	
+	/** Computes the fingerprint from the values, as they are not put
+	 * here one by one. */
+	@Override
+	public Fingerprint fingerprint() {
+		return fingerprint(new JarpaArg<?>[0]);
+	}
+	
+	@Override
+	String[] getRaw(String arg) {
+		return parent.getRaw(prefix + arg);
+	}
+	
+	@Override
+	boolean contains(String arg) {
+		return parent.contains(prefix + arg);
+	}
+	
+	@Override
+	Set<String> keys() {
+		if(keys == null) {
+			Set<String> relative = new HashSet<>(names.length * 4 / 3 + 1);
+			for(String name : names) relative.add(name.substring(prefix.length()));
+			keys = Collections.unmodifiableSet(relative);
+		}
+		return keys;
+	}
+	
+	@Override
+	void put(String arg, String[] vals) {
+		throw new UnsupportedOperationException("Namespaces are read-only");
+	}
+	
+	@Override
+	void addOptionalArg(String arg) {
+		parent.addOptionalArg(prefix + arg);
+	}
+	
+	@Override
+	boolean isRetrieved(String arg) {
+		return parent.isRetrieved(prefix + arg);
+	}
+}
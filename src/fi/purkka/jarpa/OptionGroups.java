@@ -0,0 +1,201 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArgs.DEFAULT_ARGUMENT;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import fi.purkka.jarpa.Tokenizer.Tokens;
+
+/** Arguments divided into groups, each started by an <i>anchor</i>
+ * option, for tools taking repeated sets of options such as
+ * 
+ * <p>{@code -y -i a.mp4 -ss 5 -i b.mp4 -ss 10 -t 3}</p>
+ * 
+ * <p>where each {@code -i} starts a group of its own, here
+ * {@code -i a.mp4 -ss 5} and {@code -i b.mp4 -ss 10 -t 3}. The options
+ * before the first anchor, {@code -y} here, form the {@link #head()},
+ * which also holds the default arguments: the values before any option
+ * and everything after a lone {@code --}. Values are assigned to options
+ * like {@link SpacedParser} does.</p>
+ * 
+ * <p>The tokens are scanned once, recording where each option and its
+ * values are, and every group is a {@code JarpaArgs} view over a range of
+ * that record and the original token array, so that each group can be
+ * retrieved with its own arguments, {@link Constraints} or schema and
+ * finished separately. The views do not share arrays with the caller:
+ * every retrieval copies the values of the option out of the token array
+ * into a new one, and finding an option takes time linear in the options
+ * of its group. The {@link JarpaArgs#fingerprint()} of a group is
+ * likewise computed in linear time when first asked for, and kept. An
+ * option given twice in one group has the value given last.</p>
+ * 
+ * @see fi.purkka.jarpa.JarpaParser.DefaultParser#grouped(String...) */
+public final class OptionGroups {
+	
+	private final JarpaArgs head;
+	private final List<JarpaArgs> groups;
+	
+	private OptionGroups(JarpaArgs head, List<JarpaArgs> groups) {
+		this.head = head;
+		this.groups = groups;
+	}
+	
+	static OptionGroups parse(String[] args, Tokenizer tokenizer, Set<String> anchors) {
+		Object context = Listeners.parseStarted();
+		boolean success = false;
+		try {
+			ParseLimits limits = tokenizer.limits;
+			Tokens tokens = tokenizer.tokenize(args, (char) 0);
+			int length = tokens.length();
+			// the index of each option and the end of its values, in pairs
+			int[] options = new int[8];
+			int count = 0;
+			int[] starts = new int[4];
+			int groupCount = 0;
+			
+			int index = skipValues(tokens, 0);
+			int defaultsEnd = index;
+			int terminator = length;
+			while(index < length) {
+				if(tokens.kinds[index] == Tokenizer.TERMINATOR) {
+					terminator = index;
+					break;
+				}
+				String arg = args[index];
+				int end = skipValues(tokens, index + 1);
+				limits.checkValueCount(arg, end - index - 1);
+				if(anchors.contains(arg)) {
+					if(groupCount == starts.length) starts = Arrays.copyOf(starts, groupCount * 2);
+					starts[groupCount++] = count;
+				}
+				if(2 * count + 2 > options.length) options = Arrays.copyOf(options, options.length * 2);
+				options[2 * count] = index;
+				options[2 * count + 1] = end;
+				count++;
+				index = end;
+			}
+			limits.checkValueCount(DEFAULT_ARGUMENT,
+					defaultsEnd + Math.max(0, length - terminator - 1));
+			
+			int headEnd = groupCount == 0 ? count : starts[0];
+			JarpaArgs head = new Group(args, options, 0, headEnd, defaultsEnd, terminator);
+			List<JarpaArgs> groups = new ArrayList<>(groupCount);
+			for(int g = 0; g < groupCount; g++) {
+				int to = g + 1 < groupCount ? starts[g + 1] : count;
+				groups.add(new Group(args, options, starts[g], to, 0, length));
+			}
+			success = true;
+			return new OptionGroups(head, Collections.unmodifiableList(groups));
+		} finally {
+			Listeners.parseEnded(context, args.length, success);
+		}
+	}
+	
+	private static int skipValues(Tokens tokens, int index) {
+		int length = tokens.length();
+		while(index < length && tokens.isValue(index)) {
+			index++;
+		}
+		return index;
+	}
+	
+	/** Returns the options before the first anchor and the default
+	 * arguments. */
+	public JarpaArgs head() {
+		return head;
+	}
+	
+	/** Returns the groups in the order given, each including its anchor
+	 * option and the values given to it. */
+	public List<JarpaArgs> groups() {
+		return groups;
+	}
+	
+	/** Finishes the head and every group, so that any argument not
+	 * retrieved from its group causes a {@code JarpaException}. */
+	public void finish() {
+		head.finish();
+		for(JarpaArgs group : groups) group.finish();
+	}
+	
+	/** A range of options of the shared record. */
+	private static final class Group extends JarpaArgs {
+		
+		private final String[] args;
+		private final int[] options;
+		private final int from, to;
+		/** The end of the default values at the start and the index of
+		 * the terminator, after which the rest are default values too. */
+		private final int defaultsEnd, terminator;
+		private Set<String> keys;
+		private Fingerprint fingerprint;
+		
+		Group(String[] args, int[] options, int from, int to, int defaultsEnd, int terminator) {
+			this.args = args;
+			this.options = options;
+			this.from = from;
+			this.to = to;
+			this.defaultsEnd = defaultsEnd;
+			this.terminator = terminator;
+		}
+		
+		private boolean hasDefaults() {
+			return defaultsEnd > 0 || terminator + 1 < args.length;
+		}
+		
+		/** Returns the last option with the given name, or {@code -1}. */
+		private int find(String arg) {
+			for(int i = to - 1; i >= from; i--) {
+				if(args[options[2 * i]].equals(arg)) return i;
+			}
+			return -1;
+		}
+		
+		@Override
+		public Fingerprint fingerprint() {
+			if(fingerprint == null) fingerprint = fingerprint(new JarpaArg<?>[0]);
+			return fingerprint;
+		}
+		
+		@Override
+		String[] getRaw(String arg) {
+			if(arg.equals(DEFAULT_ARGUMENT)) {
+				if(!hasDefaults()) return EMPTY_ARRAY;
+				int after = Math.max(0, args.length - terminator - 1);
+				String[] values = Arrays.copyOf(args, defaultsEnd + after);
+				System.arraycopy(args, args.length - after, values, defaultsEnd, after);
+				return values;
+			}
+			int i = find(arg);
+			if(i == -1) return EMPTY_ARRAY;
+			return Arrays.copyOfRange(args, options[2 * i] + 1, options[2 * i + 1]);
+		}
+		
+		@Override
+		boolean contains(String arg) {
+			if(arg.equals(DEFAULT_ARGUMENT)) return hasDefaults();
+			return find(arg) != -1;
+		}
+		
+		@Override
+		Set<String> keys() {
+			if(keys == null) {
+				Set<String> names = new LinkedHashSet<>();
+				if(hasDefaults()) names.add(DEFAULT_ARGUMENT);
+				for(int i = from; i < to; i++) names.add(args[options[2 * i]]);
+				keys = Collections.unmodifiableSet(names);
+			}
+			return keys;
+		}
+		
+		@Override
+		void put(String arg, String[] vals) {
+			throw new UnsupportedOperationException("Option groups are read-only");
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArgs.DEFAULT_ARGUMENT;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** A fixed table of option names numbered from {@code 0}, shared by the
+ * writer and the reader of records encoded by {@link JarpaArgsCodec} so
+ * that the records refer to the options by number instead of repeating
+ * their names. Both ends usually know the arguments of the program and
+ * can build the same table with {@link OptionIds#of(JarpaArg...)};
+ * otherwise the table can be written once with
+ * {@link JarpaArgsCodec#encodeTable(OptionIds)} ahead of the records.
+ * 
+ * <p>Instances are immutable and may be used by several threads.</p> */
+public final class OptionIds {
+	
+	/** The table of records that carry all of their names. */
+	static final OptionIds NONE = new OptionIds(new String[0]);
+	
+	private final String[] names;
+	private final Map<String, Integer> ids;
+	
+	private OptionIds(String[] names) {
+		this.names = names;
+		ids = new HashMap<>(names.length * 4 / 3 + 1);
+		for(int i = 0; i < names.length; i++) {
+			if(ids.putIfAbsent(names[i], i) != null) {
+				throw new IllegalArgumentException("Duplicate option name " + names[i]);
+			}
+		}
+	}
+	
+	/** Returns a table of the given names in order.
+	 * @throws IllegalArgumentException if a name is given twice */
+	public static OptionIds of(String...names) {
+		return new OptionIds(names.clone());
+	}
+	
+	/** Returns a table of the default argument and the aliases and
+	 * negators of the given arguments, in order, each name once. */
+	public static OptionIds of(JarpaArg<?>...args) {
+		Set<String> names = new LinkedHashSet<>();
+		names.add(DEFAULT_ARGUMENT);
+		for(JarpaArg<?> arg : args) {
+			names.addAll(arg.aliases);
+			names.addAll(arg.negatorList());
+		}
+		return new OptionIds(names.toArray(new String[names.size()]));
+	}
+	
+	/** Returns the number of names. */
+	public int size() {
+		return names.length;
+	}
+	
+	/** Returns the number of the given name, or {@code -1} if it is not
+	 * in the table. */
+	public int id(String name) {
+		Integer id = ids.get(name);
+		return id == null ? -1 : id;
+	}
+	
+	/** Returns the name with the given number.
+	 * @throws IndexOutOfBoundsException if there is no such name */
+	public String name(int id) {
+		return names[id];
+	}
+	
+	/** Returns the names in order. */
+	public List<String> names() {
+		return Collections.unmodifiableList(Arrays.asList(names));
+	}
+}
@@ -0,0 +1,114 @@
+package fi.purkka.jarpa;
+
+/** Limits on the size of the input to a parser, for parsing argument
+ * vectors from untrusted sources such as the clients of a server.
+ * 
+ * <p>{@code JarpaParser.parsing(argv).limits(ParseLimits.none().maxTokens(256)
+ * .maxValues(64).maxTokenLength(4096)).parse()}</p>
+ * 
+ * <p>The limits are checked while the tokens are first scanned and
+ * before the values of each argument are copied or split, so input over
+ * the limits fails with a {@code JarpaException} of type
+ * {@code LIMIT_EXCEEDED} without anything being allocated for it. Lengths
+ * are counted in {@code char}s, as the tokens are already strings, except
+ * by {@link ParseLimits#checkTokenBytes(int, long)}, which readers of
+ * encoded input such as {@code JarpaServer} use before decoding.</p>
+ * 
+ * <p>Instances are immutable: every method returns a new instance with
+ * the limit changed.</p> */
+public final class ParseLimits {
+	
+	private static final ParseLimits NONE = new ParseLimits(Integer.MAX_VALUE,
+			Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+	
+	final int maxTokens;
+	final int maxValues;
+	final int maxTokenLength;
+	final long maxTotalLength;
+	
+	private ParseLimits(int maxTokens, int maxValues, int maxTokenLength, long maxTotalLength) {
+		this.maxTokens = maxTokens;
+		this.maxValues = maxValues;
+		this.maxTokenLength = maxTokenLength;
+		this.maxTotalLength = maxTotalLength;
+	}
+	
+	/** Returns limits that allow any input. */
+	public static ParseLimits none() {
+		return NONE;
+	}
+	
+	/** Limits the number of tokens, including arguments, values and a
+	 * terminating {@code --}. */
+	public ParseLimits maxTokens(int max) {
+		return new ParseLimits(checkPositive(max), maxValues, maxTokenLength, maxTotalLength);
+	}
+	
+	/** Limits the number of values of any single argument, including the
+	 * default argument and comma-separated values given to
+	 * {@link EqualsParser}. */
+	public ParseLimits maxValues(int max) {
+		return new ParseLimits(maxTokens, checkPositive(max), maxTokenLength, maxTotalLength);
+	}
+	
+	/** Limits the length of any single token. */
+	public ParseLimits maxTokenLength(int max) {
+		return new ParseLimits(maxTokens, maxValues, checkPositive(max), maxTotalLength);
+	}
+	
+	/** Limits the total length of all tokens. */
+	public ParseLimits maxTotalLength(long max) {
+		return new ParseLimits(maxTokens, maxValues, maxTokenLength, checkPositive(max));
+	}
+	
+	private static int checkPositive(int max) {
+		return (int) checkPositive((long) max);
+	}
+	
+	private static long checkPositive(long max) {
+		if(max < 1) throw new IllegalArgumentException("Limit must be positive: " + max);
+		return max;
+	}
+	
+	/** Checks the number of tokens.
+	 * @throws JarpaException if there are more than allowed */
+	public void checkTokenCount(int count) {
+		if(count > maxTokens) {
+			throw JarpaException.limitExceeded("more than " + maxTokens + " tokens");
+		}
+	}
+	
+	/** Checks the length in bytes of an encoded token before it is
+	 * decoded, returning the total length so far. As no character takes
+	 * less than a byte, a token within the limits in bytes is also within
+	 * them in characters.
+	 * @throws JarpaException if the token or the total is too long */
+	public long checkTokenBytes(int bytes, long total) {
+		return checkLength(bytes, total, "bytes");
+	}
+	
+	/** Checks a token, returning the total length so far. */
+	long checkToken(String token, long total) {
+		return checkLength(token.length(), total, "characters");
+	}
+	
+	private long checkLength(int length, long total, String unit) {
+		if(length > maxTokenLength) {
+			throw JarpaException.limitExceeded("token of more than "
+					+ maxTokenLength + " " + unit);
+		}
+		total += length;
+		if(total > maxTotalLength) {
+			throw JarpaException.limitExceeded("more than " + maxTotalLength
+					+ " " + unit + " in total");
+		}
+		return total;
+	}
+	
+	void checkValueCount(String arg, int count) {
+		if(count > maxValues) {
+			throw JarpaException.limitExceeded("more than " + maxValues + " values for "
+					+ (arg.equals(JarpaArgs.DEFAULT_ARGUMENT) ? "[default argument]" : arg));
+		}
+	}
+}
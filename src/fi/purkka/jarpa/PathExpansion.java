@@ -0,0 +1,267 @@
+package fi.purkka.jarpa;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import fi.purkka.jarpa.conditions.PathCondition;
+
+/** Expands the values of a {@link JarpaArg.PathArg} into a lazy stream
+ * of paths.
+ * 
+ * <p>The directories are walked by {@link Walker}s, which only hold the
+ * directories still to be listed and an open listing of the current one,
+ * never the paths found. Walkers split by handing over half of their pending
+ * directories, which lets parallel streams list several directories at the
+ * same time. A walker with none to hand over first reads ahead in its
+ * listing until it finds one, keeping the matching paths it passes.</p> */
+final class PathExpansion {
+	
+	private static final String GLOB_CHARS = "*?[{";
+	/** How many paths a walker reads ahead at most when splitting. */
+	private static final int READ_AHEAD = 1024;
+	
+	PathCondition filter;
+	int maxDepth = Integer.MAX_VALUE;
+	boolean followLinks = false;
+	
+	Stream<Path> expand(String[] values) {
+		Deque<Entry> roots = new ArrayDeque<>();
+		for(String value : values) {
+			roots.add(root(value));
+		}
+		Queue<Walker> walkers = new ConcurrentLinkedQueue<>();
+		Walker walker = new Walker(roots, walkers, Long.MAX_VALUE);
+		return StreamSupport.stream(walker, true).onClose(() -> {
+			for(Walker w : walkers) w.closeListing();
+		});
+	}
+	
+	private Entry root(String value) {
+		String[] segments = value.split("/", -1);
+		int firstGlob = 0;
+		while(firstGlob < segments.length && !isGlob(segments[firstGlob])) {
+			firstGlob++;
+		}
+		
+		if(firstGlob == segments.length) {
+			Path path = Paths.get(value);
+			if(Files.isDirectory(path, linkOptions())) {
+				return new Entry(path, null, 0, new Root(null, maxDepth), true);
+			}
+			if(!Files.exists(path, linkOptions())) {
+				throw JarpaException.parseException(new NoSuchFileException(value));
+			}
+			return new Entry(path, null, 0, null, false);
+		}
+		
+		String base = String.join("/", Arrays.copyOfRange(segments, 0, firstGlob));
+		String pattern = String.join("/", Arrays.copyOfRange(segments, firstGlob, segments.length));
+		if(base.isEmpty() && value.startsWith("/")) base = "/";
+		Path basePath = Paths.get(base);
+		if(!Files.isDirectory(basePath, linkOptions())) {
+			throw JarpaException.parseException(Files.exists(basePath, linkOptions())
+					? new NotDirectoryException(base) : new NoSuchFileException(base));
+		}
+		int depth = pattern.contains("**") ? maxDepth
+				: Math.min(maxDepth, segments.length - firstGlob);
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+		return new Entry(basePath, null, 0, new Root(matcher, depth), true);
+	}
+	
+	private static boolean isGlob(String segment) {
+		for(int i = 0; i < segment.length(); i++) {
+			if(GLOB_CHARS.indexOf(segment.charAt(i)) != -1) return true;
+		}
+		return false;
+	}
+	
+	private LinkOption[] linkOptions() {
+		return followLinks ? new LinkOption[0] : new LinkOption[] { LinkOption.NOFOLLOW_LINKS };
+	}
+	
+	/** How the paths below a root are matched. A {@code null} matcher
+	 * accepts every path that is not a directory. */
+	private static final class Root {
+		
+		final PathMatcher matcher;
+		final int maxDepth;
+		
+		Root(PathMatcher matcher, int maxDepth) {
+			this.matcher = matcher;
+			this.maxDepth = maxDepth;
+		}
+	}
+	
+	/** A directory to be listed, or a path given directly or already
+	 * matched that is only left to be filtered, with its path relative to
+	 * the root for matching. */
+	private static final class Entry {
+		
+		final Path path;
+		final Path relative;
+		final int depth;
+		final Root root;
+		final boolean directory;
+		
+		Entry(Path path, Path relative, int depth, Root root, boolean directory) {
+			this.path = path;
+			this.relative = relative;
+			this.depth = depth;
+			this.root = root;
+			this.directory = directory;
+		}
+	}
+	
+	private final class Walker implements Spliterator<Path> {
+		
+		private final Deque<Entry> pending;
+		private final Queue<Walker> walkers;
+		private long estimate;
+		private Entry current;
+		private DirectoryStream<Path> listing;
+		private Iterator<Path> children;
+		
+		Walker(Deque<Entry> pending, Queue<Walker> walkers, long estimate) {
+			this.pending = pending;
+			this.walkers = walkers;
+			this.estimate = estimate;
+			walkers.add(this);
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super Path> action) {
+			while(true) {
+				if(children != null && children.hasNext()) {
+					Path child = children.next();
+					if(visit(child) && accepts(child)) {
+						action.accept(child);
+						return true;
+					}
+					continue;
+				}
+				closeListing();
+				
+				Entry next = pending.poll();
+				if(next == null) return false;
+				if(!next.directory) {
+					if(accepts(next.path)) {
+						action.accept(next.path);
+						return true;
+					}
+					continue;
+				}
+				open(next);
+			}
+		}
+		
+		/** Pushes the given child of the current directory to be listed if
+		 * it is a directory to descend into, and returns whether it matches
+		 * the pattern. */
+		private boolean visit(Path child) {
+			boolean isDirectory = Files.isDirectory(child, linkOptions());
+			int depth = current.depth + 1;
+			Path relative = current.relative == null
+					? child.getFileName() : current.relative.resolve(child.getFileName());
+			if(isDirectory && depth < current.root.maxDepth && descends(child)) {
+				pending.push(new Entry(child, relative, depth, current.root, true));
+			}
+			return current.root.matcher == null
+					? !isDirectory : current.root.matcher.matches(relative);
+		}
+		
+		private boolean accepts(Path path) {
+			return filter == null || filter.predicate.test(path);
+		}
+		
+		private boolean descends(Path directory) {
+			return filter == null || filter.directoryPredicate.test(directory);
+		}
+		
+		private void open(Entry directory) {
+			try {
+				current = directory;
+				listing = Files.newDirectoryStream(directory.path);
+				children = listing.iterator();
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		void closeListing() {
+			if(listing == null) return;
+			try {
+				listing.close();
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				listing = null;
+				children = null;
+			}
+		}
+		
+		/** Reads ahead in the current or next pending directory until a
+		 * directory is found to hand over. The matching paths read are kept
+		 * as pending entries. */
+		private void readAhead() {
+			for(int read = 0; read < READ_AHEAD; read++) {
+				// directories are pushed to the front
+				Entry first = pending.peek();
+				if(first != null && first.directory && (children != null || pending.size() > 1)) {
+					return;
+				}
+				if(children == null || !children.hasNext()) {
+					closeListing();
+					if(first == null || !first.directory) return;
+					open(pending.poll());
+					continue;
+				}
+				Path child = children.next();
+				if(visit(child)) {
+					pending.add(new Entry(child, null, 0, null, false));
+				}
+			}
+		}
+		
+		@Override
+		public Spliterator<Path> trySplit() {
+			readAhead();
+			int count = pending.size();
+			if(count < 2 && !(count == 1 && children != null)) return null;
+			Deque<Entry> taken = new ArrayDeque<>();
+			for(int i = 0; i < (count + 1) / 2; i++) {
+				taken.add(pending.pollLast());
+			}
+			estimate >>>= 1;
+			return new Walker(taken, walkers, estimate);
+		}
+		
+		@Override
+		public long estimateSize() {
+			return estimate;
+		}
+		
+		@Override
+		public int characteristics() {
+			return NONNULL;
+		}
+	}
+}
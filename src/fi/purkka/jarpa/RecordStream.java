@@ -0,0 +1,214 @@
+package fi.purkka.jarpa;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import fi.purkka.jarpa.ValueParser.SingleValueParser;
+import fi.purkka.jarpa.conditions.Condition;
+
+/** Turns the values of a {@link JarpaArg.StreamArg} into a lazy stream
+ * of converted elements.
+ * 
+ * <p>The values are read one after another: {@code -} and {@code @-}
+ * stand for the records of the standard input, {@code @path} for the
+ * records of a file and {@code @@value} for the literal {@code @value};
+ * anything else is a single element as is. Files and the standard input
+ * are read through a channel in fixed-size blocks, so only the record
+ * being read is held in memory.</p> */
+final class RecordStream<E> {
+	
+	private static final int BUFFER_SIZE = 1 << 16;
+	
+	final SingleValueParser<E> parser;
+	final List<Condition<E>> conditions = new ArrayList<>();
+	char delimiter = '\n';
+	String name;
+	
+	RecordStream(SingleValueParser<E> parser) {
+		this.parser = parser;
+	}
+	
+	Stream<E> open(String[] values) {
+		Elements elements = new Elements(values);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(elements,
+				Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(elements::close);
+	}
+	
+	private E convert(String raw) {
+		E value;
+		try {
+			value = parser.apply(raw);
+		} catch(JarpaException e) {
+			throw e;
+		} catch(Exception e) {
+			throw JarpaException.parseException(e);
+		}
+		for(Condition<E> condition : conditions) {
+			if(!condition.predicate.test(value)) {
+				Listeners.conditionFailed(name, condition.message);
+				throw JarpaException.failedConditon(name, condition.message);
+			}
+		}
+		return value;
+	}
+	
+	/** The converted elements of all values in order. */
+	private final class Elements implements Iterator<E> {
+		
+		private final String[] values;
+		private int index = 0;
+		private RecordReader reader;
+		private String next;
+		
+		Elements(String[] values) {
+			this.values = values;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			while(next == null) {
+				if(reader != null) {
+					next = reader.read();
+					if(next != null) break;
+					close();
+				}
+				if(index == values.length) return false;
+				String value = values[index++];
+				if(value.equals("-") || value.equals("@-")) {
+					reader = new RecordReader(Channels.newChannel(System.in), false);
+				} else if(value.startsWith("@@")) {
+					next = value.substring(1);
+				} else if(value.startsWith("@")) {
+					try {
+						reader = new RecordReader(FileChannel.open(Paths.get(value.substring(1))), true);
+					} catch(IOException e) {
+						throw JarpaException.parseException(e);
+					}
+				} else {
+					next = value;
+				}
+			}
+			return true;
+		}
+		
+		@Override
+		public E next() {
+			if(!hasNext()) throw new NoSuchElementException();
+			String raw = next;
+			next = null;
+			return convert(raw);
+		}
+		
+		void close() {
+			if(reader != null) {
+				reader.close();
+				reader = null;
+			}
+		}
+	}
+	
+	/** Reads records separated by the delimiter from a channel. In line
+	 * mode a {@code \r} before the delimiter is dropped as well. */
+	private final class RecordReader {
+		
+		private final ReadableByteChannel channel;
+		private final boolean closeChannel;
+		private final boolean lines = delimiter == '\n';
+		private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+		private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+		private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		private final StringBuilder partial = new StringBuilder();
+		private boolean eof = false;
+		
+		RecordReader(ReadableByteChannel channel, boolean closeChannel) {
+			this.channel = channel;
+			this.closeChannel = closeChannel;
+			chars.limit(0);
+		}
+		
+		/** Returns the next record or {@code null} at the end. */
+		String read() {
+			while(true) {
+				char[] array = chars.array();
+				int start = chars.position();
+				int limit = chars.limit();
+				for(int i = start; i < limit; i++) {
+					if(array[i] == delimiter) {
+						chars.position(i + 1);
+						return record(array, start, i);
+					}
+				}
+				partial.append(array, start, limit - start);
+				chars.position(limit);
+				if(eof) {
+					if(partial.length() == 0) return null;
+					return record(array, 0, 0);
+				}
+				fill();
+			}
+		}
+		
+		private String record(char[] array, int from, int to) {
+			String record;
+			if(partial.length() == 0) {
+				if(lines && to > from && array[to - 1] == '\r') to--;
+				record = new String(array, from, to - from);
+			} else {
+				partial.append(array, from, to - from);
+				int length = partial.length();
+				if(lines && partial.charAt(length - 1) == '\r') length--;
+				record = partial.substring(0, length);
+				partial.setLength(0);
+			}
+			return record;
+		}
+		
+		private void fill() {
+			try {
+				chars.clear();
+				eof = channel.read(bytes) < 0;
+				bytes.flip();
+				CoderResult result = decoder.decode(bytes, chars, eof);
+				if(result.isError()) result.throwException();
+				if(eof) decoder.flush(chars);
+				bytes.compact();
+				chars.flip();
+			} catch(CharacterCodingException e) {
+				throw JarpaException.parseException(e);
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		void close() {
+			if(!closeChannel) return;
+			try {
+				channel.close();
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
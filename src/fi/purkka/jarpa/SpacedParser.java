@@ -3,6 +3,8 @@ package fi.purkka.jarpa;
 import static fi.purkka.jarpa.JarpaArgs.DEFAULT_ARGUMENT;
 import static fi.purkka.jarpa.JarpaArgs.EMPTY_ARRAY;
 
+import fi.purkka.jarpa.Tokenizer.Tokens;
+
 /** A parses that assumes that arguments and their values are
  * separated by spaces. For example, the following input
  * 
@@ -15,46 +17,83 @@ import static fi.purkka.jarpa.JarpaArgs.EMPTY_ARRAY;
  * arguments</i>, accessible through the empty string {@code ""}. In
  * this example, {@code val1} and {@code val2} are the values of the
  * default argument.</p>
- *  
- * <p>{@code val1 val2 -arg}</p> */
+ * 
+ * <p>{@code val1 val2 -arg}</p>
+ * 
+ * <p>Everything after a lone {@code --} is also given to the default
+ * argument, even if it looks like an argument. Negative numbers such
+ * as {@code -5} are always treated as values.</p> */
 public class SpacedParser extends JarpaParser {
 	
-	private String[] args;
-	private int index = 0;
+	private final String[] args;
+	private final Tokenizer tokenizer;
 	
-	SpacedParser(String[] args) {
+	SpacedParser(String[] args, Tokenizer tokenizer) {
 		this.args = args;
+		this.tokenizer = tokenizer;
 	}
 	
 	/** Parses the given arguments.
 	 * @see SpacedParser */
 	@Override
 	public JarpaArgs parse() {
-		JarpaArgs jargs = new JarpaArgs();
-		if(!isArgument(args[0])) {
-			jargs.values.put(DEFAULT_ARGUMENT, nextValue());
-		}
-		
-		while(index < args.length) {
-			String arg = args[index];
-			index++;
-			jargs.values.put(arg, nextValue());
+		Object context = Listeners.parseStarted();
+		boolean success = false;
+		try {
+			JarpaArgs jargs = new JarpaArgs();
+			Tokens tokens = tokenizer.tokenize(args, (char) 0);
+			int length = tokens.length();
+			ParseLimits limits = tokenizer.limits;
+			int index = skipValues(tokens, 0);
+			limits.checkValueCount(DEFAULT_ARGUMENT, index);
+			String[] defaults = index > 0 ? copy(0, index) : null;
+			
+			while(index < length) {
+				if(tokens.kinds[index] == Tokenizer.TERMINATOR) {
+					limits.checkValueCount(DEFAULT_ARGUMENT,
+							(defaults == null ? 0 : defaults.length) + length - index - 1);
+					defaults = concat(defaults, copy(index + 1, length));
+					break;
+				}
+				String arg = args[index];
+				int start = index + 1;
+				index = skipValues(tokens, start);
+				limits.checkValueCount(arg, index - start);
+				jargs.put(arg, copy(start, index));
+			}
+			
+			if(defaults != null && defaults.length > 0) {
+				jargs.put(DEFAULT_ARGUMENT, defaults);
+			}
+			success = true;
+			return jargs;
+		} finally {
+			Listeners.parseEnded(context, args.length, success);
 		}
-		return jargs;
 	}
 	
-	private String[] nextValue() {
-		if(index >= args.length) { return EMPTY_ARRAY; }
-		int start = index;
-		
-		while(index < args.length && !isArgument(args[index])) {
+	private static int skipValues(Tokens tokens, int index) {
+		int length = tokens.length();
+		while(index < length && tokens.isValue(index)) {
 			index++;
 		}
-		
-		int end = index;
+		return index;
+	}
+	
+	private String[] copy(int start, int end) {
 		int len = end - start;
+		if(len <= 0) return EMPTY_ARRAY;
 		String[] ret = new String[len];
 		System.arraycopy(args, start, ret, 0, len);
 		return ret;
 	}
+	
+	private static String[] concat(String[] first, String[] second) {
+		if(second.length == 0) return first;
+		if(first == null) return second;
+		String[] ret = new String[first.length + second.length];
+		System.arraycopy(first, 0, ret, 0, first.length);
+		System.arraycopy(second, 0, ret, first.length, second.length);
+		return ret;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package fi.purkka.jarpa;
+
+/** Classifies each token of the input exactly once into a compact array
+ * of kinds, which the parsers then walk instead of inspecting the tokens
+ * again.
+ * 
+ * <p>A token is an {@link #OPTION} if it starts with one of the prefix
+ * characters followed by a letter or by the same prefix character, as in
+ * {@code -v} or {@code --verbose}. A lone {@code --} is a
+ * {@link #TERMINATOR}, after which every token is a {@link #VALUE}. Tokens
+ * such as {@code -5} or {@code -.5} are {@link #NEGATIVE_NUMBER}s, which
+ * are values but are kept apart so that they are never mistaken for
+ * options.</p> */
+final class Tokenizer {
+	
+	static final byte OPTION = 0;
+	static final byte VALUE = 1;
+	static final byte TERMINATOR = 2;
+	static final byte NEGATIVE_NUMBER = 3;
+	
+	static final String DEFAULT_PREFIXES = "-";
+	static final Tokenizer DEFAULT = new Tokenizer(DEFAULT_PREFIXES);
+	
+	private final String prefixes;
+	final ParseLimits limits;
+	
+	Tokenizer(String prefixes) {
+		this(prefixes, ParseLimits.none());
+	}
+	
+	Tokenizer(String prefixes, ParseLimits limits) {
+		if(prefixes.isEmpty()) throw new IllegalArgumentException("No prefix characters given");
+		this.prefixes = prefixes;
+		this.limits = limits;
+	}
+	
+	Tokenizer withPrefixes(String prefixes) {
+		if(prefixes.equals(DEFAULT_PREFIXES) && limits == ParseLimits.none()) return DEFAULT;
+		return new Tokenizer(prefixes, limits);
+	}
+	
+	Tokenizer withLimits(ParseLimits limits) {
+		if(prefixes.equals(DEFAULT_PREFIXES) && limits == ParseLimits.none()) return DEFAULT;
+		return new Tokenizer(prefixes, limits);
+	}
+	
+	/** Classifies the given tokens. If {@code separator} is not {@code 0},
+	 * the index of its first occurrence in each option is also recorded,
+	 * or {@code -1} if it does not occur.
+	 * @throws JarpaException if the tokens exceed the limits */
+	Tokens tokenize(String[] args, char separator) {
+		int count = args.length;
+		limits.checkTokenCount(count);
+		byte[] kinds = new byte[count];
+		int[] separators = separator == 0 ? null : new int[count];
+		long total = 0;
+		int i = 0;
+		for(; i < count; i++) {
+			String token = args[i];
+			total = limits.checkToken(token, total);
+			byte kind = kind(token);
+			kinds[i] = kind;
+			if(kind == TERMINATOR) break;
+			if(kind == OPTION && separators != null) {
+				separators[i] = Chars.indexOf(token, separator, 2, token.length());
+			}
+		}
+		for(i++; i < count; i++) {
+			total = limits.checkToken(args[i], total);
+			kinds[i] = VALUE;
+		}
+		return new Tokens(args, kinds, separators);
+	}
+	
+	/** Returns the kind of a single token, not taking a preceding
+	 * terminator into account. */
+	byte kind(String token) {
+		int len = token.length();
+		if(len < 2) return VALUE;
+		char first = token.charAt(0);
+		if(prefixes.indexOf(first) == -1) return VALUE;
+		char second = token.charAt(1);
+		if(second == first) {
+			return len == 2 && first == '-' ? TERMINATOR : OPTION;
+		}
+		if(isLetter(second)) return OPTION;
+		if(first == '-' && (isDigit(second)
+				|| second == '.' && len > 2 && isDigit(token.charAt(2)))) {
+			return NEGATIVE_NUMBER;
+		}
+		return VALUE;
+	}
+	
+	private static boolean isLetter(char c) {
+		if(c < 0x80) return (char) ((c | 0x20) - 'a') < 26;
+		return Character.isLetter(c);
+	}
+	
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+	
+	/** The result of {@link Tokenizer#tokenize(String[], char)}. */
+	static final class Tokens {
+		
+		final String[] args;
+		final byte[] kinds;
+		final int[] separators;
+		
+		Tokens(String[] args, byte[] kinds, int[] separators) {
+			this.args = args;
+			this.kinds = kinds;
+			this.separators = separators;
+		}
+		
+		int length() {
+			return kinds.length;
+		}
+		
+		boolean isValue(int index) {
+			byte kind = kinds[index];
+			return kind == VALUE || kind == NEGATIVE_NUMBER;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package fi.purkka.jarpa;
+
+import java.time.Duration;
+
+/** Parses durations and byte sizes by scanning their characters directly,
+ * without regular expressions or intermediate strings. */
+final class Units {
+	
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+	private static final String BYTE_PREFIXES = "KMGTPE";
+	
+	private Units() {}
+	
+	/** Parses a duration such as {@code 30s}, {@code 1h30m} or {@code 1.5d}.
+	 * The units are {@code ns}, {@code us}, {@code ms}, {@code s}, {@code m},
+	 * {@code h} and {@code d}. A plain {@code 0} is accepted without a unit,
+	 * and values starting with {@code P} are parsed as ISO-8601 durations. */
+	static Duration parseDuration(CharSequence s) {
+		int len = s.length();
+		if(len > 0 && (s.charAt(0) == 'P' || s.charAt(0) == 'p')) {
+			return Duration.parse(s);
+		}
+		if(len == 1 && s.charAt(0) == '0') return Duration.ZERO;
+		if(len == 0) throw invalid("duration", s);
+		
+		long seconds = 0;
+		long nanos = 0;
+		int i = 0;
+		while(i < len) {
+			int start = i;
+			long whole = 0;
+			while(i < len && isDigit(s.charAt(i))) {
+				whole = Math.addExact(Math.multiplyExact(whole, 10), s.charAt(i++) - '0');
+			}
+			int wholeEnd = i;
+			int fractionStart = i;
+			if(i < len && s.charAt(i) == '.') {
+				fractionStart = ++i;
+				while(i < len && isDigit(s.charAt(i))) i++;
+				if(i == fractionStart) throw invalid("duration", s);
+			}
+			int fractionEnd = i;
+			if(wholeEnd == start && fractionEnd == fractionStart) throw invalid("duration", s);
+			int unitStart = i;
+			while(i < len && !isDigit(s.charAt(i)) && s.charAt(i) != '.') i++;
+			long unit = durationUnit(s, unitStart, i);
+			
+			if(unit >= NANOS_PER_SECOND) {
+				seconds = Math.addExact(seconds, Math.multiplyExact(whole, unit / NANOS_PER_SECOND));
+			} else {
+				long n = Math.multiplyExact(whole, unit);
+				seconds = Math.addExact(seconds, n / NANOS_PER_SECOND);
+				nanos += n % NANOS_PER_SECOND;
+			}
+			// every unit is a multiple of a power of ten, so the scale stays
+			// exact until it would drop below a nanosecond
+			long scale = unit;
+			for(int j = fractionStart; j < fractionEnd && scale >= 10; j++) {
+				scale /= 10;
+				nanos += (s.charAt(j) - '0') * scale;
+			}
+			seconds = Math.addExact(seconds, nanos / NANOS_PER_SECOND);
+			nanos %= NANOS_PER_SECOND;
+		}
+		return Duration.ofSeconds(seconds, nanos);
+	}
+	
+	private static long durationUnit(CharSequence s, int from, int to) {
+		switch(to - from) {
+		case 1:
+			switch(s.charAt(from)) {
+			case 's': return NANOS_PER_SECOND;
+			case 'm': return 60 * NANOS_PER_SECOND;
+			case 'h': return 3600 * NANOS_PER_SECOND;
+			case 'd': return 86400 * NANOS_PER_SECOND;
+			}
+			break;
+		case 2:
+			if(s.charAt(from + 1) != 's') break;
+			switch(s.charAt(from)) {
+			case 'n': return 1;
+			case 'u': case '\u00b5': return 1_000;
+			case 'm': return 1_000_000;
+			}
+			break;
+		}
+		throw invalid("duration", s);
+	}
+	
+	/** Parses a number of bytes such as {@code 512}, {@code 10kB} or
+	 * {@code 1.5GiB}. Prefixes followed by {@code B} are decimal, so
+	 * {@code MB} is 1000<sup>2</sup> bytes, while IEC prefixes such as
+	 * {@code MiB} and single letters such as {@code M} are binary. The
+	 * letters are case-insensitive apart from {@code b}, which would be
+	 * bits and is rejected. */
+	static long parseByteSize(CharSequence s) {
+		int len = s.length();
+		int i = 0;
+		long whole = 0;
+		while(i < len && isDigit(s.charAt(i))) {
+			whole = Math.addExact(Math.multiplyExact(whole, 10), s.charAt(i++) - '0');
+		}
+		if(i == 0) throw invalid("byte size", s);
+		int fractionStart = i;
+		if(i < len && s.charAt(i) == '.') {
+			fractionStart = ++i;
+			while(i < len && isDigit(s.charAt(i))) i++;
+			if(i == fractionStart) throw invalid("byte size", s);
+		}
+		int fractionEnd = i;
+		
+		long unit = byteUnit(s, i, len);
+		long bytes = Math.multiplyExact(whole, unit);
+		if(fractionEnd > fractionStart) {
+			double fraction = 0;
+			double scale = 1;
+			for(int j = fractionStart; j < fractionEnd; j++) {
+				scale /= 10;
+				fraction += (s.charAt(j) - '0') * scale;
+			}
+			bytes = Math.addExact(bytes, Math.round(fraction * unit));
+		}
+		return bytes;
+	}
+	
+	private static long byteUnit(CharSequence s, int from, int to) {
+		int length = to - from;
+		if(length == 0) return 1;
+		if(length == 1 && s.charAt(from) == 'B') return 1;
+		int power = BYTE_PREFIXES.indexOf(Character.toUpperCase(s.charAt(from))) + 1;
+		if(power == 0 || length > 3) throw invalid("byte size", s);
+		if(length == 1) return 1L << 10 * power;
+		char second = s.charAt(from + 1);
+		if(length == 2 && second == 'B') return pow1000(power);
+		if(second == 'i' || second == 'I') {
+			if(length == 2 || s.charAt(from + 2) == 'B') return 1L << 10 * power;
+		}
+		throw invalid("byte size", s);
+	}
+	
+	private static long pow1000(int power) {
+		long result = 1;
+		for(int i = 0; i < power; i++) result *= 1000;
+		return result;
+	}
+	
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+	
+	private static IllegalArgumentException invalid(String what, CharSequence s) {
+		return new IllegalArgumentException("Invalid " + what + ": \"" + s + "\"");
+	}
+}
@@ -16,7 +16,9 @@ import java.util.function.Predicate;
  * <p>There are a few specialized classes for specific kinds of conditions
  * listed below.</p>
  * 
- * @see IntCondition */
+ * @see IntCondition
+ * @see LongCondition
+ * @see DurationCondition */
 public class Condition<T> {
 	
 	public final Predicate<T> predicate;
@@ -0,0 +1,70 @@
+package fi.purkka.jarpa.conditions;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+import fi.purkka.jarpa.JarpaException;
+
+/** Contains conditions relevant to durations, such as those of
+ * {@link fi.purkka.jarpa.JarpaArg#duration(String)}. The bounds are
+ * compared on the seconds and nanoseconds of the durations.
+ * 
+ * @see Condition */
+public class DurationCondition extends Condition<Duration> {
+	
+	private DurationCondition(Predicate<Duration> pred, String msg) {
+		super(pred, msg);
+	}
+	
+	/** Returns a {@code Condition} that is true only if this and the given
+	 * condition are both true.
+	 * @see Condition#and(Condition)*/
+	public DurationCondition and(DurationCondition other) {
+		return new DurationCondition(predicate.and(other.predicate),
+				message + " and " + other.message);
+	}
+	
+	private final static DurationCondition POSITIVE = 
+			new DurationCondition(d -> d.getSeconds() > 0
+					|| d.getSeconds() == 0 && d.getNano() > 0, "must be positive");
+	
+	/** Returns a {@code Condition} that requires that the given
+	 * {@code Duration} is positive. */
+	public static DurationCondition positive() {
+		return POSITIVE;
+	}
+	
+	/** Returns a {@code Condition} that requires that the given
+	 * {@code Duration} is at least the given duration. */
+	public static DurationCondition atLeast(Duration min) {
+		long seconds = min.getSeconds();
+		int nanos = min.getNano();
+		return new DurationCondition(d -> compare(d, seconds, nanos) >= 0,
+				"must be at least " + min);
+	}
+	
+	/** Returns a {@code Condition} that requires that the given
+	 * {@code Duration} is at most the given duration. */
+	public static DurationCondition atMost(Duration max) {
+		long seconds = max.getSeconds();
+		int nanos = max.getNano();
+		return new DurationCondition(d -> compare(d, seconds, nanos) <= 0,
+				"must be at most " + max);
+	}
+	
+	/** Returns a {@code Condition} that requires that the given
+	 * {@code Duration} is in the given range. */
+	public static DurationCondition inRange(Duration from, Duration to) {
+		if(from.compareTo(to) >= 0) throw JarpaException.invalidCondition("inRange", "from >= to");
+		long fromSeconds = from.getSeconds(), toSeconds = to.getSeconds();
+		int fromNanos = from.getNano(), toNanos = to.getNano();
+		return new DurationCondition(d -> compare(d, fromSeconds, fromNanos) >= 0
+				&& compare(d, toSeconds, toNanos) <= 0,
+				"must be between " + from + " and " + to);
+	}
+	
+	private static int compare(Duration d, long seconds, int nanos) {
+		int cmp = Long.compare(d.getSeconds(), seconds);
+		return cmp != 0 ? cmp : Integer.compare(d.getNano(), nanos);
+	}
+}
@@ -0,0 +1,57 @@
+package fi.purkka.jarpa.conditions;
+
+import java.util.function.LongPredicate;
+
+import fi.purkka.jarpa.JarpaException;
+
+/** Contains conditions relevant to {@code long} values, such as those
+ * of {@link fi.purkka.jarpa.JarpaArg#byteSize(String)}.
+ * 
+ * @see Condition */
+public class LongCondition extends Condition<Long> {
+	
+	private LongCondition(LongPredicate pred, String msg) {
+		super(l -> pred.test(l), msg);
+	}
+	
+	private LongPredicate longPredicate() {
+		return l -> predicate.test(l);
+	}
+	
+	/** Returns a {@code Condition} that is true only if this and the given
+	 * condition are both true.
+	 * @see Condition#and(Condition)*/
+	public LongCondition and(LongCondition other) {
+		return new LongCondition(longPredicate().and(other.longPredicate()),
+				message + " and " + other.message);
+	}
+	
+	private final static LongCondition POSITIVE = 
+			new LongCondition(l -> l > 0, "must be positive");
+	
+	/** Returns a {@code Condition} that requires that the given {@code long}
+	 * is positive. */
+	public static LongCondition positive() {
+		return POSITIVE;
+	}
+	
+	/** Returns a {@code Condition} that requires that the given {@code long}
+	 * is at least the given value. */
+	public static LongCondition atLeast(long min) {
+		return new LongCondition(l -> l >= min, "must be at least " + min);
+	}
+	
+	/** Returns a {@code Condition} that requires that the given {@code long}
+	 * is at most the given value. */
+	public static LongCondition atMost(long max) {
+		return new LongCondition(l -> l <= max, "must be at most " + max);
+	}
+	
+	/** Returns a {@code Condition} that requires that the given {@code long}
+	 * is in the given range. */
+	public static LongCondition inRange(long from, long to) {
+		if(from >= to) throw JarpaException.invalidCondition("inRange", "from >= to");
+		return new LongCondition(l -> l >= from && l <= to,
+				"must be between " + from + " and " + to);
+	}
+}
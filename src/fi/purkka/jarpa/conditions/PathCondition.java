@@ -0,0 +1,136 @@
+package fi.purkka.jarpa.conditions;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+import fi.purkka.jarpa.JarpaArg;
+
+/** Contains conditions relevant to paths. When given to
+ * {@link JarpaArg.PathArg#matching(PathCondition)}, they are used to filter
+ * the paths while the directories are walked.
+ * 
+ * <p>Conditions that need file attributes return {@code false} if the
+ * attributes cannot be read.</p>
+ * 
+ * @see Condition */
+public class PathCondition extends Condition<Path> {
+	
+	/** Tested on the directories found while walking. Directories for
+	 * which it is false are not descended into. */
+	public final Predicate<Path> directoryPredicate;
+	
+	private PathCondition(Predicate<Path> pred, String msg) {
+		this(pred, p -> true, msg);
+	}
+	
+	private PathCondition(Predicate<Path> pred, Predicate<Path> directoryPred, String msg) {
+		super(pred, msg);
+		directoryPredicate = directoryPred;
+	}
+	
+	/** Returns a {@code Condition} that is true only if this and the given
+	 * condition are both true.
+	 * @see Condition#and(Condition)*/
+	public PathCondition and(PathCondition other) {
+		return new PathCondition(predicate.and(other.predicate),
+				directoryPredicate.and(other.directoryPredicate),
+				message + " and " + other.message);
+	}
+	
+	private final static PathCondition REGULAR_FILE =
+			new PathCondition(p -> Files.isRegularFile(p), "must be a regular file");
+	
+	/** Returns a {@code Condition} that requires that the given path
+	 * is a regular file. */
+	public static PathCondition regularFile() {
+		return REGULAR_FILE;
+	}
+	
+	private final static PathCondition DIRECTORY =
+			new PathCondition(p -> Files.isDirectory(p), "must be a directory");
+	
+	/** Returns a {@code Condition} that requires that the given path
+	 * is a directory. */
+	public static PathCondition directory() {
+		return DIRECTORY;
+	}
+	
+	private final static Predicate<Path> VISIBLE = p -> {
+		Path name = p.getFileName();
+		return name == null || !name.toString().startsWith(".");
+	};
+	
+	private final static PathCondition NOT_HIDDEN =
+			new PathCondition(VISIBLE, VISIBLE, "must not be hidden");
+	
+	/** Returns a {@code Condition} that requires that the name of the
+	 * given path does not start with a dot. Hidden directories are not
+	 * walked into either. */
+	public static PathCondition notHidden() {
+		return NOT_HIDDEN;
+	}
+	
+	/** Returns a {@code Condition} that requires that the name of the given
+	 * path ends with one of the given extensions, ignoring case. The
+	 * extensions are given without the leading dot. */
+	public static PathCondition extension(String...extensions) {
+		String[] suffixes = Arrays.stream(extensions)
+				.map(e -> "." + e.toLowerCase(Locale.ROOT))
+				.toArray(String[]::new);
+		return new PathCondition(p -> {
+			Path name = p.getFileName();
+			if(name == null) return false;
+			String str = name.toString();
+			for(String suffix : suffixes) {
+				if(str.regionMatches(true, str.length() - suffix.length(),
+						suffix, 0, suffix.length())) return true;
+			}
+			return false;
+		}, "must have extension " + String.join(" or ", extensions));
+	}
+	
+	/** Returns a {@code Condition} that requires that the name of the given
+	 * path matches the given glob pattern, such as {@code *.txt}. */
+	public static PathCondition name(String glob) {
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+		return new PathCondition(p -> {
+			Path name = p.getFileName();
+			return name != null && matcher.matches(name);
+		}, "name must match " + glob);
+	}
+	
+	/** Returns a {@code Condition} that requires that the size of the given
+	 * path is at most the given number of bytes. */
+	public static PathCondition sizeAtMost(long bytes) {
+		return new PathCondition(p -> {
+			try {
+				return Files.size(p) <= bytes;
+			} catch(IOException e) {
+				return false;
+			}
+		}, "must be at most " + bytes + " bytes");
+	}
+	
+	/** Returns a {@code Condition} that requires that the given path was
+	 * last modified after the given instant. */
+	public static PathCondition modifiedAfter(Instant instant) {
+		FileTime time = FileTime.from(instant);
+		return new PathCondition(p -> {
+			try {
+				return Files.getLastModifiedTime(p, LinkOption.NOFOLLOW_LINKS)
+						.compareTo(time) > 0;
+			} catch(IOException e) {
+				return false;
+			}
+		}, "must be modified after " + instant);
+	}
+}
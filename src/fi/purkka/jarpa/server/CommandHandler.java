@@ -0,0 +1,13 @@
+package fi.purkka.jarpa.server;
+
+/** Runs a command registered to a {@link JarpaServer}.
+ * 
+ * <p>The returned value is sent to the client as the exit code of
+ * the command. A {@code JarpaException} thrown by the handler is
+ * reported to the client with exit code {@value JarpaServer#USAGE_ERROR};
+ * any other exception with exit code {@value JarpaServer#FAILURE}.</p> */
+@FunctionalInterface
+public interface CommandHandler {
+	
+	public int run(Invocation invocation) throws Exception;
+}
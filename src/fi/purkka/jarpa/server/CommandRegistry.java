@@ -0,0 +1,90 @@
+package fi.purkka.jarpa.server;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Named commands that can be added, replaced and removed while they
+ * are being served.
+ * 
+ * <p>Each command is stored as an immutable {@link Command} holding its
+ * schema, handler and version, and replacing a command swaps that entry
+ * atomically. Looking a command up never takes a lock; whoever looked up
+ * a command keeps using that version until it is done, whatever is
+ * registered in the meantime.</p> */
+public final class CommandRegistry {
+	
+	private final Map<String, Command> commands = new ConcurrentHashMap<>();
+	
+	/** Registers a command with the given schema and handler, replacing
+	 * any previous one with the same name. Returns the new version, which
+	 * starts from {@code 1} and grows by one on every replacement.
+	 * 
+	 * <p>A {@code null} schema means that the handler retrieves its
+	 * arguments itself from {@link Invocation#args()}.</p> */
+	public long register(String name, CommandSchema schema, CommandHandler handler) {
+		if(handler == null) throw new NullPointerException("handler");
+		return commands.compute(name, (key, old) -> new Command(key, schema, handler,
+				old == null ? 1 : old.version + 1)).version;
+	}
+	
+	/** Removes the command with the given name. Returns whether there
+	 * was one. */
+	public boolean remove(String name) {
+		return commands.remove(name) != null;
+	}
+	
+	/** Returns the current version of the given command, or {@code null}
+	 * if no such command is registered. */
+	public Command lookup(String name) {
+		return commands.get(name);
+	}
+	
+	/** Returns the names of the registered commands. The set reflects
+	 * later changes to the registry. */
+	public Set<String> names() {
+		return Collections.unmodifiableSet(commands.keySet());
+	}
+	
+	/** Returns the number of registered commands. */
+	public int size() {
+		return commands.size();
+	}
+	
+	/** One version of a registered command. */
+	public static final class Command {
+		
+		private final String name;
+		private final CommandSchema schema;
+		private final CommandHandler handler;
+		private final long version;
+		
+		private Command(String name, CommandSchema schema, CommandHandler handler, long version) {
+			this.name = name;
+			this.schema = schema;
+			this.handler = handler;
+			this.version = version;
+		}
+		
+		/** Returns the name of the command. */
+		public String name() {
+			return name;
+		}
+		
+		/** Returns the schema of the command, or {@code null} if it has none. */
+		public CommandSchema schema() {
+			return schema;
+		}
+		
+		/** Returns the handler of the command. */
+		public CommandHandler handler() {
+			return handler;
+		}
+		
+		/** Returns the version of the command. */
+		public long version() {
+			return version;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package fi.purkka.jarpa.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import fi.purkka.jarpa.ArgValues;
+import fi.purkka.jarpa.Constraints;
+import fi.purkka.jarpa.JarpaArg;
+import fi.purkka.jarpa.JarpaArgs;
+
+/** The arguments accepted by a command. Schemas are immutable once
+ * created, so a parse that started with one schema keeps using it even
+ * if the command is replaced in a {@link CommandRegistry} meanwhile. The
+ * given {@code JarpaArg}s must not be modified after the schema is
+ * created.
+ * 
+ * <p>{@code CommandSchema.of(JarpaArg.string("--name"), JarpaArg.flag("-v"))}</p> */
+public final class CommandSchema {
+	
+	private final List<JarpaArg<?>> args;
+	private final JarpaArg<?>[] array;
+	private final Constraints constraints;
+	
+	private CommandSchema(List<JarpaArg<?>> args, Constraints constraints) {
+		this.args = Collections.unmodifiableList(args);
+		this.array = args.toArray(new JarpaArg<?>[args.size()]);
+		this.constraints = constraints;
+	}
+	
+	/** Returns a schema accepting the given arguments. */
+	public static CommandSchema of(JarpaArg<?>...args) {
+		return new CommandSchema(new ArrayList<>(Arrays.asList(args)), Constraints.none());
+	}
+	
+	/** Returns a schema accepting the given arguments. */
+	public static CommandSchema of(List<? extends JarpaArg<?>> args) {
+		return new CommandSchema(new ArrayList<>(args), Constraints.none());
+	}
+	
+	/** Returns a schema with the same arguments that also checks the
+	 * given constraints, replacing any previous ones. */
+	public CommandSchema constrained(Constraints constraints) {
+		return new CommandSchema(new ArrayList<>(args), constraints);
+	}
+	
+	/** Returns the arguments of this schema. */
+	public List<JarpaArg<?>> args() {
+		return args;
+	}
+	
+	/** Checks the constraints of this schema, retrieves the values of
+	 * every argument in a single pass and then calls
+	 * {@link JarpaArgs#finish()}, so arguments not in the schema raise a
+	 * {@code JarpaException}. Failures of individual arguments are
+	 * recorded in the returned {@link ArgValues}. */
+	public ArgValues retrieve(JarpaArgs parsed) {
+		constraints.check(parsed);
+		ArgValues values = parsed.getAll(array);
+		parsed.finish();
+		return values;
+	}
+}
@@ -0,0 +1,52 @@
+package fi.purkka.jarpa.server;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** Buffers output of a command and sends it to the client as frames
+ * of a single kind whenever the buffer fills up or is flushed. Both
+ * output streams of a connection share the underlying stream, which
+ * is used as the lock. */
+final class FrameOutputStream extends OutputStream {
+	
+	private final DataOutputStream out;
+	private final byte kind;
+	private final byte[] buffer = new byte[8192];
+	private int count = 0;
+	
+	FrameOutputStream(DataOutputStream out, byte kind) {
+		this.out = out;
+		this.kind = kind;
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		if(count == buffer.length) flush();
+		buffer[count++] = (byte) b;
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while(len > 0) {
+			if(count == buffer.length) flush();
+			int n = Math.min(len, buffer.length - count);
+			System.arraycopy(b, off, buffer, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		if(count == 0) return;
+		synchronized(out) {
+			out.writeByte(kind);
+			out.writeInt(count);
+			out.write(buffer, 0, count);
+			out.flush();
+		}
+		count = 0;
+	}
+}
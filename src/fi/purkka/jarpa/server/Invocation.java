@@ -0,0 +1,67 @@
+package fi.purkka.jarpa.server;
+
+import java.io.PrintStream;
+
+import fi.purkka.jarpa.ArgValues;
+import fi.purkka.jarpa.JarpaArgs;
+
+/** A single invocation of a command received by a {@link JarpaServer}.
+ * 
+ * <p>Anything written to {@link Invocation#out()} and {@link Invocation#err()}
+ * is streamed back to the client as it is flushed; both streams flush
+ * automatically on each line.</p> */
+public final class Invocation {
+	
+	private final String command;
+	private final long version;
+	private final JarpaArgs args;
+	private final ArgValues values;
+	private final PrintStream out;
+	private final PrintStream err;
+	
+	Invocation(String command, long version, JarpaArgs args, ArgValues values,
+			PrintStream out, PrintStream err) {
+		this.command = command;
+		this.version = version;
+		this.args = args;
+		this.values = values;
+		this.out = out;
+		this.err = err;
+	}
+	
+	/** Returns the name the command was invoked with. */
+	public String command() {
+		return command;
+	}
+	
+	/** Returns the version of the command that is running.
+	 * @see CommandRegistry#register(String, CommandSchema, CommandHandler) */
+	public long version() {
+		return version;
+	}
+	
+	/** Returns the parsed arguments given to the command. */
+	public JarpaArgs args() {
+		return args;
+	}
+	
+	/** Returns the values of the arguments in the schema of the command.
+	 * @throws IllegalStateException if the command was registered
+	 * without a schema */
+	public ArgValues values() {
+		if(values == null) {
+			throw new IllegalStateException("Command " + command + " has no schema");
+		}
+		return values;
+	}
+	
+	/** Returns the stream forwarded to the standard output of the client. */
+	public PrintStream out() {
+		return out;
+	}
+	
+	/** Returns the stream forwarded to the standard error of the client. */
+	public PrintStream err() {
+		return err;
+	}
+}
@@ -0,0 +1,86 @@
+package fi.purkka.jarpa.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+
+/** A client of {@link JarpaServer}. A single connection may be used to
+ * run any number of commands one after another.
+ * 
+ * <p>The class may also be run directly, in which case it runs a single
+ * command and exits with its exit code:</p>
+ * 
+ * <p>{@code java fi.purkka.jarpa.server.JarpaClient <port> <command> [args...]}</p> */
+public final class JarpaClient implements AutoCloseable {
+	
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	
+	private JarpaClient(Socket socket) throws IOException {
+		this.socket = socket;
+		socket.setTcpNoDelay(true);
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+	}
+	
+	/** Connects to a server listening on the given loopback port. */
+	public static JarpaClient connect(int port) throws IOException {
+		return new JarpaClient(new Socket(InetAddress.getLoopbackAddress(), port));
+	}
+	
+	/** Runs a command, writing its output to the given streams as it arrives,
+	 * and returns its exit code. The first element of {@code argv} is the
+	 * name of the command. */
+	public int run(String[] argv, OutputStream stdout, OutputStream stderr) throws IOException {
+		if(argv.length == 0) throw new IllegalArgumentException("No command given");
+		Protocol.writeRequest(out, argv);
+		byte[] buffer = new byte[8192];
+		while(true) {
+			byte kind;
+			try {
+				kind = in.readByte();
+			} catch(EOFException e) {
+				throw new IOException("Connection closed by server");
+			}
+			if(kind == Protocol.EXIT) {
+				stdout.flush();
+				stderr.flush();
+				return in.readInt();
+			}
+			OutputStream target = kind == Protocol.OUT ? stdout : stderr;
+			int len = in.readInt();
+			while(len > 0) {
+				int n = in.read(buffer, 0, Math.min(len, buffer.length));
+				if(n < 0) throw new IOException("Connection closed by server");
+				target.write(buffer, 0, n);
+				len -= n;
+			}
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+	
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2) {
+			System.err.println("Usage: JarpaClient <port> <command> [args...]");
+			System.exit(2);
+		}
+		int code;
+		try(JarpaClient client = connect(Integer.parseInt(args[0]))) {
+			code = client.run(Arrays.copyOfRange(args, 1, args.length),
+					System.out, System.err);
+		}
+		System.exit(code);
+	}
+}
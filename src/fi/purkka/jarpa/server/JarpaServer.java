@@ -0,0 +1,283 @@
+package fi.purkka.jarpa.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import fi.purkka.jarpa.ArgValues;
+import fi.purkka.jarpa.AuditLog;
+import fi.purkka.jarpa.JarpaArgs;
+import fi.purkka.jarpa.JarpaException;
+import fi.purkka.jarpa.JarpaParser;
+import fi.purkka.jarpa.ParseLimits;
+
+/** A resident server that keeps a warm JVM and runs registered commands
+ * on behalf of {@link JarpaClient}s, avoiding JVM startup for each
+ * invocation.
+ * 
+ * <p>The server only listens on the loopback interface. Each connection
+ * may send any number of argument vectors; the first element of each names
+ * the command and the rest are parsed with {@link JarpaParser#parsing(String[])}
+ * and passed to the registered {@link CommandHandler} on a thread pool.
+ * Output is streamed back as it is produced, followed by the exit code.</p>
+ * 
+ * <p>Commands are kept in a {@link CommandRegistry} and may be replaced
+ * while the server is running; an invocation uses the version of the
+ * command that was registered when it arrived.</p>
+ * 
+ * <p>{@code try(JarpaServer server = JarpaServer.onPort(0)
+ *         .register("greet", inv -> { ...; return 0; }).start()) { ... }}</p> */
+public final class JarpaServer implements AutoCloseable {
+	
+	/** The exit code sent when a handler throws an exception other than
+	 * a {@code JarpaException}. */
+	public static final int FAILURE = 1;
+	/** The exit code sent when the arguments of a command are invalid. */
+	public static final int USAGE_ERROR = 2;
+	/** The exit code sent when no command with the given name is registered. */
+	public static final int UNKNOWN_COMMAND = 127;
+	
+	private CommandRegistry commands = new CommandRegistry();
+	private volatile AuditLog audit;
+	private volatile ParseLimits limits = ParseLimits.none();
+	private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+	private final int requestedPort;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	
+	private volatile ServerSocket serverSocket;
+	private ExecutorService pool;
+	private Thread acceptor;
+	
+	private JarpaServer(int port) {
+		this.requestedPort = port;
+	}
+	
+	/** Returns a server that will listen on the given loopback port.
+	 * Port {@code 0} picks any free port; see {@link JarpaServer#port()}. */
+	public static JarpaServer onPort(int port) {
+		return new JarpaServer(port);
+	}
+	
+	/** Sets the number of threads running commands. As each thread serves
+	 * one connection at a time, this is also the maximum number of clients
+	 * served concurrently. */
+	public JarpaServer threads(int threads) {
+		if(threads < 1) throw new IllegalArgumentException("threads < 1");
+		this.threads = threads;
+		return this;
+	}
+	
+	/** Makes the server serve the commands of the given registry instead
+	 * of its own, which allows several servers to share one. Must be
+	 * called before the server is started. */
+	public JarpaServer registry(CommandRegistry registry) {
+		if(serverSocket != null) throw new IllegalStateException("Already started");
+		this.commands = registry;
+		return this;
+	}
+	
+	/** Returns the registry of commands served. */
+	public CommandRegistry registry() {
+		return commands;
+	}
+	
+	/** Records the arguments of every request that parses to the given
+	 * log, labelled with the command name. Recording never blocks the
+	 * request; see {@link AuditLog}. Closing the log is left to the
+	 * caller. */
+	public JarpaServer audit(AuditLog audit) {
+		this.audit = audit;
+		return this;
+	}
+	
+	/** Rejects requests whose arguments exceed the given limits with a
+	 * usage error before they are parsed into {@code JarpaArgs}. The
+	 * number of tokens does not include the command name. The lengths are
+	 * first checked in bytes as the request is read, so that an oversized
+	 * request is rejected without being decoded. */
+	public JarpaServer limits(ParseLimits limits) {
+		this.limits = limits;
+		return this;
+	}
+	
+	/** Registers a handler for the given command name, replacing any
+	 * previous one. May be called while the server is running. */
+	public JarpaServer register(String command, CommandHandler handler) {
+		commands.register(command, null, handler);
+		return this;
+	}
+	
+	/** Registers a command whose arguments are retrieved according to the
+	 * given schema before the handler runs, replacing any previous one.
+	 * The values are available from {@link Invocation#values()}. May be
+	 * called while the server is running.
+	 * @see CommandRegistry#register(String, CommandSchema, CommandHandler) */
+	public JarpaServer register(String command, CommandSchema schema, CommandHandler handler) {
+		commands.register(command, schema, handler);
+		return this;
+	}
+	
+	/** Binds the server socket and starts accepting connections. */
+	public JarpaServer start() throws IOException {
+		if(serverSocket != null) throw new IllegalStateException("Already started");
+		ServerSocket socket = new ServerSocket(requestedPort, 50, InetAddress.getLoopbackAddress());
+		pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "jarpa-server-worker");
+			t.setDaemon(true);
+			return t;
+		});
+		acceptor = new Thread(this::acceptLoop, "jarpa-server-acceptor");
+		acceptor.setDaemon(true);
+		// published last so that other threads seeing it see the rest
+		serverSocket = socket;
+		acceptor.start();
+		return this;
+	}
+	
+	/** Returns the port the server is listening on. */
+	public int port() {
+		if(serverSocket == null) throw new IllegalStateException("Not started");
+		return serverSocket.getLocalPort();
+	}
+	
+	/** Stops accepting connections and closes the open ones. */
+	@Override
+	public void close() {
+		if(serverSocket == null) return;
+		closeQuietly(serverSocket);
+		for(Socket socket : connections) closeQuietly(socket);
+		pool.shutdownNow();
+		try {
+			acceptor.join(TimeUnit.SECONDS.toMillis(1));
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void acceptLoop() {
+		while(!serverSocket.isClosed()) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch(IOException e) {
+				return;
+			}
+			connections.add(socket);
+			try {
+				pool.execute(() -> serve(socket));
+			} catch(RejectedExecutionException e) {
+				// closing; the pool takes no more connections
+				connections.remove(socket);
+				closeQuietly(socket);
+				return;
+			}
+		}
+	}
+	
+	private void serve(Socket socket) {
+		try(Socket s = socket) {
+			s.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(
+					new BufferedInputStream(s.getInputStream()));
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(s.getOutputStream()));
+			while(true) {
+				int code;
+				try {
+					String[] argv = Protocol.readRequest(in, limits);
+					if(argv == null) return;
+					code = dispatch(argv, out);
+				} catch(JarpaException e) {
+					// the request was over the limits and has been skipped
+					code = reject(e, out);
+				}
+				synchronized(out) {
+					out.writeByte(Protocol.EXIT);
+					out.writeInt(code);
+					out.flush();
+				}
+			}
+		} catch(SocketException e) {
+			// closed by either end
+		} catch(IOException e) {
+			// malformed request; nothing sensible can be sent back
+		} finally {
+			connections.remove(socket);
+		}
+	}
+	
+	private int dispatch(String[] argv, DataOutputStream stream) {
+		PrintStream out = printStream(stream, Protocol.OUT);
+		PrintStream err = printStream(stream, Protocol.ERR);
+		try {
+			String command = argv[0];
+			CommandRegistry.Command registered = commands.lookup(command);
+			if(registered == null) {
+				err.println("Unknown command " + command);
+				return UNKNOWN_COMMAND;
+			}
+			try {
+				JarpaArgs args = JarpaParser
+						.parsing(Arrays.copyOfRange(argv, 1, argv.length))
+						.limits(limits).parse();
+				AuditLog audit = this.audit;
+				if(audit != null) audit.record(command, args);
+				ArgValues values = null;
+				if(registered.schema() != null) {
+					values = registered.schema().retrieve(args).orThrow();
+				}
+				return registered.handler().run(new Invocation(command,
+						registered.version(), args, values, out, err));
+			} catch(JarpaException e) {
+				err.println(e.getMessage());
+				return USAGE_ERROR;
+			} catch(Exception e) {
+				err.println(e.getClass().getSimpleName() + ": " + e.getMessage());
+				return FAILURE;
+			}
+		} finally {
+			out.flush();
+			err.flush();
+		}
+	}
+	
+	private static int reject(JarpaException e, DataOutputStream stream) {
+		PrintStream err = printStream(stream, Protocol.ERR);
+		err.println(e.getMessage());
+		err.flush();
+		return USAGE_ERROR;
+	}
+	
+	private static PrintStream printStream(DataOutputStream stream, byte kind) {
+		try {
+			return new PrintStream(new FrameOutputStream(stream, kind), true,
+					StandardCharsets.UTF_8.name());
+		} catch(UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+	
+	private static void closeQuietly(AutoCloseable closeable) {
+		try {
+			closeable.close();
+		} catch(Exception e) {
+			// ignored on shutdown
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package fi.purkka.jarpa.server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import fi.purkka.jarpa.JarpaException;
+import fi.purkka.jarpa.ParseLimits;
+
+/** The wire format shared by {@link JarpaServer} and {@link JarpaClient}.
+ * 
+ * <p>A request is an {@code int} count followed by that many strings,
+ * each written as an {@code int} byte length and UTF-8 bytes. The first
+ * string is the name of the command.</p>
+ * 
+ * <p>A response is a sequence of frames, each starting with a kind byte.
+ * Output frames carry an {@code int} length and that many bytes; the
+ * final exit frame carries the {@code int} exit code.</p> */
+final class Protocol {
+	
+	static final byte OUT = 1;
+	static final byte ERR = 2;
+	static final byte EXIT = 3;
+	
+	static final int MAX_STRINGS = 1 << 16;
+	static final int MAX_STRING_BYTES = 1 << 20;
+	
+	private Protocol() {}
+	
+	static void writeRequest(DataOutputStream out, String[] argv) throws IOException {
+		out.writeInt(argv.length);
+		for(String str : argv) {
+			byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+		out.flush();
+	}
+	
+	/** Returns {@code null} if the stream ended cleanly before
+	 * a new request.
+	 * 
+	 * <p>The arguments after the command name are checked against the
+	 * given limits as they are read, counting their lengths in bytes. Once
+	 * a limit is exceeded, the rest of the request is skipped without being
+	 * allocated, so that the next request can still be read, and a
+	 * {@code JarpaException} is thrown.</p> */
+	static String[] readRequest(DataInputStream in, ParseLimits limits) throws IOException {
+		int count;
+		try {
+			count = in.readInt();
+		} catch(EOFException e) {
+			return null;
+		}
+		if(count < 1 || count > MAX_STRINGS) {
+			throw new IOException("Illegal argument count " + count);
+		}
+		JarpaException exceeded = null;
+		String[] argv = null;
+		try {
+			limits.checkTokenCount(count - 1);
+			argv = new String[count];
+		} catch(JarpaException e) {
+			exceeded = e;
+		}
+		long total = 0;
+		for(int i = 0; i < count; i++) {
+			int len = in.readInt();
+			if(len < 0 || len > MAX_STRING_BYTES) {
+				throw new IOException("Illegal argument length " + len);
+			}
+			if(exceeded == null && i > 0) {
+				try {
+					total = limits.checkTokenBytes(len, total);
+				} catch(JarpaException e) {
+					exceeded = e;
+				}
+			}
+			if(exceeded != null) {
+				skipFully(in, len);
+				continue;
+			}
+			byte[] bytes = new byte[len];
+			in.readFully(bytes);
+			argv[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		if(exceeded != null) throw exceeded;
+		return argv;
+	}
+	
+	private static void skipFully(DataInputStream in, int len) throws IOException {
+		while(len > 0) {
+			int skipped = in.skipBytes(len);
+			if(skipped == 0) {
+				// fails at the end of the stream
+				in.readByte();
+				skipped = 1;
+			}
+			len -= skipped;
+		}
+	}
+}
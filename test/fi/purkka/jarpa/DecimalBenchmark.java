@@ -0,0 +1,56 @@
+package fi.purkka.jarpa;
+
+import java.util.Random;
+
+/** Compares {@link FastDoubleParser} with {@link Double#parseDouble(String)}
+ * on a few kinds of input. Not part of the test suite; run with
+ * {@code java -cp <classes> fi.purkka.jarpa.DecimalBenchmark}.
+ * 
+ * <p>Each round parses every string once with both parsers and the best
+ * round is reported, which is enough to see the difference without a
+ * benchmark harness.</p> */
+public class DecimalBenchmark {
+	
+	private static final int COUNT = 1 << 20;
+	private static final int ROUNDS = 15;
+	
+	private static volatile double sink;
+	
+	public static void main(String[] args) {
+		Random random = new Random(39);
+		run("short decimals (12.345)", generate(() ->
+				(random.nextInt(100_000) / 1000.0) + ""));
+		run("full precision (Double.toString)", generate(() ->
+				Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20))));
+		run("integers", generate(() -> Integer.toString(random.nextInt())));
+		run("scientific (1.234e-56)", generate(() ->
+				random.nextInt(10_000) / 1000.0 + "e" + (random.nextInt(600) - 300)));
+	}
+	
+	private interface Generator {
+		String next();
+	}
+	
+	private static String[] generate(Generator generator) {
+		String[] strings = new String[COUNT];
+		for(int i = 0; i < COUNT; i++) strings[i] = generator.next();
+		return strings;
+	}
+	
+	private static void run(String name, String[] strings) {
+		long bestJdk = Long.MAX_VALUE, bestFast = Long.MAX_VALUE;
+		for(int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			double sum = 0;
+			for(String s : strings) sum += Double.parseDouble(s);
+			bestJdk = Math.min(bestJdk, System.nanoTime() - start);
+			
+			start = System.nanoTime();
+			for(String s : strings) sum -= FastDoubleParser.parseDouble(s);
+			bestFast = Math.min(bestFast, System.nanoTime() - start);
+			sink = sum;
+		}
+		System.out.printf("%-34s JDK %7.1f ns/op   fast %7.1f ns/op   %.2fx%n", name,
+				(double) bestJdk / COUNT, (double) bestFast / COUNT, (double) bestJdk / bestFast);
+	}
+}
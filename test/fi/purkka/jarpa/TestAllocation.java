@@ -0,0 +1,114 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.*;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Guards the number of bytes allocated per operation on the hot paths.
+ * 
+ * <p>Each operation is warmed up and then run many times on one thread,
+ * measuring allocation with the thread allocation counters of HotSpot.
+ * The budgets are roughly twice the measured allocation, leaving room for
+ * differences between JVMs while still catching accidental regressions.
+ * Update them deliberately when a change is expected to allocate more.
+ * {@code finish()} must not allocate at all when nothing is left over.</p> */
+public class TestAllocation {
+	
+	private static final int WARMUP = 20_000;
+	private static final int ITERATIONS = 20_000;
+	
+	private static com.sun.management.ThreadMXBean threads;
+	
+	@BeforeClass
+	public static void checkSupport() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		threads = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+	}
+	
+	private static long allocatedBytes() {
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	/** Returns the average number of bytes allocated per run. */
+	private static long measure(Runnable op) {
+		for(int i = 0; i < WARMUP; i++) op.run();
+		// repeat to get past a GC or compilation hiccup
+		long best = Long.MAX_VALUE;
+		for(int round = 0; round < 3; round++) {
+			long before = allocatedBytes();
+			for(int i = 0; i < ITERATIONS; i++) op.run();
+			best = Math.min(best, (allocatedBytes() - before) / ITERATIONS);
+		}
+		return best;
+	}
+	
+	private static void assertBudget(String name, long budget, Runnable op) {
+		long bytes = measure(op);
+		assertTrue(name + " allocated " + bytes + " bytes per operation, budget "
+				+ budget, bytes <= budget);
+	}
+	
+	private static final String[] SPACED = "def -a 1 --bb x y z -c 2.5".split(" ");
+	private static final String[] EQUALS = "def -a=1 --bb=x,y,z -c=2.5".split(" ");
+	
+	private static JarpaArgs parsed(String args) {
+		return JarpaParser.parsing(args.split(" ")).parse();
+	}
+	
+	private static <T> void assertGetBudget(String name, long budget, String args, JarpaArg<T> arg) {
+		JarpaArgs jargs = parsed(args);
+		assertBudget(name, budget, () -> jargs.get(arg));
+	}
+	
+	@Test
+	public void testSpacedParse() {
+		assertBudget("SpacedParser.parse", 1024,
+				() -> JarpaParser.parsing(SPACED).spaceSeparated().parse());
+	}
+	
+	@Test
+	public void testEqualsParse() {
+		assertBudget("EqualsParser.parse", 3072,
+				() -> JarpaParser.parsing(EQUALS).equalsSeparated().parse());
+	}
+	
+	@Test
+	public void testGet() {
+		assertGetBudget("flag", 192, "-f", flag("-f"));
+		assertGetBudget("string", 128, "-s x", string("-s"));
+		assertGetBudget("stringArray", 128, "-s x y z", stringArray("-s"));
+		assertGetBudget("stringList", 192, "-s x y z", stringList("-s"));
+		assertGetBudget("integer", 160, "-i 123456", integer("-i"));
+		assertGetBudget("integerArray", 512, "-i 1 2 3", integerArray("-i"));
+		assertGetBudget("decimal", 256, "-d 2.5", decimal("-d"));
+		assertGetBudget("decimalArray", 896, "-d 1.5 2.5 3.5", decimalArray("-d"));
+		assertGetBudget("object", 192, "-o x", object("-o", StringBuilder::new));
+		assertGetBudget("objectList", 1200, "-o x y z", objectList("-o", StringBuilder::new));
+		assertGetBudget("enumeration", 160, "-e days", enumeration("-e", ChronoUnit.class));
+		assertGetBudget("duration", 192, "-t 1h30m", duration("-t"));
+		assertGetBudget("byteSize", 160, "-s 512MiB", byteSize("-s"));
+		assertGetBudget("optional", 128, "-s x", string("-s").optional());
+		assertGetBudget("missing optional", 64, "-s x", string("-m").optional());
+	}
+	
+	@Test
+	public void testFinish() {
+		JarpaArgs jargs = parsed("def -a 1 --bb x y z -c");
+		jargs.get(stringArray(""));
+		jargs.get(integer("-a"));
+		jargs.get(stringArray("--bb"));
+		jargs.get(flag("-c"));
+		assertBudget("finish", 0, jargs::finish);
+	}
+}
@@ -0,0 +1,146 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.string;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fi.purkka.jarpa.server.JarpaClient;
+import fi.purkka.jarpa.server.JarpaServer;
+
+public class TestAuditLog {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static JarpaArgs parse(String...args) {
+		return JarpaParser.parsing(args).parse();
+	}
+	
+	private static List<String> lines(Path path) throws IOException {
+		return Files.readAllLines(path, StandardCharsets.UTF_8);
+	}
+	
+	/** Drops the leading time stamp. */
+	private static String withoutTime(String line) {
+		return line.substring(line.indexOf('\t') + 1);
+	}
+	
+	@Test
+	public void testFormat() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("audit.log");
+		try(AuditLog audit = AuditLog.open(path)) {
+			assertThat(audit.record("deploy", parse("--env", "pröd")), is(true));
+			assertThat(audit.record(parse("--tags", "a,b", "c\td", "--dry")), is(true));
+		}
+		List<String> lines = lines(path);
+		assertThat(lines.size(), is(2));
+		assertThat(lines.get(0).matches("[0-9]+\tdeploy\t--env=pröd"), is(true));
+		String second = withoutTime(lines.get(1));
+		assertThat(second.contains("\t--tags=a\\,b,c\\td"), is(true));
+		assertThat(second.contains("\t--dry"), is(true));
+	}
+	
+	@Test
+	public void testRedaction() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("audit.log");
+		try(AuditLog audit = AuditLog.open(path).redact(string("--password").alias("-p"))) {
+			audit.record("login", parse("-p", "hunter2"));
+			audit.record("login", parse("--password", "hunter2", "hunter3"));
+		}
+		List<String> lines = lines(path);
+		assertThat(withoutTime(lines.get(0)), is("login\t-p=***"));
+		assertThat(withoutTime(lines.get(1)), is("login\t--password=***"));
+	}
+	
+	@Test
+	public void testTruncation() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("audit.log");
+		StringBuilder value = new StringBuilder();
+		for(int i = 0; i < 100; i++) value.append("ä");
+		try(AuditLog audit = AuditLog.open(path, 4, 64)) {
+			audit.record("long", parse("--x", value.toString()));
+		}
+		List<String> lines = lines(path);
+		assertThat(lines.size(), is(1));
+		assertThat(lines.get(0).endsWith("\t..."), is(true));
+		assertThat(Files.size(path) <= 64, is(true));
+	}
+	
+	@Test(timeout = 10000)
+	public void testFailedRecordDoesNotStallWriter() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("audit.log");
+		try(AuditLog audit = AuditLog.open(path, 4, 64)) {
+			try {
+				audit.record(null, parse("--x", "1"));
+				assertThat(true, is(false));
+			} catch(NullPointerException e) {}
+			JarpaArgs broken = parse("--x", "1");
+			String[] values = {"1"};
+			broken.put("--y", values);
+			values[0] = null;
+			try {
+				audit.record("broken", broken);
+				assertThat(true, is(false));
+			} catch(NullPointerException e) {}
+			for(int i = 0; i < 8; i++) {
+				assertThat(audit.record("ok", parse("--n", "" + i)), is(true));
+				while(audit.written() <= i) Thread.yield();
+			}
+			assertThat(audit.dropped(), is(1L));
+		}
+		List<String> lines = lines(path);
+		assertThat(lines.size(), is(8));
+		assertThat(withoutTime(lines.get(7)), is("ok\t--n=7"));
+	}
+	
+	@Test
+	public void testConcurrentProducers() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("audit.log");
+		int threads = 4, perThread = 5000;
+		AuditLog audit = AuditLog.open(path, 256, 128);
+		JarpaArgs args = parse("--n", "1");
+		List<Thread> producers = new ArrayList<>();
+		for(int t = 0; t < threads; t++) {
+			Thread thread = new Thread(() -> {
+				for(int i = 0; i < perThread; i++) audit.record("run", args);
+			});
+			producers.add(thread);
+			thread.start();
+		}
+		for(Thread thread : producers) thread.join();
+		audit.close();
+		
+		assertThat(audit.written() + audit.dropped(), is((long) threads * perThread));
+		List<String> lines = lines(path);
+		assertThat((long) lines.size(), is(audit.written()));
+		for(String line : lines) assertThat(withoutTime(line), is("run\t--n=1"));
+		
+		assertThat(audit.record(args), is(false));
+	}
+	
+	@Test
+	public void testServer() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("audit.log");
+		try(AuditLog audit = AuditLog.open(path)) {
+			try(JarpaServer server = JarpaServer.onPort(0).audit(audit)
+					.register("echo", inv -> 0).start();
+					JarpaClient client = JarpaClient.connect(server.port())) {
+				client.run(new String[] {"echo", "--text", "hi"},
+						new ByteArrayOutputStream(), new ByteArrayOutputStream());
+			}
+		}
+		assertThat(withoutTime(lines(path).get(0)), is("echo\t--text=hi"));
+	}
+}
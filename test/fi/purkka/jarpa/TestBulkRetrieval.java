@@ -0,0 +1,130 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.*;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import fi.purkka.jarpa.JarpaException.Type;
+
+public class TestBulkRetrieval {
+	
+	private static JarpaArgs spaced(String args) {
+		return JarpaParser.parsing(args.split(" ")).parse();
+	}
+	
+	@Test
+	public void testValues() {
+		JarpaArg<Integer> i = integer("-i").alias("--int");
+		JarpaArg<Boolean> yes = flag("-y").negator("-n");
+		JarpaArg<Optional<String>> missing = string("-m").optional();
+		JarpaArg<String[]> defaults = stringArray("");
+		
+		try(JarpaArgs args = spaced("a b --int 5 -n")) {
+			ArgValues values = args.getAll(i, yes, missing, defaults);
+			assertFalse(values.failed());
+			assertThat(values.get(i), is(5));
+			assertThat(values.get(yes), is(false));
+			assertThat(values.get(missing), is(Optional.empty()));
+			assertThat(values.get(defaults), is(new String[] {"a", "b"}));
+		}
+	}
+	
+	@Test
+	public void testManyArguments() {
+		List<JarpaArg<?>> schema = new ArrayList<>();
+		StringBuilder argv = new StringBuilder();
+		for(int i = 0; i < 200; i++) {
+			schema.add(integer("--opt" + i));
+			argv.append(" --opt").append(i).append(' ').append(i);
+		}
+		
+		try(JarpaArgs args = spaced(argv.toString().trim())) {
+			ArgValues values = args.getAll(schema).orThrow();
+			for(int i = 0; i < 200; i++) {
+				assertThat(values.get(schema.get(i)), is(i));
+			}
+		}
+	}
+	
+	@Test
+	public void testErrors() {
+		JarpaArg<String> twice = string("-f").alias("--foo");
+		JarpaArg<Integer> missing = integer("-m");
+		JarpaArg<Boolean> both = flag("-y").negator("-n");
+		
+		JarpaArgs args = spaced("-f a --foo b -y -n");
+		ArgValues values = args.getAll(twice, missing, both);
+		args.finish();
+		assertThat(values.errors().get("-f").type, is(Type.MULTIPLE_ALIASES_PRESENT));
+		assertThat(values.errors().get("-m").type, is(Type.MANDATORY_ARG_NOT_SPECIFIED));
+		assertThat(values.errors().get("-y").type, is(Type.FLAG_AND_NEGATOR_PRESENT));
+	}
+	
+	@Test
+	public void testSharedAliases() {
+		JarpaArg<String> first = string("-a");
+		JarpaArg<String> second = string("-b").alias("-a");
+		
+		try(JarpaArgs args = spaced("-a x")) {
+			ArgValues values = args.getAll(first, second);
+			assertThat(values.get(first), is("x"));
+			assertThat(values.get(second), is("x"));
+		}
+	}
+	
+	@Test
+	public void testFinishAfterBulkAndSingleRetrieval() {
+		try(JarpaArgs args = spaced("-a 1 -b 2 -c")) {
+			args.getAll(integer("-a"), integer("-b"));
+			args.get(integer("-b"));
+			args.get(flag("-c"));
+		}
+		
+		JarpaArgs args = spaced("-a 1 -b 2 -c -d");
+		args.getAll(integer("-a"), flag("-c"));
+		args.get(integer("-a"));
+		try {
+			args.finish();
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.UNKNOWN_ARGUMENTS));
+			assertThat(e.getMessage().contains("-b"), is(true));
+			assertThat(e.getMessage().contains("-d"), is(true));
+		}
+	}
+	
+	@Test
+	public void testFinishAfterChanges() {
+		JarpaArgs args = spaced("-a 1");
+		args.get(string("-a"));
+		args.remove("-a");
+		args.put("-b", new String[] {"2"});
+		try {
+			args.finish();
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.UNKNOWN_ARGUMENTS));
+		}
+		
+		args.put("-a", new String[] {"3"});
+		args.remove("-b");
+		args.finish();
+		
+		args.clear();
+		args.put("-c", new String[0]);
+		try {
+			args.finish();
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.UNKNOWN_ARGUMENTS));
+		}
+	}
+}
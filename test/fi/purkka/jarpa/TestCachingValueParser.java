@@ -0,0 +1,172 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.object;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fi.purkka.jarpa.JarpaException.Type;
+
+public class TestCachingValueParser {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private final AtomicInteger calls = new AtomicInteger();
+	
+	private String load(String value) {
+		calls.incrementAndGet();
+		return new String(value);
+	}
+	
+	private String read(String path) {
+		calls.incrementAndGet();
+		try {
+			return new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private static <T> T get(String args, JarpaArg<T> arg) {
+		try(JarpaArgs jargs = JarpaParser.parsing(args.split(" ")).parse()) {
+			return jargs.get(arg);
+		}
+	}
+	
+	@Test
+	public void testHits() {
+		CachingValueParser<String> cache = CachingValueParser.of(this::load);
+		JarpaArg<String> arg = object("--template", cache);
+		
+		String first = get("--template a", arg);
+		assertThat(get("--template a", arg), sameInstance(first));
+		assertThat(get("--template b", arg), is("b"));
+		assertThat(calls.get(), is(2));
+		assertThat(cache.hits(), is(1L));
+		assertThat(cache.misses(), is(2L));
+		assertThat(cache.size(), is(2));
+		assertThat(cache.hitRate(), is(1.0 / 3));
+		
+		cache.invalidateAll();
+		assertThat(get("--template a", arg), not(sameInstance(first)));
+		assertThat(calls.get(), is(3));
+	}
+	
+	@Test
+	public void testMultipleValues() {
+		CachingValueParser<String> cache = CachingValueParser.of(
+				(String[] values) -> load(String.join("+", values)));
+		JarpaArg<String> arg = object("--pair", cache);
+		
+		assertThat(get("--pair a b", arg), is("a+b"));
+		assertThat(get("--pair a b", arg), is("a+b"));
+		assertThat(get("--pair b a", arg), is("b+a"));
+		assertThat(calls.get(), is(2));
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		CachingValueParser<String> cache = CachingValueParser.of(this::load).maximumSize(2);
+		cache.apply(new String[] {"a"});
+		cache.apply(new String[] {"b"});
+		cache.apply(new String[] {"a"});
+		cache.apply(new String[] {"c"});
+		assertThat(cache.size(), is(2));
+		assertThat(cache.evictions(), is(1L));
+		
+		cache.apply(new String[] {"a"});
+		assertThat(calls.get(), is(3));
+		cache.apply(new String[] {"b"});
+		assertThat(calls.get(), is(4));
+	}
+	
+	@Test
+	public void testWeight() {
+		CachingValueParser<String> cache = CachingValueParser.of(this::load)
+				.maximumWeight(10, String::length);
+		cache.apply(new String[] {"aaaa"});
+		cache.apply(new String[] {"bbbb"});
+		assertThat(cache.weight(), is(8L));
+		cache.apply(new String[] {"cccc"});
+		assertThat(cache.weight(), is(8L));
+		assertThat(cache.size(), is(2));
+		
+		cache.apply(new String[] {"too long to keep"});
+		assertThat(cache.size(), is(2));
+		cache.apply(new String[] {"too long to keep"});
+		assertThat(calls.get(), is(5));
+	}
+	
+	@Test
+	public void testExpiry() {
+		long[] now = {0};
+		CachingValueParser<String> cache = CachingValueParser.of(this::load)
+				.expireAfter(Duration.ofSeconds(10));
+		cache.clock = () -> now[0];
+		cache.apply(new String[] {"a"});
+		now[0] = Duration.ofSeconds(9).toNanos();
+		cache.apply(new String[] {"a"});
+		assertThat(calls.get(), is(1));
+		now[0] = Duration.ofSeconds(10).toNanos();
+		cache.apply(new String[] {"a"});
+		assertThat(calls.get(), is(2));
+	}
+	
+	@Test
+	public void testWatchFiles() throws IOException {
+		Path path = folder.newFile().toPath();
+		Files.write(path, "one".getBytes(StandardCharsets.UTF_8));
+		CachingValueParser<String> cache = CachingValueParser.of(this::read).watchFiles();
+		String[] raw = {path.toString()};
+		
+		assertThat(cache.apply(raw), is("one"));
+		assertThat(cache.apply(raw), is("one"));
+		Files.write(path, "two".getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(path, FileTime.fromMillis(
+				Files.getLastModifiedTime(path).toMillis() + 5000));
+		assertThat(cache.apply(raw), is("two"));
+		assertThat(calls.get(), is(2));
+		
+		// values that are not files are cached as usual
+		CachingValueParser<String> other = CachingValueParser.of(this::load).watchFiles();
+		other.apply(new String[] {"not a file"});
+		other.apply(new String[] {"not a file"});
+		assertThat(calls.get(), is(3));
+	}
+	
+	@Test
+	public void testFailuresNotCached() {
+		CachingValueParser<Integer> cache = CachingValueParser.of((String s) -> {
+			calls.incrementAndGet();
+			return Integer.parseInt(s);
+		});
+		JarpaArg<Integer> arg = object("--n", cache);
+		for(int i = 0; i < 2; i++) {
+			try {
+				get("--n x", arg);
+				assertTrue(false);
+			} catch(JarpaException e) {
+				assertThat(e.type, is(Type.PARSE_EXCEPTION));
+			}
+		}
+		assertThat(calls.get(), is(2));
+		assertThat(cache.size(), is(0));
+	}
+}
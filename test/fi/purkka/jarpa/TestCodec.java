@@ -0,0 +1,147 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.*;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import org.junit.Test;
+
+import fi.purkka.jarpa.JarpaException.Type;
+
+public class TestCodec {
+	
+	private static JarpaArgs spaced(String args) {
+		return JarpaParser.parsing(args.split(" ")).parse();
+	}
+	
+	@Test
+	public void testRoundTrip() {
+		JarpaArgs original = spaced("def --int 356 --dec -2.65 --strings a bö 𝄞 -f");
+		ByteBuffer buf = JarpaArgsCodec.encode(original);
+		assertThat(buf.remaining(), is(JarpaArgsCodec.encodedSize(original)));
+		
+		try(JarpaArgs args = JarpaArgsCodec.decode(buf)) {
+			assertThat(args.get(integer("--int")), is(356));
+			assertThat(args.get(decimal("--dec")), is(-2.65));
+			assertThat(args.get(stringArray("--strings")), is(new String[] {"a", "bö", "𝄞"}));
+			assertThat(args.get(flag("-f")), is(true));
+			assertThat(args.get(stringList("")).get(0), is("def"));
+		}
+		assertThat(buf.hasRemaining(), is(false));
+	}
+	
+	@Test
+	public void testConsecutiveRecordsAndReencoding() {
+		JarpaArgs first = spaced("-a 1");
+		JarpaArgs second = spaced("-b 2 3");
+		ByteBuffer buf = ByteBuffer.allocateDirect(JarpaArgsCodec.encodedSize(first)
+				+ JarpaArgsCodec.encodedSize(second));
+		JarpaArgsCodec.encode(first, buf);
+		JarpaArgsCodec.encode(second, buf);
+		buf.flip();
+		
+		JarpaArgs a = JarpaArgsCodec.decode(buf);
+		JarpaArgs b = JarpaArgsCodec.decode(buf);
+		assertThat(a.get(integer("-a")), is(1));
+		assertThat(b.get(integerArray("-b")), is(new int[] {2, 3}));
+		
+		JarpaArgs again = JarpaArgsCodec.decode(JarpaArgsCodec.encode(b));
+		assertThat(again.get(integerArray("-b")), is(new int[] {2, 3}));
+	}
+	
+	@Test
+	public void testChannels() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JarpaArgsCodec.write(spaced("--name x"), Channels.newChannel(out));
+		JarpaArgsCodec.write(spaced("--name y"), Channels.newChannel(out));
+		
+		ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+		assertThat(JarpaArgsCodec.read(Channels.newChannel(in)).get(string("--name")), is("x"));
+		assertThat(JarpaArgsCodec.read(Channels.newChannel(in)).get(string("--name")), is("y"));
+	}
+	
+	@Test
+	public void testUnknownArgumentsAfterDecoding() {
+		try(JarpaArgs args = JarpaArgsCodec.decode(JarpaArgsCodec.encode(spaced("-a -b")))) {
+			args.get(flag("-a"));
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.UNKNOWN_ARGUMENTS));
+		}
+	}
+	
+	@Test
+	public void testMalformedInput() {
+		ByteBuffer buf = JarpaArgsCodec.encode(spaced("-a 1"));
+		buf.put(5, (byte) 99);
+		try {
+			JarpaArgsCodec.decode(buf);
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.MALFORMED_ENCODING));
+		}
+		
+		ByteBuffer truncated = JarpaArgsCodec.encode(spaced("-a 1"));
+		truncated.limit(truncated.limit() - 1);
+		try {
+			JarpaArgsCodec.decode(truncated);
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.MALFORMED_ENCODING));
+		}
+	}
+	
+	@Test
+	public void testHugeDeclaredSizes() throws IOException {
+		ByteBuffer buf = JarpaArgsCodec.encode(spaced("-a 1"));
+		buf.putInt(JarpaArgsCodec.HEADER_SIZE + 4, 0x7FFFFFF0);
+		try {
+			JarpaArgsCodec.decode(buf).get(string("-a"));
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.MALFORMED_ENCODING));
+		}
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JarpaArgsCodec.write(spaced("--name xyz"), Channels.newChannel(out));
+		try {
+			JarpaArgsCodec.read(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())), 20);
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.MALFORMED_ENCODING));
+		}
+	}
+	
+	@Test
+	public void testSharedTable() {
+		OptionIds ids = OptionIds.of(integer("-a"), stringArray("-b").alias("--bees"));
+		OptionIds table = JarpaArgsCodec.decodeTable(JarpaArgsCodec.encodeTable(ids));
+		assertThat(table.names(), is(ids.names()));
+		
+		JarpaArgs original = spaced("def -a 1 --bees x y -c z");
+		ByteBuffer buf = JarpaArgsCodec.encode(original, ids);
+		assertThat(buf.remaining(), is(JarpaArgsCodec.encodedSize(original, ids)));
+		assertTrue(buf.remaining() < JarpaArgsCodec.encodedSize(original));
+		
+		JarpaArgs args = JarpaArgsCodec.decode(buf, table);
+		assertThat(args.options(), is(original.options()));
+		assertThat(args.get(integer("-a")), is(1));
+		assertThat(args.get(stringArray("-b").alias("--bees")), is(new String[] {"x", "y"}));
+		assertThat(args.get(string("-c")), is("z"));
+		assertThat(args.get(string("")), is("def"));
+		assertThat(args.fingerprint(), is(original.fingerprint()));
+		
+		try {
+			JarpaArgsCodec.decode(JarpaArgsCodec.encode(original, ids));
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.MALFORMED_ENCODING));
+		}
+	}
+}
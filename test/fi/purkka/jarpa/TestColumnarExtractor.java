@@ -0,0 +1,115 @@
+package fi.purkka.jarpa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import fi.purkka.jarpa.ColumnarExtractor.Columns;
+
+public class TestColumnarExtractor {
+	
+	private static final ColumnarExtractor EXTRACTOR = ColumnarExtractor.create()
+			.ints("--port", "-p")
+			.doubles("--ratio")
+			.strings("--host")
+			.presence("--verbose", "-v");
+	
+	private static String[] argv(String line) {
+		return line.isEmpty() ? new String[0] : line.split(" ");
+	}
+	
+	private static BitSet bits(int...indices) {
+		BitSet bits = new BitSet();
+		for(int i : indices) bits.set(i);
+		return bits;
+	}
+	
+	@Test
+	public void testColumns() {
+		Columns columns = EXTRACTOR.extract(Stream.of(
+				"--port 80 --host a --ratio 0.5 -v",
+				"x -p 8080 --host b --other 1 2",
+				"--host a --port nope",
+				"",
+				"--port 1 -p 2 --ratio -1e3 --host c d",
+				"-- --port 5").map(TestColumnarExtractor::argv));
+		
+		assertThat(columns.rows(), is(6));
+		assertThat(columns.names(), is(Arrays.asList("--port", "--ratio", "--host", "--verbose")));
+		assertThat(columns.ints("--port"), is(new int[] {80, 8080, 0, 0, 0, 0}));
+		assertThat(columns.present("--port"), is(bits(0, 1, 2, 4)));
+		assertThat(columns.invalid("--port"), is(bits(2, 4)));
+		
+		assertThat(columns.doubles("--ratio")[0], is(0.5));
+		assertThat(columns.doubles("--ratio")[4], is(-1000.0));
+		assertThat(columns.present("--ratio"), is(bits(0, 4)));
+		
+		assertThat(columns.dictionary("--host"), is(new String[] {"a", "b"}));
+		assertThat(columns.codes("--host"), is(new int[] {0, 1, 0, -1, -1, -1}));
+		assertThat(columns.string("--host", 1), is("b"));
+		assertThat(columns.string("--host", 4), is(nullValue()));
+		assertThat(columns.invalid("--host"), is(bits(4)));
+		
+		assertThat(columns.present("--verbose"), is(bits(0)));
+	}
+	
+	@Test
+	public void testRepeatedOption() {
+		Columns columns = EXTRACTOR.extract(Arrays.asList(
+				argv("--port 1 2 --port 3"), argv("--port 3 --port x")));
+		assertThat(columns.ints("--port"), is(new int[] {3, 0}));
+		assertThat(columns.invalid("--port"), is(bits(1)));
+		
+		columns = EXTRACTOR.extract(Arrays.asList(
+				argv("--host a --host b"), argv("--host c --host"), argv("--host d")));
+		assertThat(columns.codes("--host"), is(new int[] {0, -1, 1}));
+		assertThat(columns.dictionary("--host"), is(new String[] {"b", "d"}));
+		assertThat(columns.invalid("--host"), is(bits(1)));
+	}
+	
+	@Test
+	public void testMatchesParser() {
+		int count = ColumnarExtractor.CHUNK_SIZE * 3 + 17;
+		List<String[]> rows = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			List<String> argv = new ArrayList<>();
+			if(i % 3 != 0) argv.addAll(Arrays.asList("--port", String.valueOf(i)));
+			if(i % 5 != 0) argv.addAll(Arrays.asList("--host", "h" + (i % 1000 == 0 ? i : i % 7)));
+			if(i % 2 == 0) argv.add("-v");
+			rows.add(argv.toArray(new String[argv.size()]));
+		}
+		Columns columns = EXTRACTOR.extract(rows);
+		
+		JarpaArg<Integer> port = JarpaArg.integer("--port").alias("-p");
+		JarpaArg<String> host = JarpaArg.string("--host");
+		JarpaArg<Boolean> verbose = JarpaArg.flag("--verbose").alias("-v");
+		List<String> expectedDictionary = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			JarpaArgs args = JarpaParser.parsing(rows.get(i)).parse();
+			assertThat(columns.ints("--port")[i], is(args.get(port.optional()).orElse(0)));
+			String h = args.get(host.optional()).orElse(null);
+			assertThat(columns.string("--host", i), is(h));
+			if(h != null && !expectedDictionary.contains(h)) expectedDictionary.add(h);
+			assertThat(columns.present("--verbose").get(i), is(args.get(verbose)));
+		}
+		assertThat(Arrays.asList(columns.dictionary("--host")), is(expectedDictionary));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateAlias() {
+		ColumnarExtractor.create().ints("--a").strings("--b", "--a");
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongType() {
+		EXTRACTOR.extract(new ArrayList<>()).doubles("--port");
+	}
+}
@@ -0,0 +1,146 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.flag;
+import static fi.purkka.jarpa.JarpaArg.integer;
+import static fi.purkka.jarpa.JarpaArg.string;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import fi.purkka.jarpa.server.CommandRegistry;
+import fi.purkka.jarpa.server.CommandSchema;
+import fi.purkka.jarpa.server.JarpaClient;
+import fi.purkka.jarpa.server.JarpaServer;
+
+public class TestCommandRegistry {
+	
+	private static final JarpaArg<String> NAME = string("--name");
+	private static final JarpaArg<Boolean> LOUD = flag("--loud");
+	
+	private static String utf8(ByteArrayOutputStream out) {
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	@Test
+	public void testVersions() {
+		CommandRegistry registry = new CommandRegistry();
+		assertThat(registry.register("a", null, inv -> 0), is(1L));
+		CommandRegistry.Command first = registry.lookup("a");
+		assertThat(registry.register("a", CommandSchema.of(NAME), inv -> 1), is(2L));
+		
+		assertThat(first.version(), is(1L));
+		assertThat(first.schema() == null, is(true));
+		assertThat(registry.lookup("a").version(), is(2L));
+		assertThat(registry.lookup("a").schema().args().size(), is(1));
+		
+		assertTrue(registry.remove("a"));
+		assertFalse(registry.remove("a"));
+		assertThat(registry.lookup("a") == null, is(true));
+		assertThat(registry.register("a", null, inv -> 0), is(1L));
+	}
+	
+	@Test
+	public void testSchemaRetrieval() {
+		CommandSchema schema = CommandSchema.of(NAME, LOUD, integer("-n").optional());
+		ArgValues values = schema.retrieve(JarpaParser.parsing("--name x -n 3".split(" ")).parse());
+		assertThat(values.get(NAME), is("x"));
+		assertFalse(values.get(LOUD));
+		
+		try {
+			schema.retrieve(JarpaParser.parsing("--name x -q".split(" ")).parse());
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(JarpaException.Type.UNKNOWN_ARGUMENTS));
+		}
+	}
+	
+	@Test
+	public void testServerUsesVersionStartedWith() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService clients = Executors.newFixedThreadPool(2);
+		try(JarpaServer server = JarpaServer.onPort(0)
+				.register("greet", CommandSchema.of(NAME), inv -> {
+					started.countDown();
+					release.await(10, TimeUnit.SECONDS);
+					inv.out().println("v" + inv.version() + " " + inv.values().get(NAME));
+					return 0;
+				}).start()) {
+			Future<String> first = clients.submit(() -> {
+				try(JarpaClient client = JarpaClient.connect(server.port())) {
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					client.run(new String[] {"greet", "--name", "a"}, out, out);
+					return utf8(out);
+				}
+			});
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			
+			server.register("greet", CommandSchema.of(NAME, LOUD), inv -> {
+				String name = inv.values().get(NAME);
+				inv.out().println("v" + inv.version() + " "
+						+ (inv.values().get(LOUD) ? name.toUpperCase() : name));
+				return 0;
+			});
+			release.countDown();
+			assertThat(first.get(), is("v1 a" + System.lineSeparator()));
+			
+			try(JarpaClient client = JarpaClient.connect(server.port())) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				ByteArrayOutputStream err = new ByteArrayOutputStream();
+				assertThat(client.run(new String[] {"greet", "--name", "b", "--loud"}, out, err), is(0));
+				assertThat(utf8(out), is("v2 B" + System.lineSeparator()));
+				
+				assertThat(client.run(new String[] {"greet", "--name", "b", "-x"}, out, err),
+						is(JarpaServer.USAGE_ERROR));
+				assertThat(utf8(err), containsString("-x"));
+			}
+		} finally {
+			clients.shutdown();
+		}
+	}
+	
+	@Test
+	public void testConcurrentLookupsDuringSwaps() throws Exception {
+		CommandRegistry registry = new CommandRegistry();
+		for(int i = 0; i < 1000; i++) {
+			registry.register("cmd" + i, CommandSchema.of(NAME), inv -> 0);
+		}
+		ExecutorService readers = Executors.newFixedThreadPool(4);
+		try {
+			Future<?>[] futures = new Future<?>[4];
+			for(int t = 0; t < futures.length; t++) {
+				futures[t] = readers.submit(() -> {
+					long last = 0;
+					for(int i = 0; i < 100_000; i++) {
+						CommandRegistry.Command command = registry.lookup("cmd" + (i % 1000));
+						assertTrue(command.schema().args().size() >= 1);
+						if(i % 1000 == 7) {
+							assertTrue(command.version() >= last);
+							last = command.version();
+						}
+					}
+				});
+			}
+			for(int v = 0; v < 10_000; v++) {
+				registry.register("cmd7", CommandSchema.of(NAME, LOUD), inv -> 0);
+			}
+			for(Future<?> future : futures) future.get();
+			assertThat(registry.lookup("cmd7").version(), is(10_001L));
+			assertThat(registry.size(), is(1000));
+		} finally {
+			readers.shutdown();
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.*;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import fi.purkka.jarpa.JarpaException.Type;
+import fi.purkka.jarpa.conditions.IntCondition;
+
+public class TestConcurrentConversion {
+	
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+	
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	private static JarpaArgs spaced(String args) {
+		return JarpaParser.parsing(args.split(" ")).parse();
+	}
+	
+	@Test
+	public void testValues() throws Exception {
+		JarpaArg<Integer> i = integer("-i");
+		JarpaArg<List<Integer>> list = objectList("--list", Integer::parseInt);
+		JarpaArg<Optional<String>> missing = string("-m").optional();
+		JarpaArg<Boolean> flag = flag("-f");
+		
+		try(JarpaArgs args = spaced("-i 5 --list 1 2 3 -f")) {
+			ArgValues values = args.getConcurrently(executor, i, list, missing, flag).get();
+			assertFalse(values.failed());
+			assertThat(values.get(i), is(5));
+			assertThat(values.get(list), is(Arrays.asList(1, 2, 3)));
+			assertThat(values.get(missing), is(Optional.empty()));
+			assertThat(values.get(flag), is(true));
+		}
+	}
+	
+	@Test
+	public void testElementsConvertedConcurrently() throws Exception {
+		CountDownLatch latch = new CountDownLatch(3);
+		JarpaArg<List<String>> list = objectList("--list", s -> {
+			latch.countDown();
+			try {
+				if(!latch.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("sequential");
+			} catch(InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			return s;
+		});
+		
+		try(JarpaArgs args = spaced("--list a b c")) {
+			ArgValues values = args.getConcurrently(executor, list).get();
+			assertThat(values.get(list), is(Arrays.asList("a", "b", "c")));
+		}
+	}
+	
+	@Test
+	public void testErrorsAggregatedPerArgument() throws Exception {
+		JarpaArg<Integer> bad = integer("-b");
+		JarpaArg<Integer> negative = integer("-n").require(IntCondition.negative());
+		JarpaArg<Integer> missing = integer("-m");
+		JarpaArg<Integer> good = integer("-g");
+		
+		JarpaArgs args = spaced("-b x -n 4 -g 1");
+		ArgValues values = args.getConcurrently(executor, bad, negative, missing, good).get();
+		args.finish();
+		
+		assertTrue(values.failed());
+		assertThat(values.get(good), is(1));
+		assertThat(values.errors().keySet().toString(), is("[-b, -n, -m]"));
+		assertThat(values.errors().get("-b").type, is(Type.PARSE_EXCEPTION));
+		assertThat(values.errors().get("-n").type, is(Type.CONDITION_FAILED));
+		assertThat(values.errors().get("-m").type, is(Type.MANDATORY_ARG_NOT_SPECIFIED));
+		
+		try {
+			values.orThrow();
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.MULTIPLE_FAILURES));
+		}
+		try {
+			values.get(bad);
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.PARSE_EXCEPTION));
+		}
+	}
+	
+	@Test
+	public void testDefaultExecutor() throws Exception {
+		JarpaArg<double[]> arr = decimalArray("-d");
+		try(JarpaArgs args = spaced("-d 1.5 2.5")) {
+			assertThat(args.getConcurrently(arr).get().orThrow().get(arr),
+					is(new double[] {1.5, 2.5}));
+		}
+	}
+}
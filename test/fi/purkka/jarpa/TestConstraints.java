@@ -0,0 +1,109 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.flag;
+import static fi.purkka.jarpa.JarpaArg.string;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import fi.purkka.jarpa.JarpaException.Type;
+import fi.purkka.jarpa.server.CommandSchema;
+
+public class TestConstraints {
+	
+	private static final JarpaArg<String> INPUT = string("--input").alias("-i");
+	private static final JarpaArg<Boolean> STDIN = flag("--stdin");
+	private static final JarpaArg<String> OUTPUT = string("--output");
+	private static final JarpaArg<String> FORMAT = string("--format");
+	private static final JarpaArg<Boolean> QUIET = flag("-q");
+	private static final JarpaArg<Boolean> VERBOSE = flag("-v").negator("--no-verbose");
+	
+	private static final Constraints CONSTRAINTS = Constraints.none()
+			.exactlyOne(INPUT, STDIN)
+			.requires(OUTPUT, FORMAT)
+			.conflicts(QUIET, VERBOSE);
+	
+	private static JarpaArgs parse(String args) {
+		return JarpaParser.parsing(args.split(" ")).parse();
+	}
+	
+	private static JarpaException violation(Constraints constraints, String args) {
+		try {
+			constraints.check(parse(args));
+		} catch(JarpaException e) {
+			return e;
+		}
+		throw new AssertionError("No violation for " + args);
+	}
+	
+	@Test
+	public void testSatisfied() {
+		CONSTRAINTS.check(parse("-i a"));
+		CONSTRAINTS.check(parse("--stdin --output o --format f -q"));
+		CONSTRAINTS.check(parse("--stdin -q --no-verbose"));
+		CONSTRAINTS.check(parse("--stdin -v"));
+	}
+	
+	@Test
+	public void testViolations() {
+		JarpaException e = violation(CONSTRAINTS, "-q");
+		assertThat(e.type, is(Type.CONSTRAINT_VIOLATED));
+		assertThat(e.getMessage(), is("Exactly one of --input, --stdin must be given, found none"));
+		
+		e = violation(CONSTRAINTS, "-i a --stdin");
+		assertThat(e.getMessage(), is("Exactly one of --input, --stdin must be given, found --input, --stdin"));
+		
+		e = violation(CONSTRAINTS, "--stdin --output o");
+		assertThat(e.getMessage(), is("--output requires --format, missing --format"));
+		
+		e = violation(CONSTRAINTS, "--stdin -q -v");
+		assertThat(e.getMessage(), is("-q cannot be given with -v"));
+		
+		e = violation(CONSTRAINTS, "-q -v --output o");
+		assertThat(e.type, is(Type.MULTIPLE_FAILURES));
+		assertThat(e.getMessage(), containsString("Exactly one of"));
+		assertThat(e.getMessage(), containsString("--output requires"));
+		assertThat(e.getMessage(), containsString("-q cannot"));
+		
+		e = violation(Constraints.none().atMostOne(QUIET, VERBOSE), "-q -v");
+		assertThat(e.getMessage(), is("At most one of -q, -v may be given, found -q, -v"));
+		e = violation(Constraints.none().atLeastOne(QUIET, VERBOSE), "x");
+		assertThat(e.getMessage(), is("At least one of -q, -v must be given"));
+	}
+	
+	@Test
+	public void testManySlots() {
+		JarpaArg<?>[] flags = new JarpaArg<?>[150];
+		for(int i = 0; i < flags.length; i++) flags[i] = flag("--f" + i);
+		Constraints constraints = Constraints.none()
+				.requires(flags[0], flags[70], flags[149])
+				.atMostOne(flags[100], flags[130]);
+		constraints.check(parse("--f0 --f70 --f149 --f100"));
+		assertThat(violation(constraints, "--f0 --f149").getMessage(),
+				is("--f0 requires --f70, --f149, missing --f70"));
+		assertThat(violation(constraints, "--f100 --f130").type, is(Type.CONSTRAINT_VIOLATED));
+	}
+	
+	@Test
+	public void testInvalidRulesAndSchema() {
+		try {
+			Constraints.none().requires(OUTPUT, OUTPUT);
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.INVALID_CONDITION));
+		}
+		
+		CommandSchema schema = CommandSchema.of(INPUT, STDIN).constrained(
+				Constraints.none().exactlyOne(INPUT, STDIN));
+		assertThat(schema.retrieve(parse("--stdin")).get(STDIN), is(true));
+		try {
+			schema.retrieve(parse("--stdin -i x"));
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.CONSTRAINT_VIOLATED));
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.decimal;
+import static fi.purkka.jarpa.JarpaArg.decimalArray;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fi.purkka.jarpa.JarpaException.Type;
+
+public class TestFastDoubleParser {
+	
+	private static void assertSame(String s) {
+		double expected = Double.parseDouble(s);
+		double actual = FastDoubleParser.parseDouble(s);
+		assertEquals(s, Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+	}
+	
+	@Test
+	public void testEdgeCases() {
+		String[] cases = {
+			"0", "-0", "0.0", "+1", "1.", ".5", "-.5e-3", "123456789", "1e22", "1e23",
+			"9007199254740993", "9007199254740992.5", "1.7976931348623157e308",
+			"1.7976931348623159e308", "1e309", "-1e400", "4.9e-324", "2.4703282292062327e-324",
+			"2.4703282292062328e-324", "2.2250738585072011e-308", "2.2250738585072012e-308",
+			"1e-400", "0.1", "0.3", "3.141592653589793", "2.718281828459045235360287",
+			"123456789012345678901234567890", "0.000000000000000000000000000001234",
+			"7.3177701707893310e+15", "9999999999999999999", "99999999999999999999e-20",
+			"1000000000000000000000000000000000000000000000000000000e-55",
+			" 42 ", "1e+0", "1E5", "NaN", "-Infinity", "1.5d", "2f", "0x1p3",
+			"1.00000000000000011102230246251565404236316680908203125",
+			"1.00000000000000011102230246251565404236316680908203124",
+			"1.00000000000000011102230246251565404236316680908203126",
+		};
+		for(String s : cases) assertSame(s);
+	}
+	
+	@Test
+	public void testInvalid() {
+		for(String s : new String[] {"", ".", "-", "e5", "1e", "1e+", "1.2.3", "12a", "--1"}) {
+			try {
+				FastDoubleParser.parseDouble(s);
+				assertTrue(s, false);
+			} catch(NumberFormatException e) {
+				// like Double.parseDouble
+			}
+		}
+	}
+	
+	@Test
+	public void testRandomDoubles() {
+		Random random = new Random(39);
+		for(int i = 0; i < 200_000; i++) {
+			double d = Double.longBitsToDouble(random.nextLong());
+			if(Double.isNaN(d)) continue;
+			assertSame(Double.toString(d));
+			assertSame(new BigDecimal(d).toString());
+		}
+		for(int i = 0; i < 200_000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int digits = 1 + random.nextInt(25);
+			for(int j = 0; j < digits; j++) sb.append((char) ('0' + random.nextInt(10)));
+			if(random.nextBoolean()) sb.insert(random.nextInt(digits + 1), '.');
+			sb.append('e').append(random.nextInt(700) - 350);
+			assertSame(sb.toString());
+		}
+	}
+	
+	@Test
+	public void testRanges() {
+		String s = "x=12.5,-3e2;";
+		assertThat(FastDoubleParser.parseDouble(s, 2, 6), is(12.5));
+		assertThat(FastDoubleParser.parseDouble(s, 7, 11), is(-300.0));
+	}
+	
+	@Test
+	public void testArguments() {
+		try(JarpaArgs args = JarpaParser.parsing("-d 2.5 -a 1 -1e3 .25".split(" ")).parse()) {
+			assertThat(args.get(decimal("-d")), is(2.5));
+			assertThat(args.get(decimalArray("-a")), is(new double[] {1, -1000, 0.25}));
+		}
+		
+		String[] large = new String[JarpaArg.PARALLEL_THRESHOLD + 1];
+		large[0] = "-a";
+		for(int i = 1; i < large.length; i++) large[i] = i + ".5";
+		try(JarpaArgs args = JarpaParser.parsing(large).parse()) {
+			double[] values = args.get(decimalArray("-a"));
+			for(int i = 0; i < values.length; i++) assertThat(values[i], is(i + 1.5));
+		}
+		
+		try(JarpaArgs args = JarpaParser.parsing("-d 1,5".split(" ")).parse()) {
+			args.get(decimal("-d"));
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.PARSE_EXCEPTION));
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.flag;
+import static fi.purkka.jarpa.JarpaArg.string;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class TestFingerprint {
+	
+	private static JarpaArgs parse(String args) {
+		return JarpaParser.parsing(args.split(" ")).parse();
+	}
+	
+	private static Fingerprint fingerprint(String args) {
+		return parse(args).fingerprint();
+	}
+	
+	@Test
+	public void testOrderIndependence() {
+		assertThat(fingerprint("--a 1 --b 2 3 -v"), is(fingerprint("-v --b 2 3 --a 1")));
+		assertThat(fingerprint("x --a 1"), is(fingerprint("x --a 1")));
+		assertThat(fingerprint("--a 1 --b 2").toString().length(), is(32));
+	}
+	
+	@Test
+	public void testSensitivity() {
+		Fingerprint base = fingerprint("--a 1 --b 2");
+		assertThat(fingerprint("--a 2 --b 1"), not(base));
+		assertThat(fingerprint("--a 1 --b 2 --c"), not(base));
+		assertThat(fingerprint("--b 2"), not(base));
+		assertThat(fingerprint("--a 1 --b 2 3"), not(fingerprint("--a 1 --b 3 2")));
+		assertThat(fingerprint("--a ab c"), not(fingerprint("--a a bc")));
+		assertThat(fingerprint("--a"), not(fingerprint("--b")));
+	}
+	
+	@Test
+	public void testAliases() {
+		JarpaArg<Boolean> verbose = flag("--verbose").alias("-v").negator("--quiet").negator("-q");
+		JarpaArg<String> name = string("--name").alias("-n");
+		assertThat(parse("-v -n x").fingerprint(verbose, name),
+				is(parse("--name x --verbose").fingerprint(verbose, name)));
+		assertThat(parse("-q").fingerprint(verbose), is(parse("--quiet").fingerprint(verbose)));
+		assertThat(parse("-q").fingerprint(verbose), not(parse("-v").fingerprint(verbose)));
+		assertThat(parse("-v").fingerprint(), not(parse("--verbose").fingerprint()));
+		assertThat(parse("--a 1").fingerprint(verbose), is(parse("--a 1").fingerprint()));
+	}
+	
+	@Test
+	public void testIncremental() {
+		IncrementalParser parser = JarpaParser.parsing(new String[0]).incremental();
+		parser.update("--a", "1", "--b", "2");
+		parser.replace(1, 2, "3");
+		parser.update("--b", "2", "--a", "3");
+		assertThat(parser.fingerprint(), is(fingerprint("--a 3 --b 2")));
+	}
+	
+	@Test
+	public void testViews() {
+		JarpaArgs args = parse("--a 1 --db.host h --db.port 1");
+		ByteBuffer encoded = JarpaArgsCodec.encode(args);
+		assertThat(JarpaArgsCodec.decode(encoded).fingerprint(), is(args.fingerprint()));
+		assertThat(args.namespace("--db.").fingerprint(),
+				is(parse("--db.port 1 --db.host h").namespace("--db.").fingerprint()));
+		assertThat(args.namespace("--db.").fingerprint(),
+				not(parse("--db.port 2 --db.host h").namespace("--db.").fingerprint()));
+	}
+	
+	@Test
+	public void testDiff() {
+		JarpaArgs before = parse("--a 1 --b 2 --c");
+		JarpaArgs after = parse("--c --a 1 --b 3 --d 4");
+		assertThat(before.diff(after), is(new TreeSet<>(Arrays.asList("--b", "--d"))));
+		assertThat(after.diff(before), is(before.diff(after)));
+		assertThat(before.diff(parse("--c --b 2 --a 1")).isEmpty(), is(true));
+		
+		JarpaArg<String> name = string("--name").alias("-n");
+		assertThat(parse("-n x --a 1").diff(parse("--name x --a 2"), name),
+				is(new TreeSet<>(Arrays.asList("--a"))));
+		assertThat(parse("-n x").diff(parse("--name y"), name),
+				is(new TreeSet<>(Arrays.asList("--name"))));
+	}
+}
@@ -0,0 +1,154 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.*;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import fi.purkka.jarpa.JarpaException.Type;
+import fi.purkka.jarpa.conditions.IntCondition;
+
+public class TestIncrementalParser {
+	
+	private static IncrementalParser parser(String args) {
+		return JarpaParser.parsing(args.isEmpty() ? new String[0] : args.split(" ")).incremental();
+	}
+	
+	@Test
+	public void testEdits() {
+		IncrementalParser parser = parser("in -n 1 -v");
+		JarpaArg<Integer> n = integer("-n");
+		JarpaArg<Boolean> v = flag("-v");
+		assertThat(parser.get(n), is(1));
+		assertTrue(parser.get(v));
+		
+		parser.replace(2, 3, "2");
+		assertThat(parser.get(n), is(2));
+		
+		parser.replace(3, 4);
+		assertFalse(parser.get(v));
+		
+		parser.replace(3, 3, "-o", "out");
+		assertThat(parser.get(string("-o")), is("out"));
+		assertThat(parser.get(string("")), is("in"));
+		assertThat(parser.tokens(), is(new String[] {"in", "-n", "2", "-o", "out"}));
+		
+		parser.update("in", "x", "-n", "3", "-o", "out");
+		assertThat(parser.get(stringArray("")), is(new String[] {"in", "x"}));
+		assertThat(parser.get(n), is(3));
+	}
+	
+	@Test
+	public void testTerminatorAndRepeatedOptions() {
+		IncrementalParser parser = parser("-a 1 -- -b");
+		assertThat(parser.get(string("")), is("-b"));
+		assertFalse(parser.get(flag("-b")));
+		
+		parser.replace(2, 3);
+		assertTrue(parser.get(flag("-b")));
+		assertFalse(parser.get(string("").optional()).isPresent());
+		
+		parser.replace(3, 3, "-a", "2");
+		assertThat(parser.get(integer("-a")), is(2));
+		parser.replace(3, 5);
+		assertThat(parser.get(integer("-a")), is(1));
+	}
+	
+	@Test
+	public void testConversionOnlyRerunForChangedValues() {
+		AtomicInteger conversions = new AtomicInteger();
+		JarpaArg<String> a = object("-a", s -> { conversions.incrementAndGet(); return s; });
+		JarpaArg<Integer> b = integer("-b").require(IntCondition.positive());
+		IncrementalParser parser = parser("-a x -b 1");
+		
+		assertThat(parser.get(a), is("x"));
+		assertThat(parser.get(b), is(1));
+		parser.replace(3, 4, "-1");
+		assertThat(conversions.get(), is(1));
+		
+		for(int i = 0; i < 3; i++) {
+			try {
+				parser.get(b);
+				assertTrue(false);
+			} catch(JarpaException e) {
+				assertThat(e.type, is(Type.CONDITION_FAILED));
+			}
+			assertThat(parser.get(a), is("x"));
+		}
+		assertThat(conversions.get(), is(1));
+		
+		parser.replace(1, 2, "y");
+		assertThat(parser.get(a), is("y"));
+		assertThat(conversions.get(), is(2));
+	}
+	
+	@Test
+	public void testNegatorValuesInvalidateCache() {
+		JarpaArg<Boolean> verbose = flag("-v").negator("--no-v");
+		IncrementalParser parser = parser("--no-v");
+		assertThat(parser.get(verbose), is(false));
+		parser.update("--no-v", "x");
+		try {
+			parser.get(verbose);
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.FLAG_GIVEN_VALUES));
+		}
+		parser.update("--no-v");
+		assertThat(parser.get(verbose), is(false));
+	}
+	
+	@Test
+	public void testUnknownArguments() {
+		IncrementalParser parser = parser("d -a 1 -b");
+		assertThat(parser.unknownArguments(integer("-a")).size(), is(2));
+		assertThat(parser.unknownArguments(integer("-a"), flag("-x").negator("-b"),
+				string("")).size(), is(0));
+	}
+	
+	private static final String[] VOCABULARY = {"-a", "-b", "-c", "1", "x", "-5", "--"};
+	private static final List<JarpaArg<Optional<String[]>>> CHECKED = new ArrayList<>();
+	static {
+		for(String name : new String[] {"", "-a", "-b", "-c"}) {
+			CHECKED.add(stringArray(name).optional());
+		}
+	}
+	
+	@Test
+	public void testRandomEditsMatchFullParse() {
+		Random random = new Random(35);
+		IncrementalParser parser = parser("");
+		List<String> tokens = new ArrayList<>();
+		for(int round = 0; round < 2000; round++) {
+			int from = random.nextInt(tokens.size() + 1);
+			int to = from + random.nextInt(Math.min(3, tokens.size() - from) + 1);
+			String[] replacement = new String[random.nextInt(4)];
+			for(int i = 0; i < replacement.length; i++) {
+				replacement[i] = VOCABULARY[random.nextInt(VOCABULARY.length)];
+			}
+			parser.replace(from, to, replacement);
+			tokens.subList(from, to).clear();
+			tokens.addAll(from, Arrays.asList(replacement));
+			
+			JarpaArgs full = JarpaParser.parsing(tokens.toArray(new String[0])).parse();
+			for(JarpaArg<Optional<String[]>> arg : CHECKED) {
+				Optional<String[]> expected = full.get(arg);
+				Optional<String[]> actual = parser.get(arg);
+				assertThat(tokens + " " + arg.mainAlias(), actual.isPresent(), is(expected.isPresent()));
+				if(expected.isPresent()) {
+					assertThat(tokens + " " + arg.mainAlias(), actual.get(), is(expected.get()));
+				}
+			}
+		}
+	}
+}
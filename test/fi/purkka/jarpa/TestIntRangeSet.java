@@ -0,0 +1,207 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.integerArray;
+import static fi.purkka.jarpa.JarpaArg.integerRanges;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import fi.purkka.jarpa.JarpaException.Type;
+
+public class TestIntRangeSet {
+	
+	private static IntRangeSet spaced(String args) {
+		try(JarpaArgs jargs = JarpaParser.parsing(args.split(" ")).parse()) {
+			return jargs.get(integerRanges("--ids"));
+		}
+	}
+	
+	private static IntRangeSet equals(String args) {
+		try(JarpaArgs jargs = JarpaParser.parsing(args.split(" ")).equalsSeparated().parse()) {
+			return jargs.get(integerRanges("--ids"));
+		}
+	}
+	
+	@Test
+	public void testSyntax() {
+		IntRangeSet set = spaced("--ids 5,7,10..20:2 1..3");
+		assertThat(set.toArray(), is(new int[] {1, 2, 3, 5, 7, 10, 12, 14, 16, 18, 20}));
+		assertThat(set.cardinality(), is(11L));
+		assertThat(set, is(equals("--ids=5,7,10..20:2,1..3")));
+		assertThat(spaced("--ids -5..-3,-1").toString(), is("-5..-3,-1"));
+	}
+	
+	@Test
+	public void testMergingAndContains() {
+		IntRangeSet set = spaced("--ids 1..10 5..15 16 30..40 100");
+		assertThat(set.toString(), is("1..16,30..40,100"));
+		assertThat(set.rangeCount(), is(3));
+		assertThat(set.min(), is(1));
+		assertThat(set.max(), is(100));
+		assertTrue(set.contains(16));
+		assertTrue(set.contains(35));
+		assertFalse(set.contains(17));
+		assertFalse(set.contains(0));
+		assertFalse(set.contains(101));
+	}
+	
+	@Test
+	public void testHugeRangeStaysCompact() {
+		IntRangeSet set = spaced("--ids 1..1000000," + Integer.MIN_VALUE + ".." + Integer.MAX_VALUE);
+		assertThat(set.cardinality(), is(1L << 32));
+		assertThat(set.rangeCount(), is(1));
+		assertTrue(set.contains(0));
+	}
+	
+	@Test
+	public void testSteppedRange() {
+		IntRangeSet set = spaced("--ids 0..1000000:2");
+		assertThat(set.cardinality(), is(500001L));
+		assertTrue(set.contains(999998));
+		assertFalse(set.contains(999999));
+		assertThat(set.max(), is(1000000));
+		assertThat(set.stream().limit(3).boxed().collect(Collectors.toList()).toString(),
+				is("[0, 2, 4]"));
+		assertThat(set.stream().sum(), is(IntStream.rangeClosed(0, 500000).map(i -> i * 2).sum()));
+	}
+	
+	@Test
+	public void testHugeSteppedRangeStaysCompact() {
+		IntRangeSet set = spaced("--ids 0..2000000001:2");
+		assertThat(set.cardinality(), is(1000000001L));
+		assertTrue(set.contains(2));
+		assertFalse(set.contains(3));
+		assertTrue(set.contains(2000000000));
+		assertFalse(set.contains(2000000001));
+		assertThat(set.max(), is(2000000000));
+		assertThat(set.toString(), is("0..2000000000:2"));
+		assertThat(set, is(spaced("--ids 0..2000000000:2")));
+	}
+	
+	@Test
+	public void testInterleavedSteppedRanges() {
+		IntRangeSet set = spaced("--ids 0..10:5,1..11:5,-3,20..30:10");
+		assertThat(set.cardinality(), is(9L));
+		assertThat(set.toString(), is("-3,0..1,5..6,10..11,20,30"));
+		assertThat(set, is(spaced("--ids -3,0,1,5,6,10,11,20,30")));
+		assertThat(set.hashCode(), is(spaced("--ids -3,0,1,5,6,10,11,20,30").hashCode()));
+		assertTrue(set.contains(30));
+		assertFalse(set.contains(25));
+	}
+	
+	@Test
+	public void testValueInsideSteppedRangeStaysCompact() {
+		IntRangeSet set = spaced("--ids 0..2000000000:2,5");
+		assertThat(set.cardinality(), is(1000000002L));
+		assertTrue(set.contains(5));
+		assertFalse(set.contains(7));
+		// a bitmap would print every value
+		assertThat(set.toString(), is("0..4:2,5,6..2000000000:2"));
+		assertThat(spaced("--ids 4,0..2000000000:2").toString(), is("0..2000000000:2"));
+		
+		set = spaced("--ids " + Integer.MIN_VALUE + ".." + Integer.MAX_VALUE + ",1..3:2");
+		assertThat(set.cardinality(), is(1L << 32));
+		assertThat(set.rangeCount(), is(1));
+	}
+	
+	@Test
+	public void testInterleavedSteppedRangesStayCompact() {
+		IntRangeSet set = spaced("--ids 0..2000000000:2,1..2000000001:2");
+		assertThat(set.cardinality(), is(2000000002L));
+		assertThat(set.toString(), is("0..2000000001"));
+		assertThat(set.rangeCount(), is(1));
+		
+		set = spaced("--ids 0..1000000000:2,0..1000000000:3");
+		assertThat(set.cardinality(), is(666666668L));
+		assertTrue(set.contains(999999999));
+		assertFalse(set.contains(999999997));
+		assertThat(set.toString(), is("0..999999996:6,2..999999998:6,3..999999999:6,4..1000000000:6"));
+		assertThat(set.rangeCount(), is(333333334));
+		
+		try {
+			spaced("--ids 0..2000000000:4099,0..2000000000:4097");
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.LIMIT_EXCEEDED));
+		}
+		assertThat(spaced("--ids 0..10000:4099,0..10000:4097").toString(),
+				is("0,4097,4099,8194,8198"));
+	}
+	
+	@Test
+	public void testMixedRangesMatchValues() {
+		Random random = new Random(7);
+		for(int round = 0; round < 300; round++) {
+			TreeSet<Integer> expected = new TreeSet<>();
+			StringBuilder terms = new StringBuilder();
+			for(int t = random.nextInt(6) + 1; t > 0; t--) {
+				int first = random.nextInt(200) - 100, last = first + random.nextInt(120);
+				int step = random.nextInt(3) == 0 ? 1 : random.nextInt(7) + 1;
+				for(int v = first; v <= last; v += step) expected.add(v);
+				if(terms.length() > 0) terms.append(',');
+				terms.append(first).append("..").append(last).append(':').append(step);
+			}
+			IntRangeSet set = spaced("--ids " + terms);
+			String message = terms.toString();
+			assertThat(message, set.cardinality(), is((long) expected.size()));
+			assertThat(message, set.stream().boxed().collect(Collectors.toList()),
+					is(new ArrayList<>(expected)));
+			for(int v = -110; v < 230; v++) {
+				assertThat(message + " " + v, set.contains(v), is(expected.contains(v)));
+			}
+			int ranges = 0;
+			for(int v : expected) if(!expected.contains(v - 1)) ranges++;
+			assertThat(message, set.rangeCount(), is(ranges));
+			assertThat(message, spaced("--ids " + set), is(set));
+		}
+	}
+	
+	@Test
+	public void testLargeExplicitListsParsedInChunks() {
+		Random random = new Random(42);
+		TreeSet<Integer> expected = new TreeSet<>();
+		StringBuilder csv = new StringBuilder("--ids=");
+		String[] spacedArgs = new String[50001];
+		spacedArgs[0] = "--ids";
+		for(int i = 0; i < 50000; i++) {
+			int value = random.nextInt(1000000) - 500000;
+			expected.add(value);
+			if(i > 0) csv.append(',');
+			csv.append(value);
+			spacedArgs[i + 1] = Integer.toString(value);
+		}
+		int[] expectedArray = expected.stream().mapToInt(i -> i).toArray();
+		
+		assertThat(equals(csv.toString()).toArray(), is(expectedArray));
+		try(JarpaArgs jargs = JarpaParser.parsing(spacedArgs).parse()) {
+			assertThat(jargs.get(integerRanges("--ids")).toArray(), is(expectedArray));
+		}
+		try(JarpaArgs jargs = JarpaParser.parsing(new String[] {"--ids", csv.substring(6)}).parse()) {
+			assertThat(jargs.get(integerRanges("--ids")).toArray(), is(expectedArray));
+		}
+		try(JarpaArgs jargs = JarpaParser.parsing(spacedArgs).parse()) {
+			assertThat(jargs.get(integerArray("--ids")).length, is(50000));
+		}
+	}
+	
+	@Test
+	public void testInvalidRanges() {
+		for(String bad : new String[] {"--ids 5..1", "--ids 1..5:0", "--ids 1.5", "--ids 1,,2", "--ids 1..", "--ids 99999999999"}) {
+			try {
+				spaced(bad);
+				assertTrue(bad, false);
+			} catch(JarpaException e) {
+				assertThat(e.type, is(Type.PARSE_EXCEPTION));
+			}
+		}
+	}
+}
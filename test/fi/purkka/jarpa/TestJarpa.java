@@ -7,6 +7,27 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
 	TestJarpaParser.class,
-	TestConditions.class
+	TestConditions.class,
+	TestServer.class,
+	TestCodec.class,
+	TestConcurrentConversion.class,
+	TestBulkRetrieval.class,
+	TestAllocation.class,
+	TestIntRangeSet.class,
+	TestPaths.class,
+	TestValueParsers.class,
+	TestIncrementalParser.class,
+	TestCommandRegistry.class,
+	TestConstraints.class,
+	TestListener.class,
+	TestFastDoubleParser.class,
+	TestStreams.class,
+	TestCachingValueParser.class,
+	TestNamespace.class,
+	TestAuditLog.class,
+	TestFingerprint.class,
+	TestParseLimits.class,
+	TestOptionGroups.class,
+	TestColumnarExtractor.class
 })
 public class TestJarpa {}
\ No newline at end of file
@@ -260,4 +260,74 @@ public class TestJarpaParser {
 		@Override
 		public int hashCode() { return 1; }
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void testEmptyInput() {
+		try(JarpaArgs args = JarpaParser.parsing(new String[0]).parse()) {
+			assertFalse(args.get(flag("-a")));
+			assertFalse(args.get(string("").optional()).isPresent());
+		}
+		
+		try(JarpaArgs args = JarpaParser.parsing(new String[0]).equalsSeparated().parse()) {
+			assertFalse(args.get(flag("-a")));
+		}
+	}
+	
+	@Test
+	public void testTerminator() {
+		try(JarpaArgs args = spaced("a -n 1 -- -b --c d")) {
+			assertThat(args.get(integer("-n")), is(1));
+			assertThat(args.get(stringArray("")), is(new String[] {"a", "-b", "--c", "d"}));
+			assertFalse(args.get(flag("-b")));
+		}
+		
+		try(JarpaArgs args = equals("a -n=1 -- -b=2 d")) {
+			assertThat(args.get(integer("-n")), is(1));
+			assertThat(args.get(stringArray("")), is(new String[] {"a", "-b=2", "d"}));
+		}
+		
+		try(JarpaArgs args = spaced("-v --")) {
+			assertTrue(args.get(flag("-v")));
+		}
+	}
+	
+	@Test
+	public void testNegativeNumbers() {
+		try(JarpaArgs args = spaced("-5 --offset -3 -.5 -x")) {
+			assertThat(args.get(integer("")), is(-5));
+			assertThat(args.get(stringArray("--offset")), is(new String[] {"-3", "-.5"}));
+			assertTrue(args.get(flag("-x")));
+		}
+		
+		try(JarpaArgs args = equals("--offset=-3 -7")) {
+			assertThat(args.get(integer("--offset")), is(-3));
+			assertThat(args.get(integer("")), is(-7));
+		}
+	}
+	
+	@Test
+	public void testPrefixes() {
+		try(JarpaArgs args = JarpaParser.parsing("/v +x 1 -n 2 /".split(" "))
+				.prefixes("-/+").parse()) {
+			assertTrue(args.get(flag("/v")));
+			assertThat(args.get(integer("+x")), is(1));
+			assertThat(args.get(stringArray("-n")), is(new String[] {"2", "/"}));
+		}
+		
+		try(JarpaArgs args = JarpaParser.parsing("/out=a,b -- /c".split(" "))
+				.prefixes("/").equalsSeparated().parse()) {
+			assertThat(args.get(stringArray("/out")), is(new String[] {"a", "b"}));
+			assertThat(args.get(string("")), is("--"));
+			assertTrue(args.get(flag("/c")));
+		}
+	}
+	
+	@Test
+	public void testEqualsValueSplitting() {
+		try(JarpaArgs args = equals("-a=x,,y, -b= -c=,")) {
+			assertThat(args.get(stringArray("-a")), is(new String[] {"x", "", "y"}));
+			assertThat(args.get(stringArray("-b")), is(new String[] {""}));
+			assertThat(args.get(stringArray("-c")).length, is(0));
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.integer;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import fi.purkka.jarpa.JarpaException.Type;
+import fi.purkka.jarpa.conditions.IntCondition;
+
+public class TestListener {
+	
+	@After
+	public void uninstall() {
+		JarpaListener.install(null);
+	}
+	
+	@Test
+	public void testNotifications() {
+		List<String> calls = new ArrayList<>();
+		JarpaListener.install(new JarpaListener() {
+			@Override
+			public Object parseStarted() {
+				return "parse";
+			}
+			
+			@Override
+			public void parseEnded(Object context, int tokenCount, boolean success) {
+				calls.add(context + " " + tokenCount + " " + success);
+			}
+			
+			@Override
+			public Object conversionStarted(String argument, int valueCount) {
+				calls.add("convert " + argument + " " + valueCount);
+				return argument;
+			}
+			
+			@Override
+			public void conversionEnded(Object context, String argument, boolean success) {
+				calls.add("converted " + context + " " + success);
+			}
+			
+			@Override
+			public void conditionFailed(String argument, String message) {
+				calls.add("failed " + argument + ": " + message);
+			}
+			
+			@Override
+			public void finished(String[] unknown) {
+				calls.add("finished " + Arrays.toString(unknown));
+			}
+		});
+		
+		JarpaArgs args = JarpaParser.parsing("-a 1 -b x -c -1".split(" ")).parse();
+		args.get(integer("-a"));
+		try {
+			args.get(integer("-b"));
+		} catch(JarpaException e) {
+			// recorded as a failed conversion
+		}
+		try {
+			args.get(integer("-c").require(IntCondition.positive()));
+		} catch(JarpaException e) {
+			// recorded as a failed condition
+		}
+		args.finish();
+		
+		assertThat(calls, is(Arrays.asList(
+				"parse 6 true",
+				"convert -a 1", "converted -a true",
+				"convert -b 1", "converted -b false",
+				"convert -c 1", "converted -c true", "failed -c: must be positive",
+				"finished []")));
+	}
+	
+	@Test
+	public void testFailedParse() {
+		List<String> calls = new ArrayList<>();
+		JarpaListener.install(new JarpaListener() {
+			@Override
+			public Object parseStarted() {
+				return "parse";
+			}
+			
+			@Override
+			public void parseEnded(Object context, int tokenCount, boolean success) {
+				calls.add(context + " " + tokenCount + " " + success);
+			}
+		});
+		
+		ParseLimits limits = ParseLimits.none().maxTokens(2);
+		String[] args = "-a 1 -b".split(" ");
+		try {
+			JarpaParser.parsing(args).limits(limits).parse();
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.LIMIT_EXCEEDED));
+		}
+		try {
+			JarpaParser.parsing(args).limits(limits).equalsSeparated().parse();
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.LIMIT_EXCEEDED));
+		}
+		try {
+			JarpaParser.parsing(args).limits(limits).grouped("-b");
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.LIMIT_EXCEEDED));
+		}
+		
+		assertThat(calls, is(Arrays.asList(
+				"parse 3 false", "parse 3 false", "parse 3 false")));
+	}
+}
@@ -0,0 +1,82 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.flag;
+import static fi.purkka.jarpa.JarpaArg.integer;
+import static fi.purkka.jarpa.JarpaArg.string;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import fi.purkka.jarpa.JarpaException.Type;
+
+public class TestNamespace {
+	
+	private static JarpaArgs parse(String args) {
+		return JarpaParser.parsing(args.split(" ")).parse();
+	}
+	
+	@Test
+	public void testRetrieval() {
+		JarpaArgs jargs = parse("--db.host localhost --db.pool.max 8 --cache.ttl 5 --dbx 1");
+		assertThat(jargs.options(), is(new HashSet<>(Arrays.asList(
+				"--db.host", "--db.pool.max", "--cache.ttl", "--dbx"))));
+		
+		JarpaArgs db = jargs.namespace("--db.");
+		assertThat(db.options(), is(new HashSet<>(Arrays.asList("host", "pool.max"))));
+		assertThat(db.get(string("host")), is("localhost"));
+		assertThat(db.namespace("pool.").get(integer("max")), is(8));
+		assertThat(db.get(flag("ssl")), is(false));
+		db.finish();
+		
+		assertThat(jargs.namespace("--cache.").get(integer("ttl")), is(5));
+		assertThat(jargs.get(integer("--dbx")), is(1));
+		jargs.finish();
+	}
+	
+	@Test
+	public void testFinish() {
+		JarpaArgs jargs = parse("--db.host localhost --db.port 5432 --other x");
+		JarpaArgs db = jargs.namespace("--db.");
+		db.get(string("host"));
+		try {
+			db.finish();
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.UNKNOWN_ARGUMENTS));
+			assertThat(e.getMessage().contains("--db.port"), is(true));
+			assertThat(e.getMessage().contains("--other"), is(false));
+		}
+		
+		db.get(integer("port"));
+		db.finish();
+		try {
+			jargs.finish();
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.getMessage(), is("Unknown argument --other"));
+		}
+	}
+	
+	@Test
+	public void testBulkRetrieval() {
+		JarpaArgs jargs = parse("--db.host localhost --db.port 5432");
+		JarpaArg<Integer> port = integer("port");
+		ArgValues values = jargs.namespace("--db.").getAll(string("host"), port);
+		assertThat(values.get(port), is(5432));
+		jargs.finish();
+	}
+	
+	@Test
+	public void testEmpty() {
+		JarpaArgs jargs = parse("--a 1");
+		JarpaArgs none = jargs.namespace("--b.");
+		assertThat(none.options().isEmpty(), is(true));
+		assertThat(none.get(string("x").optional()).isPresent(), is(false));
+		none.finish();
+	}
+}
@@ -0,0 +1,90 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.decimal;
+import static fi.purkka.jarpa.JarpaArg.flag;
+import static fi.purkka.jarpa.JarpaArg.string;
+import static fi.purkka.jarpa.JarpaArg.stringArray;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import fi.purkka.jarpa.JarpaException.Type;
+
+public class TestOptionGroups {
+	
+	private static final JarpaArg<String> INPUT = string("-i").alias("--input");
+	private static final JarpaArg<Optional<Double>> SEEK = decimal("-ss").optional();
+	
+	private static OptionGroups groups(String args) {
+		return JarpaParser.parsing(args.split(" ")).grouped("-i", "--input");
+	}
+	
+	@Test
+	public void testGroups() {
+		OptionGroups groups = groups("-y -i a.mp4 -ss 5 --input b.mp4 -ss 10 -t 3");
+		assertThat(groups.head().get(flag("-y")), is(true));
+		
+		List<JarpaArgs> inputs = groups.groups();
+		assertThat(inputs.size(), is(2));
+		assertThat(inputs.get(0).get(INPUT), is("a.mp4"));
+		assertThat(inputs.get(0).get(SEEK), is(Optional.of(5.0)));
+		assertThat(inputs.get(1).get(INPUT), is("b.mp4"));
+		assertThat(inputs.get(1).get(SEEK), is(Optional.of(10.0)));
+		assertThat(inputs.get(1).get(string("-t")), is("3"));
+		assertThat(inputs.get(0).get(string("-t").optional()), is(Optional.empty()));
+		groups.finish();
+	}
+	
+	@Test
+	public void testDefaultsAndRepeats() {
+		OptionGroups groups = groups("x y -v -i a -ss 1 -ss 2 -- -i z");
+		assertThat(groups.head().get(stringArray("")), is(new String[] {"x", "y", "-i", "z"}));
+		assertThat(groups.head().get(flag("-v")), is(true));
+		assertThat(groups.groups().size(), is(1));
+		JarpaArgs group = groups.groups().get(0);
+		assertThat(group.get(SEEK), is(Optional.of(2.0)));
+		assertThat(group.options().size(), is(2));
+		group.get(INPUT);
+		groups.finish();
+	}
+	
+	@Test
+	public void testNoGroups() {
+		OptionGroups groups = groups("-v");
+		assertThat(groups.groups().isEmpty(), is(true));
+		assertThat(groups.head().get(flag("-v")), is(true));
+		assertThat(groups("").groups().isEmpty(), is(true));
+	}
+	
+	@Test
+	public void testFinishPerGroup() {
+		OptionGroups groups = groups("-i a -ss 1 -i b -x");
+		for(JarpaArgs group : groups.groups()) {
+			group.getAll(INPUT, SEEK);
+		}
+		groups.groups().get(0).finish();
+		try {
+			groups.groups().get(1).finish();
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.UNKNOWN_ARGUMENTS));
+			assertThat(e.getMessage(), is("Unknown argument -x"));
+		}
+	}
+	
+	@Test
+	public void testLimits() {
+		try {
+			JarpaParser.parsing("-i a -ss 1 2 3".split(" "))
+					.limits(ParseLimits.none().maxValues(2)).grouped("-i");
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.LIMIT_EXCEEDED));
+		}
+	}
+}
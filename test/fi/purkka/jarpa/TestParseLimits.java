@@ -0,0 +1,123 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.stringArray;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import fi.purkka.jarpa.JarpaException.Type;
+import fi.purkka.jarpa.server.JarpaClient;
+import fi.purkka.jarpa.server.JarpaServer;
+
+public class TestParseLimits {
+	
+	private static final ParseLimits LIMITS = ParseLimits.none()
+			.maxTokens(8).maxValues(3).maxTokenLength(10).maxTotalLength(40);
+	
+	private static JarpaArgs spaced(String args) {
+		return JarpaParser.parsing(args.split(" ")).limits(LIMITS).parse();
+	}
+	
+	private static JarpaArgs equals(String args) {
+		return JarpaParser.parsing(args.split(" ")).limits(LIMITS).equalsSeparated().parse();
+	}
+	
+	private static void assertRejected(Runnable parse, String message) {
+		try {
+			parse.run();
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.LIMIT_EXCEEDED));
+			assertThat(e.getMessage(), containsString(message));
+		}
+	}
+	
+	@Test
+	public void testWithinLimits() {
+		try(JarpaArgs args = spaced("d --a 1 2 3 -- x y")) {
+			assertThat(args.get(stringArray("--a")), is(new String[] {"1", "2", "3"}));
+			assertThat(args.get(stringArray("")), is(new String[] {"d", "x", "y"}));
+		}
+		try(JarpaArgs args = equals("--a=1,2,3 d e")) {
+			assertThat(args.get(stringArray("--a")), is(new String[] {"1", "2", "3"}));
+			assertThat(args.get(stringArray("")), is(new String[] {"d", "e"}));
+		}
+	}
+	
+	@Test
+	public void testTokens() {
+		assertRejected(() -> spaced("1 2 3 4 5 6 7 8 9"), "more than 8 tokens");
+		assertRejected(() -> equals("1 2 3 4 5 6 7 8 9"), "more than 8 tokens");
+		assertRejected(() -> spaced("--a 12345678901"), "token of more than 10 characters");
+		assertRejected(() -> spaced("-- 12345678901"), "token of more than 10 characters");
+		assertRejected(() -> spaced("--a 123456789 123456789 --b 123456789 123456789"),
+				"more than 40 characters in total");
+	}
+	
+	@Test
+	public void testValues() {
+		assertRejected(() -> spaced("--a 1 2 3 4"), "more than 3 values for --a");
+		assertRejected(() -> spaced("1 2 3 4"), "more than 3 values for [default argument]");
+		assertRejected(() -> spaced("1 2 -- 3 4"), "more than 3 values for [default argument]");
+		assertRejected(() -> equals("-a=1,2,3,4"), "more than 3 values for -a");
+		assertRejected(() -> equals("1 --b 2 3 4"), "more than 3 values for [default argument]");
+	}
+	
+	@Test
+	public void testIncremental() {
+		IncrementalParser parser = JarpaParser.parsing(new String[0]).limits(LIMITS).incremental();
+		assertRejected(() -> parser.update("1", "2", "3", "4", "5", "6", "7", "8", "9"),
+				"more than 8 tokens");
+	}
+	
+	@Test
+	public void testServer() throws IOException {
+		try(JarpaServer server = JarpaServer.onPort(0).limits(LIMITS)
+				.register("echo", inv -> 0).start();
+				JarpaClient client = JarpaClient.connect(server.port())) {
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			assertThat(client.run(new String[] {"echo", "--a", "1"},
+					new ByteArrayOutputStream(), err), is(0));
+			assertThat(client.run(new String[] {"echo", "--a", "1", "2", "3", "4"},
+					new ByteArrayOutputStream(), err), is(JarpaServer.USAGE_ERROR));
+			assertThat(new String(err.toByteArray(), StandardCharsets.UTF_8),
+					containsString("Input too large"));
+		}
+	}
+	
+	@Test
+	public void testServerChecksWhileReading() throws IOException {
+		try(JarpaServer server = JarpaServer.onPort(0).limits(LIMITS)
+				.register("echo", inv -> 0).start();
+				JarpaClient client = JarpaClient.connect(server.port())) {
+			StringBuilder huge = new StringBuilder();
+			for(int i = 0; i < 100000; i++) huge.append('x');
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			assertThat(client.run(new String[] {"echo", "--a", huge.toString()},
+					new ByteArrayOutputStream(), err), is(JarpaServer.USAGE_ERROR));
+			assertThat(new String(err.toByteArray(), StandardCharsets.UTF_8),
+					containsString("token of more than 10 bytes"));
+			
+			String[] many = new String[10000];
+			Arrays.fill(many, "1");
+			many[0] = "echo";
+			err.reset();
+			assertThat(client.run(many, new ByteArrayOutputStream(), err),
+					is(JarpaServer.USAGE_ERROR));
+			assertThat(new String(err.toByteArray(), StandardCharsets.UTF_8),
+					containsString("more than 8 tokens"));
+			
+			// the rejected requests were skipped whole
+			assertThat(client.run(new String[] {"echo", "--a", "1"},
+					new ByteArrayOutputStream(), new ByteArrayOutputStream()), is(0));
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.paths;
+import static fi.purkka.jarpa.conditions.PathCondition.extension;
+import static fi.purkka.jarpa.conditions.PathCondition.notHidden;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fi.purkka.jarpa.JarpaArg.PathArg;
+import fi.purkka.jarpa.JarpaException.Type;
+
+public class TestPaths {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private Path root;
+	
+	@Before
+	public void createTree() throws IOException {
+		root = folder.getRoot().toPath();
+		for(String file : new String[] {"a.txt", "b.java", ".hidden.java",
+				"sub/c.java", "sub/deep/d.java"}) {
+			Path path = root.resolve(file);
+			Files.createDirectories(path.getParent());
+			Files.createFile(path);
+		}
+	}
+	
+	private Set<String> expand(PathArg arg, String...values) {
+		String[] argv = new String[values.length + 1];
+		argv[0] = "--in";
+		System.arraycopy(values, 0, argv, 1, values.length);
+		try(JarpaArgs args = JarpaParser.parsing(argv).parse();
+				Stream<Path> stream = args.get(arg)) {
+			return stream.map(p -> root.relativize(p).toString().replace('\\', '/'))
+					.collect(Collectors.toCollection(TreeSet::new));
+		}
+	}
+	
+	private static Set<String> set(String...values) {
+		return new TreeSet<>(Arrays.asList(values));
+	}
+	
+	@Test
+	public void testDirectory() {
+		assertThat(expand(paths("--in"), root.toString()),
+				is(set("a.txt", "b.java", ".hidden.java", "sub/c.java", "sub/deep/d.java")));
+		assertThat(expand(paths("--in").maxDepth(1), root.toString()),
+				is(set("a.txt", "b.java", ".hidden.java")));
+	}
+	
+	@Test
+	public void testGlobs() {
+		assertThat(expand(paths("--in"), root + "/*.java"),
+				is(set("b.java", ".hidden.java")));
+		assertThat(expand(paths("--in"), root + "/**/*.java"),
+				is(set("sub/c.java", "sub/deep/d.java")));
+		assertThat(expand(paths("--in"), root + "/s*/*"),
+				is(set("sub/c.java", "sub/deep")));
+		assertThat(expand(paths("--in"), root + "/*.txt", root + "/sub/c.java"),
+				is(set("a.txt", "sub/c.java")));
+	}
+	
+	@Test
+	public void testConditionsAppliedDuringWalk() {
+		assertThat(expand(paths("--in").matching(extension("java")).matching(notHidden()),
+				root.toString()), is(set("b.java", "sub/c.java", "sub/deep/d.java")));
+	}
+	
+	@Test
+	public void testHiddenDirectoriesNotWalked() throws IOException {
+		Files.createDirectories(root.resolve(".git/objects"));
+		Files.createFile(root.resolve(".git/objects/e.java"));
+		assertThat(expand(paths("--in").matching(notHidden()), root.toString()),
+				is(set("a.txt", "b.java", "sub/c.java", "sub/deep/d.java")));
+		assertThat(expand(paths("--in").matching(notHidden()), root + "/**/*.java"),
+				is(set("sub/c.java", "sub/deep/d.java")));
+	}
+	
+	@Test
+	public void testMissingPath() {
+		try {
+			expand(paths("--in"), root.resolve("missing").toString());
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.PARSE_EXCEPTION));
+		}
+		try {
+			expand(paths("--in"), root.resolve("missing") + "/*.java");
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.PARSE_EXCEPTION));
+		}
+	}
+	
+	@Test
+	public void testManyDirectories() throws IOException {
+		Set<String> expected = new TreeSet<>();
+		for(int d = 0; d < 50; d++) {
+			Path dir = Files.createDirectories(root.resolve("many/d" + d));
+			for(int f = 0; f < 20; f++) {
+				Files.createFile(dir.resolve("f" + f));
+				expected.add("many/d" + d + "/f" + f);
+			}
+		}
+		assertThat(expand(paths("--in"), root.resolve("many").toString()), is(expected));
+	}
+	
+	@Test
+	public void testWalkSplitsAcrossThreads() throws Exception {
+		for(int d = 0; d < 20; d++) {
+			Path dir = Files.createDirectories(root.resolve("par/d" + d));
+			for(int f = 0; f < 10; f++) {
+				Files.createFile(dir.resolve("f" + f));
+			}
+		}
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try(JarpaArgs args = JarpaParser.parsing(new String[] {"--in", root.resolve("par").toString()}).parse();
+				Stream<Path> stream = args.get(paths("--in"))) {
+			long count = pool.submit(() -> stream.peek(p -> {
+				threads.add(Thread.currentThread());
+				try {
+					Thread.sleep(2);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}).count()).get();
+			assertThat(count, is(200L));
+		} finally {
+			pool.shutdown();
+		}
+		assertTrue(threads.size() > 1);
+	}
+}
@@ -0,0 +1,106 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.integer;
+import static fi.purkka.jarpa.JarpaArg.string;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import fi.purkka.jarpa.server.JarpaClient;
+import fi.purkka.jarpa.server.JarpaServer;
+
+public class TestServer {
+	
+	private static JarpaServer server() throws IOException {
+		return JarpaServer.onPort(0)
+				.register("greet", inv -> {
+					try(JarpaArgs args = inv.args()) {
+						String name = args.get(string("--name"));
+						int times = args.get(integer("--times").optional()).orElse(1);
+						for(int i = 0; i < times; i++) {
+							inv.out().println("Hello, " + name);
+						}
+					}
+					return 0;
+				})
+				.register("fail", inv -> {
+					inv.err().println("failing");
+					return 3;
+				})
+				.start();
+	}
+	
+	private static String utf8(ByteArrayOutputStream out) {
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	@Test
+	public void testOutputAndExitCode() throws IOException {
+		try(JarpaServer server = server();
+				JarpaClient client = JarpaClient.connect(server.port())) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			
+			int code = client.run(new String[] {"greet", "--name", "wörld", "--times", "2"}, out, err);
+			assertThat(code, is(0));
+			assertThat(utf8(out), is("Hello, wörld" + System.lineSeparator()
+					+ "Hello, wörld" + System.lineSeparator()));
+			
+			out.reset();
+			code = client.run(new String[] {"fail", "-x"}, out, err);
+			assertThat(code, is(3));
+			assertThat(utf8(out), is(""));
+			assertThat(utf8(err), containsString("failing"));
+		}
+	}
+	
+	@Test
+	public void testUsageErrorsAndUnknownCommands() throws IOException {
+		try(JarpaServer server = server();
+				JarpaClient client = JarpaClient.connect(server.port())) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			
+			assertThat(client.run(new String[] {"greet", "--times", "2"}, out, err),
+					is(JarpaServer.USAGE_ERROR));
+			assertThat(utf8(err), containsString("Mandatory argument --name not specified"));
+			
+			assertThat(client.run(new String[] {"nope", "-a"}, out, err),
+					is(JarpaServer.UNKNOWN_COMMAND));
+		}
+	}
+	
+	@Test
+	public void testConcurrentClients() throws Exception {
+		ExecutorService clients = Executors.newFixedThreadPool(8);
+		try(JarpaServer server = server()) {
+			List<Future<String>> results = new ArrayList<>();
+			for(int i = 0; i < 32; i++) {
+				String name = "client" + i;
+				results.add(clients.submit(() -> {
+					try(JarpaClient client = JarpaClient.connect(server.port())) {
+						ByteArrayOutputStream out = new ByteArrayOutputStream();
+						client.run(new String[] {"greet", "--name", name}, out, out);
+						return utf8(out);
+					}
+				}));
+			}
+			for(int i = 0; i < results.size(); i++) {
+				assertThat(results.get(i).get(), is("Hello, client" + i + System.lineSeparator()));
+			}
+		} finally {
+			clients.shutdown();
+		}
+	}
+}
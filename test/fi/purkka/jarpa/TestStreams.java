@@ -0,0 +1,153 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.lines;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fi.purkka.jarpa.JarpaException.Type;
+import fi.purkka.jarpa.conditions.LongCondition;
+
+public class TestStreams {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private final InputStream stdin = System.in;
+	
+	@After
+	public void restoreStdin() {
+		System.setIn(stdin);
+	}
+	
+	private static void stdin(String content) {
+		System.setIn(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+	}
+	
+	private Path file(String content) throws IOException {
+		Path path = folder.newFile().toPath();
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+		return path;
+	}
+	
+	private static <E> List<E> collect(String args, JarpaArg<Stream<E>> arg) {
+		try(JarpaArgs jargs = JarpaParser.parsing(args.split(" ")).parse();
+				Stream<E> stream = jargs.get(arg)) {
+			return stream.collect(Collectors.toList());
+		}
+	}
+	
+	@Test
+	public void testLiterals() {
+		assertThat(collect("--ids a b c", lines("--ids")), is(Arrays.asList("a", "b", "c")));
+		assertThat(collect("--ids @@home x", lines("--ids")), is(Arrays.asList("@home", "x")));
+	}
+	
+	@Test
+	public void testStdin() {
+		stdin("1\n2\r\n3");
+		assertThat(collect("--ids -", lines("--ids", Long::parseLong)), is(Arrays.asList(1L, 2L, 3L)));
+		stdin("x\ny\n");
+		assertThat(collect("--ids first @- last", lines("--ids")),
+				is(Arrays.asList("first", "x", "y", "last")));
+	}
+	
+	@Test
+	public void testFile() throws IOException {
+		Path path = file("ä\n\nö\n");
+		assertThat(collect("--in @" + path, lines("--in")), is(Arrays.asList("ä", "", "ö")));
+	}
+	
+	@Test
+	public void testLargeFile() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for(int i = 0; i < 100_000; i++) content.append(i).append('\n');
+		Path path = file(content.toString());
+		try(JarpaArgs jargs = JarpaParser.parsing(new String[] {"--in", "@" + path}).parse();
+				Stream<Long> stream = jargs.get(lines("--in", Long::parseLong))) {
+			assertThat(stream.mapToLong(Long::longValue).sum(), is(99_999L * 100_000 / 2));
+		}
+	}
+	
+	@Test
+	public void testDelimiter() throws IOException {
+		Path path = file("a b\0c\nd\0");
+		assertThat(collect("--in @" + path, lines("--in").delimiter('\0')),
+				is(Arrays.asList("a b", "c\nd")));
+	}
+	
+	@Test
+	public void testLaziness() {
+		stdin("1\n2\nx\n");
+		try(JarpaArgs jargs = JarpaParser.parsing(new String[] {"--ids", "-"}).parse();
+				Stream<Long> stream = jargs.get(lines("--ids", Long::parseLong))) {
+			assertThat(stream.limit(2).collect(Collectors.toList()), is(Arrays.asList(1L, 2L)));
+		}
+	}
+	
+	@Test
+	public void testFailures() throws IOException {
+		stdin("1\nx\n");
+		try {
+			collect("--ids -", lines("--ids", Long::parseLong));
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.PARSE_EXCEPTION));
+		}
+		
+		try {
+			collect("--ids 1 -2", lines("--ids", Long::parseLong).each(LongCondition.positive()));
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.CONDITION_FAILED));
+		}
+		
+		try {
+			collect("--in @" + folder.getRoot().toPath().resolve("missing"), lines("--in"));
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.PARSE_EXCEPTION));
+		}
+		
+		try {
+			collect("--other", lines("--in"));
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.MANDATORY_ARG_NOT_SPECIFIED));
+		}
+		
+		Path path = file("");
+		Files.write(path, new byte[] {'a', '\n', (byte) 0xFF, '\n'});
+		try {
+			collect("--in @" + path, lines("--in"));
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.PARSE_EXCEPTION));
+		}
+	}
+	
+	@Test
+	public void testOptional() {
+		try(JarpaArgs jargs = JarpaParser.parsing(new String[0]).parse()) {
+			Optional<Stream<String>> ids = jargs.get(lines("--ids").optional());
+			assertThat(ids.isPresent(), is(false));
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package fi.purkka.jarpa;
+
+import static fi.purkka.jarpa.JarpaArg.byteSize;
+import static fi.purkka.jarpa.JarpaArg.duration;
+import static fi.purkka.jarpa.JarpaArg.enumeration;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+
+import org.junit.Test;
+
+import fi.purkka.jarpa.JarpaException.Type;
+import fi.purkka.jarpa.conditions.DurationCondition;
+import fi.purkka.jarpa.conditions.LongCondition;
+
+public class TestValueParsers {
+	
+	private static <T> T get(String args, JarpaArg<T> arg) {
+		try(JarpaArgs jargs = JarpaParser.parsing(args.split(" ")).parse()) {
+			return jargs.get(arg);
+		}
+	}
+	
+	private static void assertFails(String args, JarpaArg<?> arg, Type type) {
+		try {
+			get(args, arg);
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(type));
+		}
+	}
+	
+	@Test
+	public void testEnumeration() {
+		assertThat(get("--unit seconds", enumeration("--unit", ChronoUnit.class)), is(ChronoUnit.SECONDS));
+		assertThat(get("--unit HALF_DAYS", enumeration("--unit", ChronoUnit.class)), is(ChronoUnit.HALF_DAYS));
+		assertThat(get("--unit half-days", enumeration("--unit", ChronoUnit.class)), is(ChronoUnit.HALF_DAYS));
+		assertThat(get("--unit Millis", enumeration("--unit", ChronoUnit.class)), is(ChronoUnit.MILLIS));
+		assertFails("--unit second", enumeration("--unit", ChronoUnit.class), Type.PARSE_EXCEPTION);
+		assertFails("--unit secondsx", enumeration("--unit", ChronoUnit.class), Type.PARSE_EXCEPTION);
+	}
+	
+	@Test
+	public void testDuration() {
+		assertThat(get("-t 30s", duration("-t")), is(Duration.ofSeconds(30)));
+		assertThat(get("-t 5m", duration("-t")), is(Duration.ofMinutes(5)));
+		assertThat(get("-t 1h30m15s", duration("-t")), is(Duration.ofSeconds(5415)));
+		assertThat(get("-t 500ms", duration("-t")), is(Duration.ofMillis(500)));
+		assertThat(get("-t 1500us", duration("-t")), is(Duration.ofNanos(1_500_000)));
+		assertThat(get("-t 7ns", duration("-t")), is(Duration.ofNanos(7)));
+		assertThat(get("-t 1.5d", duration("-t")), is(Duration.ofHours(36)));
+		assertThat(get("-t 0.25s", duration("-t")), is(Duration.ofMillis(250)));
+		assertThat(get("-t 0", duration("-t")), is(Duration.ZERO));
+		assertThat(get("-t PT2M", duration("-t")), is(Duration.ofMinutes(2)));
+		
+		assertFails("-t 30", duration("-t"), Type.PARSE_EXCEPTION);
+		assertFails("-t 30x", duration("-t"), Type.PARSE_EXCEPTION);
+		assertFails("-t s", duration("-t"), Type.PARSE_EXCEPTION);
+		assertFails("-t 1.s", duration("-t"), Type.PARSE_EXCEPTION);
+		assertFails("-t 99999999999999999999s", duration("-t"), Type.PARSE_EXCEPTION);
+	}
+	
+	@Test
+	public void testByteSize() {
+		assertThat(get("-s 512", byteSize("-s")), is(512L));
+		assertThat(get("-s 512B", byteSize("-s")), is(512L));
+		assertThat(get("-s 10kB", byteSize("-s")), is(10_000L));
+		assertThat(get("-s 10KB", byteSize("-s")), is(10_000L));
+		assertThat(get("-s 10k", byteSize("-s")), is(10_240L));
+		assertThat(get("-s 512MiB", byteSize("-s")), is(512L << 20));
+		assertThat(get("-s 2G", byteSize("-s")), is(2L << 30));
+		assertThat(get("-s 1.5GiB", byteSize("-s")), is(3L << 29));
+		assertThat(get("-s 3TB", byteSize("-s")), is(3_000_000_000_000L));
+		
+		assertFails("-s 10Mb", byteSize("-s"), Type.PARSE_EXCEPTION);
+		assertFails("-s MiB", byteSize("-s"), Type.PARSE_EXCEPTION);
+		assertFails("-s 10XB", byteSize("-s"), Type.PARSE_EXCEPTION);
+		assertFails("-s 1.MB", byteSize("-s"), Type.PARSE_EXCEPTION);
+		assertFails("-s 16EiB", byteSize("-s"), Type.PARSE_EXCEPTION);
+	}
+	
+	@Test
+	public void testConditions() {
+		JarpaArg<Long> size = byteSize("-s").require(LongCondition.inRange(1 << 10, 1 << 30));
+		assertThat(get("-s 64MiB", size), is(64L << 20));
+		assertFails("-s 2GiB", size, Type.CONDITION_FAILED);
+		assertFails("-s 0", byteSize("-s").require(LongCondition.positive()), Type.CONDITION_FAILED);
+		
+		JarpaArg<Duration> timeout = duration("-t").require(DurationCondition.positive()
+				.and(DurationCondition.atMost(Duration.ofMinutes(1))));
+		assertThat(get("-t 59.5s", timeout), is(Duration.ofMillis(59_500)));
+		assertFails("-t 1m1ns", timeout, Type.CONDITION_FAILED);
+		assertFails("-t 0", timeout, Type.CONDITION_FAILED);
+		
+		try {
+			DurationCondition.inRange(Duration.ofSeconds(2), Duration.ofSeconds(1));
+			assertTrue(false);
+		} catch(JarpaException e) {
+			assertThat(e.type, is(Type.INVALID_CONDITION));
+		}
+	}
+}